@@ -26,7 +26,7 @@ fi
 
 # 5. Compilar
 echo "Compilando con classpath: $CP"
-javac -encoding UTF-8 -d target/classes -cp "$CP" @sources.txt
+javac -encoding UTF-8 --add-modules jdk.incubator.vector -d target/classes -cp "$CP" @sources.txt
 
 # 6. Verificar compilación y copiar recursos
 if [ $? -eq 0 ]; then
@@ -3,50 +3,67 @@ package es.age.dgpe.placsp.risp.parser.cli;
 import es.age.dgpe.placsp.risp.parser.utils.PlacspLogger;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.math.BigDecimal;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.time.LocalDateTime;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.GregorianCalendar;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.datatype.XMLGregorianCalendar;
 
 import org.apache.poi.ss.usermodel.Cell;
 import es.age.dgpe.placsp.risp.parser.utils.EnvConfig;
+import es.age.dgpe.placsp.risp.parser.utils.JaxbContextRegistry;
+import es.age.dgpe.placsp.risp.parser.utils.LimpiadorTexto;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.xssf.streaming.SXSSFSheet;
-import org.apache.poi.xssf.streaming.SXSSFWorkbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.apache.poi.ooxml.POIXMLProperties;
-import org.purl.atompub.tombstones._1.DeletedEntryType;
 import org.w3._2005.atom.EntryType;
 import org.w3._2005.atom.FeedType;
 import org.w3._2005.atom.LinkType;
 
-import com.ibm.icu.text.Normalizer2;
 
+import es.age.dgpe.placsp.risp.parser.converter.ArchivosZip;
+import es.age.dgpe.placsp.risp.parser.converter.AtomStreamReader;
+import es.age.dgpe.placsp.risp.parser.converter.ColaAnticipada;
+import es.age.dgpe.placsp.risp.parser.converter.ConjuntoIds;
+import es.age.dgpe.placsp.risp.parser.converter.EnlazadorStax;
+import es.age.dgpe.placsp.risp.parser.converter.EntradaAtom;
+import es.age.dgpe.placsp.risp.parser.converter.FuenteAtom;
+import es.age.dgpe.placsp.risp.parser.converter.IndiceBorrados;
+import es.age.dgpe.placsp.risp.parser.converter.IndiceIncremental;
+import es.age.dgpe.placsp.risp.parser.converter.IndiceVersiones;
+import es.age.dgpe.placsp.risp.parser.converter.LectorCadenaParalelo;
+import es.age.dgpe.placsp.risp.parser.converter.MetricasCola;
+import es.age.dgpe.placsp.risp.parser.model.ContextoEntry;
 import es.age.dgpe.placsp.risp.parser.model.DatosCPM;
 import es.age.dgpe.placsp.risp.parser.model.DatosEMP;
 import es.age.dgpe.placsp.risp.parser.model.DatosLicitacionGenerales;
 import es.age.dgpe.placsp.risp.parser.model.DatosResultados;
+import es.age.dgpe.placsp.risp.parser.model.EnumFormatos;
+import es.age.dgpe.placsp.risp.parser.model.FechasExcel;
+import es.age.dgpe.placsp.risp.parser.model.FilaExcel;
 import es.age.dgpe.placsp.risp.parser.model.SpreeadSheetManager;
+import es.age.dgpe.placsp.risp.parser.model.TipoEntry;
 import ext.place.codice.common.caclib.ContractFolderStatusType;
 import ext.place.codice.common.caclib.PreliminaryMarketConsultationStatusType;
 
@@ -55,186 +72,50 @@ import ext.place.codice.common.caclib.PreliminaryMarketConsultationStatusType;
  * Soporta multiples archivos ATOM de entrada que se combinan en un unico Excel.
  *
  * Usage:
- *   --in <path.atom>       Path to an ATOM file (puede repetirse para multiples archivos)
+ *   --in <path.atom>       Path to an ATOM or ZIP file (puede repetirse para multiples archivos);
+ *                          ZIPs are read in place, without extracting them to disk
  *   --out <path.xlsx>      Output Excel path
  *   --dos-tablas           Output licitaciones + resultados in two sheets
  *   --sin-emp              Do not include EMP sheet
  *   --sin-cpm              Do not include CPM sheet
+ *   --streaming            Read entries one by one (StAX) instead of whole FeedType
+ *   --paralelo             Parse the files of the next-link chain in parallel
+ *   --hilos <n>            Threads for --paralelo (default: available processors)
+ *   --lectura-anticipada <n> Read and pre-parse up to n files ahead on a background thread
+ *   --binding <jaxb|stax>  Deserialize entries with JAXB (default) or with StAX, filling only the
+ *                          elements the columns read (streaming mode only)
+ *   --comprobar-binding    With --binding stax, also deserialize each entry with JAXB and report
+ *                          any column whose value differs
+ *   --extractores <n>      With --streaming, pipeline the conversion: one thread reads the entries,
+ *                          n threads compute the column values and this thread writes the sheets
+ *   --columnas <spec>      Columns to export per sheet, e.g. "licitaciones=ESTADO,OBJETO_CONTRATO;cpm=ESTADO"
+ *                          (groups: licitaciones, resultados, emp, cpm; a group not listed keeps all
+ *                          its columns). With --binding stax, only the elements those columns read
+ *                          are parsed
+ *   --indice <dir>         With --streaming, keep a persistent per-file index in dir: files that
+ *                          did not change since the last successful run are not read again, their
+ *                          rows are replayed from the index
+ *   --ultima-version       When an id appears more than once, keep the version with the latest
+ *                          updated instead of the first one read, whatever the file order
+ *   --cache-limpieza <n>   Cleaned texts kept in memory so repeated descriptions are not cleaned
+ *                          again (default 4096, 0 = no cache); the hit rate is printed at the end
  */
 public class AtomToExcelCLI {
 
-    private static Unmarshaller atomUnMarshaller;
-    private static final Normalizer2 NFC_NORMALIZER = Normalizer2.getNFCInstance();
-    
-    // Patron precompilado para caracteres problematicos en Power BI M
-    // Incluye: controles, formato Unicode, surrogates, private use, etc.
-    private static final java.util.regex.Pattern POWERBI_PROBLEMATIC = java.util.regex.Pattern.compile(
-            "[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F-\\x9F]" +  // Caracteres de control (excepto tab, LF, CR)
-            "|[\\u00AD]" +                                      // Soft hyphen
-            "|[\\u200B-\\u200F]" +                              // Zero-width y marcadores direccionales
-            "|[\u2028-\u202F]" +                              // Separadores de linea/parrafo y espacios especiales
-            "|[\\u2060-\\u206F]" +                              // Word joiner y caracteres de formato
-            "|[\\uFEFF]" +                                       // BOM / Zero-width no-break space
-            "|[\\uFFF0-\\uFFFF]" +                              // Specials (incluyendo replacement char)
-            "|[\uD800-\uDFFF]" +                              // Surrogates (huerfanos causan errores)
-            "|[\\uE000-\\uF8FF]" +                              // Private Use Area
-            "|[\u0300-\u036F]+(?![\\p{L}])"                   // Diacriticos sueltos sin letra base
-    );
-
-    /**
-     * Limpia y normaliza texto de forma exhaustiva para compatibilidad con Power BI.
-     * Usa ICU4J para normalizacion Unicode y transliteracion a ASCII puro.
-     * Elimina todos los caracteres problematicos conocidos para el lenguaje M de Power BI.
-     * 
-     * @param texto El texto a limpiar
-     * @return El texto limpio y normalizado (solo ASCII imprimible), o null si el texto era null
-     */
-private static String limpiarSaltosDeLinea(String texto) {
-
-    if (texto == null) return null;
-
-    // 1. Desescapar entidades HTML comunes (ambas formas: &entity; y &amp;entity;)
-    String limpio = texto
-        // Forma doblemente escapada (&amp;entity;)
-        .replace("&amp;#xD;", " ")
-        .replace("&amp;#xA;", " ")
-        .replace("&amp;#x9;", " ")
-        .replace("&amp;#13;", " ")
-        .replace("&amp;#10;", " ")
-        .replace("&amp;#0;", "")
-        .replace("&amp;quot;", "'")
-        .replace("&amp;amp;", "&")
-        .replace("&amp;lt;", "<")
-        .replace("&amp;gt;", ">")
-        .replace("&amp;apos;", "'")
-        .replace("&amp;nbsp;", " ")
-        // Forma simple (&entity;)
-        .replace("&#xD;", " ")
-        .replace("&#xA;", " ")
-        .replace("&#x9;", " ")
-        .replace("&#13;", " ")
-        .replace("&#10;", " ")
-        .replace("&#0;", "")
-        .replace("&quot;", "'")
-        .replace("&lt;", "<")
-        .replace("&gt;", ">")
-        .replace("&amp;", "&")
-        .replace("&apos;", "'")
-        .replace("&nbsp;", " ");
-
-    // 2. Normalización Unicode NFC
-    limpio = NFC_NORMALIZER.normalize(limpio);
-
-    // ----------------------------------------------------------------------
-    // 🔥 2-B. LIMPIEZA DE ESCAPES TÍPICOS DEL PLACSP / JSON
-    // ----------------------------------------------------------------------
-    limpio = limpio
-        .replace("\\\\", " ")  // elimina doble backslash
-        .replace("\\(", "(")   // paréntesis escapados
-        .replace("\\)", ")")
-        .replace("\\-", "-")   // guiones escapados
-        .replace("\\_", "_")   // subrayado escapado
-        .replace("\\/", "/")   // barras escapadas
-        .replace("\\n", " ")   // saltos escapados
-        .replace("\\r", " ")
-        .replace("\\t", " ")
-        .replace("\\\"", "\"") // comillas escapadas
-        .replace("\\'", "'");  // apostrofes escapados
-
-    // ----------------------------------------------------------------------
-    // 🔥 2-C. DECODIFICAR URLS (%2F, %3A, %26…)
-    // ----------------------------------------------------------------------
-    try {
-        limpio = java.net.URLDecoder.decode(limpio, java.nio.charset.StandardCharsets.UTF_8);
-    } catch (Exception ignored) {}
-
-    // ----------------------------------------------------------------------
-    // 🔥 2-D. ELIMINAR ASCII CONTROL (0x00–0x1F) invisibles
-    // ----------------------------------------------------------------------
-    limpio = limpio.replaceAll("[\\x00-\\x1F]", " ");
-
-    // 3. Sustituir saltos de línea reales por espacios
-    limpio = limpio.replaceAll("\r\n|\r|\n", " ");
-
-    // 4. Eliminar tabulaciones
-    limpio = limpio.replace('\t', ' ');
-
-    // 5. Eliminar diacríticos (acentos) si quieres texto plano
-    limpio = java.text.Normalizer.normalize(limpio, java.text.Normalizer.Form.NFD);
-    limpio = limpio.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-
-    // 6. Filtrar caracteres problemáticos según tu patrón
-    limpio = POWERBI_PROBLEMATIC.matcher(limpio).replaceAll("");
-
-    // 7. Convertir guiones "bonitos" a ASCII
-    limpio = limpio
-        .replace('\u2010', '-')  // hyphen
-        .replace('\u2011', '-')  // non-breaking hyphen
-        .replace('\u2012', '-')  // figure dash
-        .replace('\u2013', '-')  // en dash
-        .replace('\u2014', '-')  // em dash
-        .replace('\u2015', '-')  // horizontal bar
-        .replace('\u2212', '-')  // minus sign
-        .replace('\u2043', '-'); // hyphen bullet
-
-    // 8. Normalizar espacios Unicode a espacio ASCII
-    limpio = limpio
-        .replace('\u00A0', ' ')
-        .replace('\u2002', ' ')
-        .replace('\u2003', ' ')
-        .replace('\u2004', ' ')
-        .replace('\u2005', ' ')
-        .replace('\u2006', ' ')
-        .replace('\u2007', ' ')
-        .replace('\u2008', ' ')
-        .replace('\u2009', ' ')
-        .replace('\u200A', ' ')
-        .replace('\u202F', ' ')
-        .replace('\u205F', ' ');
-
-    // 9. Comillas tipográficas → ASCII
-    limpio = limpio
-        .replace('\u2018', '\'')
-        .replace('\u2019', '\'')
-        .replace('\u201A', '\'')
-        .replace('\u201B', '\'')
-        .replace('\u201C', '"')
-        .replace('\u201D', '"')
-        .replace('\u201E', '"')
-        .replace('\u201F', '"')
-        .replace('\u00AB', '"')
-        .replace('\u00BB', '"')
-        .replace('\u2039', '\'')
-        .replace('\u203A', '\'');
-
-    // 10. Puntos suspensivos y símbolos varios
-    limpio = limpio
-        .replace("\u2026", "...") 
-        .replace('\u2022', '*')
-        .replace('\u2023', '>')
-        .replace('\u2219', '*')
-        .replace('\u25AA', '*')
-        .replace('\u25CF', '*')
-        .replace('\u00B7', '*');
-
-    // 11. Permitir solo ASCII imprimible + ñÑüÜ
-    String permitidos = "ñÑüÜ";
-    StringBuilder sb = new StringBuilder(limpio.length());
-    for (char c : limpio.toCharArray()) {
-        if ((c >= 32 && c <= 126) || permitidos.indexOf(c) >= 0)
-            sb.append(c);
-    }
-    limpio = sb.toString();
-
-    // 12. Normalizar espacios
-    limpio = limpio.replaceAll("\\s+", " ").trim();
-
-    // 13. Limitar longitud a 4000 (Power BI Service)
-    if (limpio.length() > 4000)
-        limpio = limpio.substring(0, 3997) + "...";
-
-    return limpio;
-}
+    // Paquetes JAXB del ATOM de PLACSP (el contexto se comparte via JaxbContextRegistry)
+    private static final String CONTEXTO_JAXB_ATOM =
+            "org.w3._2005.atom:org.dgpe.codice.common.caclib:org.dgpe.codice.common.cbclib:ext.place.codice.common.caclib:ext.place.codice.common.cbclib:org.purl.atompub.tombstones._1";
+
+    // Valores de --binding
+    private static final String BINDING_JAXB = "jaxb";
+    private static final String BINDING_STAX = "stax";
+    // Diferencias de --comprobar-binding que se detallan en la salida
+    private static final int MAX_DIFERENCIAS_DETALLADAS = 20;
+    // Grupos de --columnas, uno por enum de columnas
+    private static final String GRUPO_LICITACIONES = "licitaciones";
+    private static final String GRUPO_RESULTADOS = "resultados";
+    private static final String GRUPO_EMP = "emp";
+    private static final String GRUPO_CPM = "cpm";
 
     // EDITA ESTAS RUTAS PARA EJECUCIONES RAPIDAS SIN ARGUMENTOS
     // Ejemplos:
@@ -250,125 +131,68 @@ private static String limpiarSaltosDeLinea(String texto) {
             System.exit(parsed.exitCode);
         }
 
-        Path tempDir = null;
         try {
-            // Procesar cada archivo de entrada
-            List<String> actualInPaths = new ArrayList<>();
-            boolean needsTempDir = false;
-            
-            for (String inPath : parsed.inPaths) {
-                if (inPath.toLowerCase().endsWith(".zip")) {
-                    needsTempDir = true;
-                    break;
-                }
-            }
-            
-            if (needsTempDir) {
-                tempDir = Files.createTempDirectory("atom-extract-");
-            }
-            
-            for (String inPath : parsed.inPaths) {
-                if (inPath.toLowerCase().endsWith(".zip")) {
-                    System.out.println("Detectado archivo ZIP, extrayendo: " + inPath);
-                    String extractedAtom = extractAndFindAtom(inPath, tempDir);
-                    System.out.println("Usando archivo extraido: " + extractedAtom);
-                    actualInPaths.add(extractedAtom);
-                } else {
-                    actualInPaths.add(inPath);
-                }
-            }
-
-            Args actualArgs = new Args(actualInPaths, parsed.outPath, parsed.dosTablas, parsed.sinEMP, parsed.sinCPM, true, 0);
-            new AtomToExcelCLI().convert(actualArgs);
+            LimpiadorTexto.setCapacidadCache(parsed.cacheLimpieza);
+            // Los ZIP se leen directamente (ZipFile), sin extraerlos a disco
+            new AtomToExcelCLI().convert(parsed);
             System.out.println("Conversion completada: " + parsed.outPath);
         } catch (Exception e) {
             System.err.println("Error en la conversion: " + e.getMessage());
             e.printStackTrace();
             System.exit(2);
-        } finally {
-            // Limpiar directorio temporal si se creo
-            if (tempDir != null) {
-                try {
-                    deleteRecursively(tempDir);
-                } catch (IOException e) {
-                    System.err.println("Advertencia: no se pudo eliminar temp dir: " + e.getMessage());
-                }
-            }
         }
     }
 
-    private static String extractAndFindAtom(String zipPath, Path tempDir) throws IOException {
-        File zipFile = new File(zipPath);
-        String baseName = zipFile.getName().replaceAll("\\.[zZ][iI][pP]$", "");
-
-        // Descomprimir
-        try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                if (!entry.isDirectory()) {
-                    File outFile = new File(tempDir.toFile(), entry.getName());
-                    outFile.getParentFile().mkdirs();
-                    try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                        byte[] buffer = new byte[8192];
-                        int len;
-                        while ((len = zis.read(buffer)) > 0) {
-                            fos.write(buffer, 0, len);
-                        }
-                    }
-                }
-                zis.closeEntry();
-            }
-        }
-
-        // Buscar el .atom con el mismo nombre base
-        File[] files = tempDir.toFile().listFiles((dir, name) -> name.equalsIgnoreCase(baseName + ".atom"));
-        if (files != null && files.length > 0) {
-            System.out.println("LOG unzip: " + zipPath + " -> " + tempDir + " success=true");
-            PlacspLogger.unzip(zipPath, tempDir.toString(), true);
-            return files[0].getAbsolutePath();
-        }
-
-        // Si no se encuentra con el mismo nombre, buscar cualquier .atom
-        files = tempDir.toFile().listFiles((dir, name) -> name.toLowerCase().endsWith(".atom"));
-        if (files != null && files.length > 0) {
-            System.out.println("LOG unzip: " + zipPath + " -> " + tempDir + " success=true");
-            PlacspLogger.unzip(zipPath, tempDir.toString(), true);
-            return files[0].getAbsolutePath();
-        }
+    // Estado de la conversion, compartido por el modo clasico y el modo streaming
+    private final ConjuntoIds entriesProcesadas = new ConjuntoIds();
+    private IndiceBorrados entriesDeleted = new IndiceBorrados();
+    private int numeroEntries = 0;
+    // Duplicadas descartadas en modo streaming antes de deserializarlas
+    private int entriesDuplicadasSaltadas = 0;
+    private long bytesDuplicadosSaltados = 0;
+    private boolean dosTablas;
+    // Con --dos-tablas y RESULTADOS_REMOVE=true no se exporta la hoja de resultados
+    private boolean hojaResultados;
+    private SpreeadSheetManager spreeadSheetManager;
+    private ArrayList<DatosLicitacionGenerales> seleccionLicitacionGenerales;
+    private ArrayList<DatosResultados> seleccionLicitacionResultados;
+    private ArrayList<DatosEMP> seleccionEncargosMediosPropios;
+    private ArrayList<DatosCPM> seleccionConsultasPreliminares;
+    private ExecutorService poolLectura;
+    private int ventanaLectura;
+    // Deserializador StAX de las entries (null = JAXB) y comprobacion contra JAXB
+    private EnlazadorStax enlazadorStax;
+    private boolean comprobarBinding;
+    private int entriesComprobadas = 0;
+    private int entriesConDiferencias = 0;
+    // Indice entre ejecuciones (--indice): segmentos validos y deleted-entry leidas en la
+    // pre-pasada de los ficheros sin segmento valido
+    private IndiceIncremental indiceIncremental;
+    private final HashMap<FuenteAtom, IndiceIncremental.Segmento> segmentos = new HashMap<>();
+    private final HashMap<FuenteAtom, List<String[]>> borradosLeidos = new HashMap<>();
+    private int ficherosReutilizados = 0;
+    private int ficherosIndexados = 0;
+    // Con --ultima-version, fecha updated mas reciente de cada id en todas las cadenas
+    private IndiceVersiones indiceVersiones;
+    private int entriesVersionAnterior = 0;
+
+    // Entries leidas por delante del volcado en modo streaming con lectura anticipada
+    private static final int ENTRIES_ANTICIPADAS = 512;
+    // Hilos que calculan las filas en modo pipeline (null = las calcula el hilo que escribe)
+    private ThreadPoolExecutor poolExtraccion;
 
-        System.out.println("LOG unzip: " + zipPath + " -> " + tempDir + " success=false");
-        PlacspLogger.unzip(zipPath, tempDir.toString(), false);
-        throw new FileNotFoundException("No se encontro archivo .atom en el ZIP");
-    }
-
-    private static void deleteRecursively(Path path) throws IOException {
-        if (Files.exists(path)) {
-            Files.walk(path)
-                .sorted(Comparator.reverseOrder())
-                .forEach(p -> {
-                    try {
-                        Files.delete(p);
-                    } catch (IOException e) {
-                        // ignorar
-                    }
-                });
-        }
-    }
-
-    @SuppressWarnings("unchecked")
     private void convert(Args args) throws Exception {
-        HashSet<String> entriesProcesadas = new HashSet<>();
-        HashMap<String, GregorianCalendar> entriesDeleted = new HashMap<>();
-        int numeroEntries = 0;
         int numeroFicherosProcesados = 0;
 
         FeedType res = null;
-        InputStreamReader inStream = null;
+        ArchivosZip archivosZip = new ArchivosZip();
 
-        ArrayList<DatosLicitacionGenerales> seleccionLicitacionGenerales = new ArrayList<>(Arrays.asList(DatosLicitacionGenerales.values()));
-        ArrayList<DatosResultados> seleccionLicitacionResultados = new ArrayList<>(Arrays.asList(DatosResultados.values()));
-        ArrayList<DatosEMP> seleccionEncargosMediosPropios = new ArrayList<>(Arrays.asList(DatosEMP.values()));
-        ArrayList<DatosCPM> seleccionConsultasPreliminares = new ArrayList<>(Arrays.asList(DatosCPM.values()));
+        dosTablas = args.dosTablas;
+        hojaResultados = dosTablas && !EnvConfig.getBoolean("RESULTADOS_REMOVE", false);
+        seleccionLicitacionGenerales = seleccionColumnas(DatosLicitacionGenerales.class, GRUPO_LICITACIONES, args.columnas);
+        seleccionLicitacionResultados = seleccionColumnas(DatosResultados.class, GRUPO_RESULTADOS, args.columnas);
+        seleccionEncargosMediosPropios = seleccionColumnas(DatosEMP.class, GRUPO_EMP, args.columnas);
+        seleccionConsultasPreliminares = seleccionColumnas(DatosCPM.class, GRUPO_CPM, args.columnas);
 
         if (args.sinEMP) {
             seleccionEncargosMediosPropios.clear();
@@ -378,106 +202,132 @@ private static String limpiarSaltosDeLinea(String texto) {
         }
 
         try {
-            // JAXB
-            JAXBContext jc = JAXBContext.newInstance(
-                "org.w3._2005.atom:org.dgpe.codice.common.caclib:org.dgpe.codice.common.cbclib:ext.place.codice.common.caclib:ext.place.codice.common.cbclib:org.purl.atompub.tombstones._1");
-            atomUnMarshaller = jc.createUnmarshaller();
-
             // Hojas necesarias
-            SpreeadSheetManager spreeadSheetManager = new SpreeadSheetManager(args.dosTablas, seleccionEncargosMediosPropios.size()>0, seleccionConsultasPreliminares.size()>0);
+            spreeadSheetManager = new SpreeadSheetManager(hojaResultados, seleccionEncargosMediosPropios.size()>0, seleccionConsultasPreliminares.size()>0);
 
             insertarTitulos(spreeadSheetManager, seleccionLicitacionGenerales, seleccionLicitacionResultados, seleccionEncargosMediosPropios, seleccionConsultasPreliminares);
             spreeadSheetManager.updateColumnsSize();
 
-            // Procesar cada archivo ATOM de entrada
-            for (String inPath : args.inPaths) {
-                System.out.println("Procesando fuente ATOM: " + inPath);
-                
-                // ATOM inicial
-                File ficheroRISP = new File(inPath);
-                String directorioPath = ficheroRISP.getParent();
-                boolean existeFicheroRisp = ficheroRISP.exists() && ficheroRISP.isFile();
-                if (!existeFicheroRisp) {
-                    System.err.println("  Advertencia: No se puede acceder al fichero: " + inPath);
-                    continue;
+            if (args.paralelo) {
+                // Cada hilo parsea un fichero completo; la ventana acota los feeds en memoria
+                int hilos = args.hilos > 0 ? args.hilos : Runtime.getRuntime().availableProcessors();
+                poolLectura = new ForkJoinPool(hilos);
+                ventanaLectura = hilos;
+                System.out.println("Modo paralelo: " + hilos + " hilos de lectura");
+                if (args.streaming) {
+                    System.out.println("  Aviso: --streaming se ignora en modo paralelo");
                 }
+            } else if (args.lecturaAnticipada > 0 && !args.streaming) {
+                // Un unico hilo en segundo plano parsea los siguientes ficheros de la cadena
+                poolLectura = Executors.newSingleThreadExecutor(r -> {
+                    Thread hilo = new Thread(r, "placsp-lectura-anticipada");
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+                ventanaLectura = args.lecturaAnticipada;
+                System.out.println("Lectura anticipada: hasta " + args.lecturaAnticipada + " ficheros");
+            } else if (args.streaming && args.extractores > 0) {
+                // Lector, extractores y escritor en hilos distintos, unidos por colas acotadas
+                poolExtraccion = new ThreadPoolExecutor(args.extractores, args.extractores, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(), r -> {
+                            Thread hilo = new Thread(r, "placsp-extractor");
+                            hilo.setDaemon(true);
+                            return hilo;
+                        });
+                System.out.println("Modo streaming en pipeline: 1 lector, " + args.extractores
+                        + " extractores y 1 escritor");
+            } else if (args.streaming) {
+                System.out.println("Modo streaming: lectura entry a entry"
+                        + (args.lecturaAnticipada > 0 ? " con lectura anticipada" : ""));
+            }
+            if (args.extractores > 0 && poolExtraccion == null) {
+                System.out.println("  Aviso: --extractores requiere --streaming (sin --paralelo); se ignora");
+            }
 
-                File[] lista_ficherosRISP = ficheroRISP.getParentFile().listFiles();
-                if (lista_ficherosRISP != null) {
+            if (BINDING_STAX.equals(args.binding)) {
+                // Solo el modo streaming tiene las entries sin deserializar
+                if (args.streaming && !args.paralelo) {
+                    Set<String> elementos = elementosColumnas();
+                    enlazadorStax = new EnlazadorStax(elementos);
+                    comprobarBinding = args.comprobarBinding;
+                    System.out.println("Binding StAX: solo los " + elementos.size() + " elementos de las columnas"
+                            + (comprobarBinding ? " (comprobando contra JAXB)" : ""));
+                } else {
+                    System.out.println("  Aviso: --binding stax requiere --streaming; se usa JAXB");
                 }
+            } else if (args.comprobarBinding) {
+                System.out.println("  Aviso: --comprobar-binding requiere --binding stax");
+            }
 
-                while (existeFicheroRisp) {
-
-                    res = null;
-                    inStream = new InputStreamReader(new FileInputStream(ficheroRISP), StandardCharsets.UTF_8);
-                    res = ((JAXBElement<FeedType>) atomUnMarshaller.unmarshal(inStream)).getValue();
-
-                    // entradas borradas
-                    if (res.getAny() != null) {
-                        for (int indice = 0; indice < res.getAny().size(); indice++) {
-                            DeletedEntryType deletedEntry = ((JAXBElement<DeletedEntryType>) res.getAny().get(indice)).getValue();
-                            if (!entriesDeleted.containsKey(deletedEntry.getRef())) {
-                                entriesDeleted.put(deletedEntry.getRef(), deletedEntry.getWhen().toGregorianCalendar());
-                            }
-                        }
-                    }
-
-                    // recorrer entries
-                    numeroEntries += res.getEntry().size();
-                    for (EntryType entry : res.getEntry()) {
-                        if (!entriesProcesadas.contains(entry.getId().getValue())) {
-                            GregorianCalendar fechaDeleted = entriesDeleted.get(entry.getId().getValue());
+            if (args.indice != null) {
+                // Solo el modo streaming secuencial vuelca fichero a fichero
+                if (args.streaming && !args.paralelo && args.lecturaAnticipada == 0 && poolExtraccion == null) {
+                    indiceIncremental = new IndiceIncremental(new File(args.indice), configuracionIndice());
+                    System.out.println("Indice incremental: " + args.indice);
+                } else {
+                    System.out.println("  Aviso: --indice requiere --streaming sin --paralelo, --lectura-anticipada"
+                            + " ni --extractores; se ignora");
+                }
+            }
 
-                            boolean isCPM = false;
-                            try {
-                                isCPM = ((JAXBElement<?>) entry.getAny().get(0)).getValue() instanceof PreliminaryMarketConsultationStatusType;
-                            } catch (Exception e) {
-                                isCPM = false;
-                            }
+            if (args.ultimaVersion) {
+                // La pre-pasada registra la fecha de todas las versiones de cada entry y, de
+                // cada ref, la deleted-entry mas reciente
+                indiceVersiones = new IndiceVersiones(null);
+                entriesDeleted = new IndiceBorrados(true);
+                System.out.println("Ultima version: se conserva la version de cada entry con el updated mas reciente");
+            }
 
-                            if (isCPM) {
-                                if(seleccionConsultasPreliminares.size()>0) {
-                                    procesarCPM(entry, spreeadSheetManager.getWorkbook().getSheet(SpreeadSheetManager.CPM), fechaDeleted, seleccionConsultasPreliminares);
-                                }
-                            } else {
-                                boolean isEMP = false;
-                                try {
-                                    isEMP = (((JAXBElement<ContractFolderStatusType>) entry.getAny().get(0)).getValue().getTenderResult().get(0).getResultCode().getValue().compareTo("11") == 0);
-                                }
-                                catch(Exception e){
-                                    isEMP = false;
-                                }
-
-                                if (isEMP) {
-                                    if(seleccionEncargosMediosPropios.size()>0) {
-                                        procesarEncargo(entry, spreeadSheetManager.getWorkbook().getSheet(SpreeadSheetManager.EMP), fechaDeleted, seleccionEncargosMediosPropios);
-                                    }
-                                } else {
-                                    if (args.dosTablas) {
-                                        procesarEntry(entry, spreeadSheetManager.getWorkbook().getSheet(SpreeadSheetManager.LICITACIONES), fechaDeleted, seleccionLicitacionGenerales);
-                                        procesarEntryResultados(entry, spreeadSheetManager.getWorkbook().getSheet(SpreeadSheetManager.RESULTADOS), fechaDeleted, seleccionLicitacionResultados);
-                                    } else {
-                                        procesarEntryCompleta(entry, spreeadSheetManager.getWorkbook().getSheet(SpreeadSheetManager.LICITACIONES), fechaDeleted, seleccionLicitacionGenerales, seleccionLicitacionResultados);
-                                    }
-                                }
-                            }
+            // ATOM inicial de cada entrada: fichero en disco o ATOM dentro de un ZIP
+            List<FuenteAtom> inicios = new ArrayList<>();
+            for (String inPath : args.inPaths) {
+                FuenteAtom inicio = resolverEntrada(inPath, archivosZip);
+                if (inicio != null) {
+                    inicios.add(inicio);
+                }
+            }
 
-                            entriesProcesadas.add(entry.getId().getValue());
-                        }
-                    }
+            // Pre-pasada: deleted-entry de todas las cadenas, antes de volcar ninguna entry
+            for (FuenteAtom inicio : inicios) {
+                indexarBorrados(inicio);
+            }
+            System.out.println("Indice de borrados: " + entriesDeleted.size() + " deleted-entry");
+            if (indiceVersiones != null) {
+                System.out.println("Indice de versiones: " + indiceVersiones.size() + " entries distintas");
+            }
 
-                    // siguiente fichero
-                    for (LinkType linkType : res.getLink()) {
-                        existeFicheroRisp = false;
-                        if (linkType.getRel().toLowerCase().compareTo("next") == 0) {
-                            String[] tempArray = linkType.getHref().split("/");
-                            String nombreSiguienteRIPS = tempArray[tempArray.length - 1];
-                            ficheroRISP = new File(directorioPath + "/" + nombreSiguienteRIPS);
-                            existeFicheroRisp = ficheroRISP.exists() && ficheroRISP.isFile();
+            // Procesar cada archivo ATOM de entrada
+            for (FuenteAtom ficheroRISP : inicios) {
+                System.out.println("Procesando fuente ATOM: " + ficheroRISP.getNombre());
+
+                if (poolLectura != null) {
+                    // Cadena leida en paralelo (o por delante) y volcada en orden
+                    numeroFicherosProcesados += procesarCadenaParalela(ficheroRISP);
+                } else if (poolExtraccion != null) {
+                    // Lectura, calculo de columnas y escritura en paralelo, volcando en orden
+                    numeroFicherosProcesados += procesarCadenaPipeline(ficheroRISP);
+                } else if (args.streaming && args.lecturaAnticipada > 0) {
+                    // Un hilo en segundo plano lee las entries mientras se vuelcan las anteriores
+                    numeroFicherosProcesados += procesarCadenaStreamingAnticipada(ficheroRISP);
+                } else {
+                    while (ficheroRISP != null) {
+
+                        if (args.streaming) {
+                            // Lectura entry a entry, sin cargar el FeedType completo
+                            String hrefSiguiente = indiceIncremental != null ? procesarFicheroIndexado(ficheroRISP)
+                                    : procesarFicheroStreaming(ficheroRISP);
+                            ficheroRISP = hrefSiguiente != null ? ficheroRISP.siguiente(hrefSiguiente) : null;
+                            numeroFicherosProcesados++;
+                        } else {
+                            res = leerFeed(ficheroRISP);
+
+                            procesarFeed(res);
+
+                            // siguiente fichero
+                            ficheroRISP = fuenteSiguiente(res, ficheroRISP);
+                            numeroFicherosProcesados++;
                         }
                     }
-                    inStream.close();
-                    numeroFicherosProcesados++;
                 }
                 
                 System.out.println("  Procesados " + numeroFicherosProcesados + " ficheros ATOM de esta fuente");
@@ -485,96 +335,50 @@ private static String limpiarSaltosDeLinea(String texto) {
 
             // spreeadSheetManager.insertarFiltro(seleccionLicitacionGenerales.size(), seleccionLicitacionResultados.size(), seleccionEncargosMediosPropios.size(), seleccionConsultasPreliminares.size());
 
-            // Eliminar hojas no deseadas antes de guardar (Presentacion y Resultados)
-            SXSSFWorkbook wb = spreeadSheetManager.getWorkbook();
-            // Eliminar hoja "Presentacion" si existe (con variantes de nombre)
-            int idxPresentacion = wb.getSheetIndex("Presentación");
-            if (idxPresentacion >= 0) {
-                wb.removeSheetAt(idxPresentacion);
-            }
-            int idxPresentacion2 = wb.getSheetIndex("Presentacion");
-            if (idxPresentacion2 >= 0) {
-                wb.removeSheetAt(idxPresentacion2);
-            }
-            int idxPresentacion3 = wb.getSheetIndex("PRESENTACION");
-            if (idxPresentacion3 >= 0) {
-                wb.removeSheetAt(idxPresentacion3);
-            }
-            int idxPresentacion4 = wb.getSheetIndex("presentaci\u00f3n");
-            if (idxPresentacion4 >= 0) {
-                wb.removeSheetAt(idxPresentacion4);
-            }
-            // Eliminar hoja "Resultados" si existe y está activado en .env
-            boolean removeResultados = EnvConfig.getBoolean("RESULTADOS_REMOVE", false);
-            if (removeResultados) {
-                int idxResultados = wb.getSheetIndex(SpreeadSheetManager.RESULTADOS);
-                if (idxResultados >= 0) {
-                    wb.removeSheetAt(idxResultados);
-                }
-            }
-
-            // ===================================================================
-            // 🔥 MODIFICACIÓN CLAVE: Conversión SXSSF → XSSF para Power BI
-            // ===================================================================
-            // 1. Crear archivo temporal con SXSSF
-            File tempFile = File.createTempFile("temp_excel_", ".xlsx");
-            try (FileOutputStream tempFos = new FileOutputStream(tempFile)) {
-                wb.write(tempFos);
-            } finally {
-                wb.dispose(); // Importante: liberar recursos de SXSSF
-                wb.close();
-            }
-
-            // 2. Leer archivo temporal con XSSF y reparar estructura
-            try (XSSFWorkbook xssfWorkbook = new XSSFWorkbook(tempFile);
-                 FileOutputStream finalFos = new FileOutputStream(args.outPath)) {
-                
-                // Eliminar hojas no deseadas en el XSSFWorkbook (por si acaso)
-                int idxPresentacionX = xssfWorkbook.getSheetIndex("Presentación");
-                if (idxPresentacionX >= 0) {
-                    xssfWorkbook.removeSheetAt(idxPresentacionX);
-                }
-                int idxPresentacionX2 = xssfWorkbook.getSheetIndex("Presentacion");
-                if (idxPresentacionX2 >= 0) {
-                    xssfWorkbook.removeSheetAt(idxPresentacionX2);
-                }
-                int idxPresentacionX3 = xssfWorkbook.getSheetIndex("PRESENTACION");
-                if (idxPresentacionX3 >= 0) {
-                    xssfWorkbook.removeSheetAt(idxPresentacionX3);
-                }
-                int idxPresentacionX4 = xssfWorkbook.getSheetIndex("presentaci\u00f3n");
-                if (idxPresentacionX4 >= 0) {
-                    xssfWorkbook.removeSheetAt(idxPresentacionX4);
-                }
-
-                // Añadir metadatos personalizados a la hoja "Licitaciones"
-                POIXMLProperties props = xssfWorkbook.getProperties();
-                POIXMLProperties.CustomProperties customProps = props.getCustomProperties();
-                customProps.addProperty("Name", "Licitaciones");
-                customProps.addProperty("Data", "Table");
-                customProps.addProperty("Item", "Licitaciones");
-                customProps.addProperty("Kind", "Sheet");
-                customProps.addProperty("Hidden", false);
-
-                // Forzar la creación de componentes necesarios si faltan
-                if (xssfWorkbook.getNumberOfSheets() == 0) {
-                    xssfWorkbook.createSheet("Licitaciones");
-                }
-                
-                // Asegurar que haya al menos un estilo definido
-                if (xssfWorkbook.getNumCellStyles() == 0) {
-                    xssfWorkbook.createCellStyle();
-                }
-
-                // Escribir el archivo final con XSSF (compatible con Power BI)
-                xssfWorkbook.write(finalFos);
+            // El libro se escribe en una sola pasada: las hojas que no se exportan no llegan a
+            // crearse y los metadatos que lee Power BI van directamente a docProps/custom.xml
+            POIXMLProperties.CustomProperties customProps = spreeadSheetManager.getWorkbook().getXSSFWorkbook().getProperties().getCustomProperties();
+            customProps.addProperty("Name", "Licitaciones");
+            customProps.addProperty("Data", "Table");
+            customProps.addProperty("Item", "Licitaciones");
+            customProps.addProperty("Kind", "Sheet");
+            customProps.addProperty("Hidden", false);
+            spreeadSheetManager.escribir(args.outPath);
+
+            if (indiceIncremental != null) {
+                // El Excel esta completo: los segmentos nuevos sustituyen a los anteriores
+                indiceIncremental.confirmar();
+                String resumen = "Indice incremental: " + ficherosReutilizados + " ficheros sin cambios reutilizados, "
+                        + ficherosIndexados + " leidos e indexados";
+                System.out.println(resumen);
+                PlacspLogger.info(resumen);
             }
-
-            // 3. Eliminar archivo temporal
-            tempFile.delete();
             
             PlacspLogger.processExcel(args.outPath, true);
             System.out.println("Total: " + numeroEntries + " entries procesadas, " + entriesProcesadas.size() + " únicas");
+            if (entriesDuplicadasSaltadas > 0) {
+                String resumen = "Duplicadas descartadas sin deserializar: " + entriesDuplicadasSaltadas
+                        + " entries, " + String.format("%.2f", bytesDuplicadosSaltados / (1024.0 * 1024.0)) + " MB";
+                System.out.println(resumen);
+                PlacspLogger.info(resumen);
+            }
+            if (entriesVersionAnterior > 0) {
+                String resumen = "Versiones anteriores descartadas: " + entriesVersionAnterior + " entries";
+                System.out.println(resumen);
+                PlacspLogger.info(resumen);
+            }
+            if (LimpiadorTexto.getCache().getConsultas() > 0) {
+                // Con una tasa baja y la cache llena conviene subir --cache-limpieza
+                String resumen = LimpiadorTexto.getCache().toString();
+                System.out.println(resumen);
+                PlacspLogger.info(resumen);
+            }
+            if (comprobarBinding) {
+                String resumen = "Comprobacion de binding StAX: " + entriesComprobadas + " entries comparadas con JAXB, "
+                        + entriesConDiferencias + " con diferencias";
+                System.out.println(resumen);
+                PlacspLogger.info(resumen);
+            }
 
         } catch (JAXBException e) {
             // Error al procesar el fichero ATOM
@@ -585,250 +389,893 @@ private static String limpiarSaltosDeLinea(String texto) {
         } catch (Exception e) {
             // Error inesperado
             throw e;
+        } finally {
+            if (poolLectura != null) {
+                poolLectura.shutdownNow();
+            }
+            if (poolExtraccion != null) {
+                poolExtraccion.shutdownNow();
+            }
+            if (indiceIncremental != null) {
+                indiceIncremental.descartar();
+            }
+            if (spreeadSheetManager != null) {
+                spreeadSheetManager.descartar();
+            }
+            if (indiceVersiones != null) {
+                indiceVersiones.close();
+            }
+            archivosZip.close();
         }
     }
 
+    /**
+     * Fuente inicial de una ruta de entrada. Los ZIP se anaden al conjunto de ZIPs
+     * abiertos, de forma que su cadena puede continuar en los ZIPs de otras entradas.
+     *
+     * @return La fuente, o null si la ruta no es accesible
+     */
+    private static FuenteAtom resolverEntrada(String inPath, ArchivosZip archivosZip) throws IOException {
+        File fichero = new File(inPath);
+        if (!fichero.exists() || !fichero.isFile()) {
+            System.err.println("  Advertencia: No se puede acceder al fichero: " + inPath);
+            return null;
+        }
+        if (!inPath.toLowerCase().endsWith(".zip")) {
+            return FuenteAtom.deFichero(fichero);
+        }
+
+        System.out.println("Detectado archivo ZIP, leyendo sin descomprimir: " + inPath);
+        FuenteAtom inicio = archivosZip.anadir(fichero);
+        if (inicio == null) {
+            PlacspLogger.unzip(inPath, "", false);
+            throw new FileNotFoundException("No se encontro archivo .atom en el ZIP");
+        }
+        System.out.println("Usando ATOM del ZIP: " + inicio.getNombre());
+        return inicio;
+    }
+
+    /**
+     * Procesa la cadena de ficheros que empieza en ficheroRISP leyendo los feeds en paralelo
+     * y volcandolos en el orden de la cadena, con la misma semantica de "primera aparicion"
+     * que el recorrido secuencial para entriesProcesadas y entriesDeleted.
+     *
+     * @return numero de ficheros procesados
+     */
+    private int procesarCadenaParalela(FuenteAtom ficheroRISP) throws Exception {
+        int procesados = 0;
+        HashSet<FuenteAtom> visitados = new HashSet<>();
+        FuenteAtom inicio = ficheroRISP;
+
+        while (inicio != null) {
+            List<FuenteAtom> cadena = resolverCadena(inicio, visitados);
+            inicio = null;
+
+            try (LectorCadenaParalelo<FeedType> lector = new LectorCadenaParalelo<>(cadena, poolLectura, ventanaLectura, this::leerFeed)) {
+                for (int indice = 0; indice < cadena.size(); indice++) {
+                    FeedType res = lector.siguiente();
+                    procesarFeed(res);
+                    procesados++;
+
+                    // La cadena se resolvio solo con las cabeceras: se comprueba con el feed completo
+                    FuenteAtom siguiente = fuenteSiguiente(res, cadena.get(indice));
+                    FuenteAtom esperado = indice + 1 < cadena.size() ? cadena.get(indice + 1) : null;
+                    if (!Objects.equals(siguiente, esperado)) {
+                        visitados.removeAll(cadena.subList(indice + 1, cadena.size()));
+                        if (siguiente != null && !visitados.contains(siguiente)) {
+                            inicio = siguiente;
+                        }
+                        break;
+                    }
+                }
+            }
+        }
+        return procesados;
+    }
+
+    /**
+     * Resuelve de antemano la cadena de ficheros siguiendo los enlaces "next"
+     * de la cabecera de cada feed.
+     */
+    private static List<FuenteAtom> resolverCadena(FuenteAtom inicio, HashSet<FuenteAtom> visitados) throws Exception {
+        List<FuenteAtom> cadena = new ArrayList<>();
+        FuenteAtom actual = inicio;
+        while (actual != null && visitados.add(actual)) {
+            cadena.add(actual);
+            String hrefSiguiente = AtomStreamReader.leerEnlaceSiguiente(actual);
+            actual = hrefSiguiente != null ? actual.siguiente(hrefSiguiente) : null;
+        }
+        return cadena;
+    }
+
+    /**
+     * Lectura de un feed completo desde un hilo del pool. El Unmarshaller no es
+     * thread-safe, por lo que cada hilo usa el suyo. Se le pasan los bytes para que el
+     * parser aplique la codificacion declarada en el fichero.
+     */
     @SuppressWarnings("unchecked")
-    private void procesarEntry(EntryType entry, SXSSFSheet sheet, GregorianCalendar fechaDeleted, ArrayList<DatosLicitacionGenerales> buscadorDatosSeleecionables) {
-        Cell cell;
-        ContractFolderStatusType contractFolder = ((JAXBElement<ContractFolderStatusType>) entry.getAny().get(0)).getValue();
+    private FeedType leerFeed(FuenteAtom fuente) throws Exception {
+        Unmarshaller unmarshaller = JaxbContextRegistry.getUnmarshaller(CONTEXTO_JAXB_ATOM);
+        try (InputStream in = fuente.abrir()) {
+            return ((JAXBElement<FeedType>) unmarshaller.unmarshal(in)).getValue();
+        }
+    }
 
-        Row row = sheet.createRow(sheet.getLastRowNum()+1);
-        int cellnum = 0;
+    /**
+     * Siguiente fichero de la cadena segun los enlaces del feed (solo cuenta el ultimo
+     * enlace), o null si no existe.
+     */
+    private static FuenteAtom fuenteSiguiente(FeedType res, FuenteAtom fuente) {
+        FuenteAtom siguiente = null;
+        for (LinkType linkType : res.getLink()) {
+            siguiente = null;
+            if (linkType.getRel() != null && linkType.getRel().toLowerCase().compareTo("next") == 0) {
+                siguiente = fuente.siguiente(linkType.getHref());
+            }
+        }
+        return siguiente;
+    }
 
-        cell = row.createCell(cellnum++);
-        cell.setCellValue(entry.getId().getValue().substring(entry.getId().getValue().lastIndexOf("/")+1));
-        cell = row.createCell(cellnum++);
-        cell.setCellValue(entry.getLink().get(0).getHref());
+    /**
+     * Vuelca las entries de un feed completo. Sus deleted-entry ya estan en el indice
+     * construido en la pre-pasada.
+     */
+    private void procesarFeed(FeedType res) {
+        // recorrer entries
+        numeroEntries += res.getEntry().size();
+        for (EntryType entry : res.getEntry()) {
+            procesarEntrada(entry);
+        }
+    }
 
-        GregorianCalendar updated = entry.getUpdated().getValue().toGregorianCalendar();
+    /**
+     * Modo streaming con lectura anticipada: un hilo en segundo plano recorre la cadena
+     * (incluido el salto al siguiente fichero) y deja las entries en una cola acotada,
+     * mientras este hilo las vuelca en la hoja.
+     *
+     * @return numero de ficheros procesados
+     */
+    private int procesarCadenaStreamingAnticipada(FuenteAtom ficheroRISP) throws Exception {
+        AtomicInteger ficherosLeidos = new AtomicInteger();
+        // Copia propia del hilo lector: una entry es duplicada si su id ya aparecio antes
+        // en la cadena (o en fuentes anteriores), igual que al volcarla
+        ConjuntoIds idsLeidos = new ConjuntoIds(entriesProcesadas);
+
+        try (ColaAnticipada<EntradaAtom> cola = new ColaAnticipada<>(ENTRIES_ANTICIPADAS, "placsp-lectura-anticipada", destino -> {
+            Unmarshaller unmarshaller = JaxbContextRegistry.getUnmarshaller(CONTEXTO_JAXB_ATOM);
+            AtomStreamReader lector = new AtomStreamReader(unmarshaller);
+            FuenteAtom actual = ficheroRISP;
+            while (actual != null) {
+                String hrefSiguiente = lector.leer(actual, entrada -> {
+                    // Se clasifica y deserializa en este hilo; ni las duplicadas ni los tipos
+                    // excluidos se deserializan
+                    if (!esVersionAnterior(entrada) && idsLeidos.add(entrada.getId()) && tipoIncluido(entrada.getTipo())) {
+                        deserializar(entrada);
+                    }
+                    destino.poner(entrada);
+                }, null);
+                ficherosLeidos.incrementAndGet();
 
-        if (fechaDeleted == null || fechaDeleted.compareTo(updated) < 0) {
-            cell = row.createCell(cellnum++);
-            cell.setCellValue((LocalDateTime)entry.getUpdated().getValue().toGregorianCalendar().toZonedDateTime().toLocalDateTime());
-            cell.setCellStyle(SpreeadSheetManager.getCellStyleFechaLarga());
-            cell = row.createCell(cellnum++);
-            cell.setCellValue("VIGENTE");
-        } else {
-            cell = row.createCell(cellnum++);
-            cell.setCellValue((LocalDateTime)fechaDeleted.toZonedDateTime().toLocalDateTime());
-            cell.setCellStyle(SpreeadSheetManager.getCellStyleFechaLarga());
-            cell = row.createCell(cellnum++);
-            if (((fechaDeleted.getTimeInMillis() - updated.getTimeInMillis())/1000/3660/24/365) > 5){
-                cell.setCellValue("ARCHIVADA");
-            } else {
-                cell.setCellValue("ANULADA");
+                actual = hrefSiguiente != null ? actual.siguiente(hrefSiguiente) : null;
+            }
+        })) {
+            EntradaAtom entrada;
+            while ((entrada = cola.siguiente()) != null) {
+                numeroEntries++;
+                procesarEntradaAtom(entrada);
             }
         }
+        return ficherosLeidos.get();
+    }
 
-        for (DatosLicitacionGenerales dato: buscadorDatosSeleecionables) {
+    /**
+     * Modo pipeline: el hilo lector recorre la cadena y, para cada entry nueva de un tipo
+     * incluido, encarga a los extractores su deserializacion y el calculo de sus filas.
+     * Este hilo es el unico escritor: recoge los resultados en el orden de lectura, de
+     * forma que el Excel es identico al del modo secuencial.
+     *
+     * La cola del lector esta acotada (ENTRIES_ANTICIPADAS), y con ella las extracciones
+     * en vuelo. Al terminar se publica la profundidad de las colas y la espera del escritor.
+     *
+     * @return numero de ficheros procesados
+     */
+    private int procesarCadenaPipeline(FuenteAtom ficheroRISP) throws Exception {
+        AtomicInteger ficherosLeidos = new AtomicInteger();
+        // Copia propia del hilo lector, como en procesarCadenaStreamingAnticipada
+        ConjuntoIds idsLeidos = new ConjuntoIds(entriesProcesadas);
+        MetricasCola metricasLectura = new MetricasCola("cola de entries leidas", ENTRIES_ANTICIPADAS);
+        MetricasCola metricasExtraccion = new MetricasCola("cola de extraccion", 0);
+        long esperaEscritor = 0;
+
+        try (ColaAnticipada<EntradaEnProceso> cola = new ColaAnticipada<>(ENTRIES_ANTICIPADAS, "placsp-lectura-pipeline", destino -> {
+            AtomStreamReader lector = new AtomStreamReader(JaxbContextRegistry.getUnmarshaller(CONTEXTO_JAXB_ATOM));
+            FuenteAtom actual = ficheroRISP;
+            while (actual != null) {
+                String hrefSiguiente = lector.leer(actual, entrada -> {
+                    // Las duplicadas y los tipos excluidos no llegan a los extractores
+                    Future<EntradaExtraida> extraccion = null;
+                    if (!esVersionAnterior(entrada) && idsLeidos.add(entrada.getId())) {
+                        TipoEntry tipo = entrada.getTipo();
+                        if (tipoIncluido(tipo)) {
+                            long fechaDeleted = entriesDeleted.get(entrada.getId());
+                            extraccion = poolExtraccion.submit(() -> extraer(entrada, tipo, fechaDeleted));
+                        }
+                    }
+                    destino.poner(new EntradaEnProceso(entrada, extraccion));
+                }, null);
+                ficherosLeidos.incrementAndGet();
 
-            Object datoCodice = dato.valorCodice(contractFolder);
-            cell = row.createCell(cellnum++);
-            if (datoCodice instanceof BigDecimal) {
-                cell.setCellValue((double) ((BigDecimal)datoCodice).doubleValue());
-            } else if (datoCodice instanceof String) {
-                // Solo aplicar limpieza al campo OBJETO_CONTRATO (descripción)
-                if (dato == DatosLicitacionGenerales.OBJETO_CONTRATO
-                ) {
-                    cell.setCellValue((String) datoCodice);
-                    //cell.setCellValue(limpiarSaltosDeLinea((String) datoCodice));
-                } else {
-                    cell.setCellValue((String) datoCodice);
+                actual = hrefSiguiente != null ? actual.siguiente(hrefSiguiente) : null;
+            }
+        })) {
+            while (true) {
+                metricasLectura.registrar(cola.getProfundidad());
+                metricasExtraccion.registrar(poolExtraccion.getQueue().size());
+
+                long inicio = System.nanoTime();
+                EntradaEnProceso pendiente = cola.siguiente();
+                if (pendiente == null) {
+                    esperaEscritor += System.nanoTime() - inicio;
+                    break;
+                }
+                numeroEntries++;
+                if (pendiente.extraccion == null) {
+                    // Duplicada o de un tipo excluido: no hay nada que deserializar
+                    esperaEscritor += System.nanoTime() - inicio;
+                    procesarEntradaAtom(pendiente.entrada);
+                    continue;
+                }
+                EntradaExtraida extraida = resultado(pendiente.extraccion);
+                esperaEscritor += System.nanoTime() - inicio;
+
+                if (comprobarBinding) {
+                    comprobarBinding(pendiente.entrada, extraida.entry, pendiente.entrada.getTipo());
+                }
+                if (entriesProcesadas.add(pendiente.entrada.getId())) {
+                    escribirFilas(extraida.filas);
                 }
-            } else if (datoCodice instanceof GregorianCalendar) {
-                cell.setCellValue((LocalDateTime) ((GregorianCalendar)datoCodice).toZonedDateTime().toLocalDateTime());
-            } else if (datoCodice instanceof Boolean) {
-                cell.setCellValue((Boolean) datoCodice);
             }
-            cell.setCellStyle(SpreeadSheetManager.getCellStyleFormato(dato.getFormato()));
         }
+
+        String resumen = "Pipeline: " + metricasLectura + "; " + metricasExtraccion
+                + "; espera del escritor " + (esperaEscritor / 1_000_000) + " ms";
+        System.out.println("  " + resumen);
+        PlacspLogger.info(resumen);
+        return ficherosLeidos.get();
     }
 
-    @SuppressWarnings("unchecked")
-    private void procesarEntryResultados(EntryType entry, SXSSFSheet sheet, GregorianCalendar fechaDeleted, ArrayList<DatosResultados> buscadorDatosResultados) {
-        Cell cell;
-        ContractFolderStatusType contractFolder = ((JAXBElement<ContractFolderStatusType>) entry.getAny().get(0)).getValue();
+    /**
+     * Trabajo de un extractor: deserializa la entry y calcula sus filas.
+     */
+    private EntradaExtraida extraer(EntradaAtom entrada, TipoEntry tipo, long fechaDeleted) throws Exception {
+        EntryType entry = deserializar(entrada);
+        return new EntradaExtraida(comprobarBinding ? entry : null, extraerFilas(entry, tipo, fechaDeleted));
+    }
 
-        if(contractFolder.getTenderResult() != null) {
-            for (int indice = 0; indice < contractFolder.getTenderResult().size(); indice++) {
-                Row row = sheet.createRow(sheet.getLastRowNum()+1);
-                int cellnum = 0;
-
-                cell = row.createCell(cellnum++);
-                cell.setCellValue(entry.getId().getValue().substring(entry.getId().getValue().lastIndexOf("/")+1));
-                cell = row.createCell(cellnum++);
-                cell.setCellValue(entry.getLink().get(0).getHref());
-
-                GregorianCalendar updated = entry.getUpdated().getValue().toGregorianCalendar();
-                if (fechaDeleted == null || fechaDeleted.compareTo(updated) < 0) {
-                    cell = row.createCell(cellnum++);
-                    cell.setCellValue((LocalDateTime)entry.getUpdated().getValue().toGregorianCalendar().toZonedDateTime().toLocalDateTime());
-                    cell.setCellStyle(SpreeadSheetManager.getCellStyleFechaLarga());
-                } else {
-                    cell = row.createCell(cellnum++);
-                    cell.setCellValue((LocalDateTime)fechaDeleted.toZonedDateTime().toLocalDateTime());
-                    cell.setCellStyle(SpreeadSheetManager.getCellStyleFechaLarga());
-                }
+    /**
+     * Resultado de un extractor, relanzando la excepcion original si fallo.
+     */
+    private static EntradaExtraida resultado(Future<EntradaExtraida> extraccion) throws Exception {
+        try {
+            return extraccion.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
 
-                for (DatosResultados dato: buscadorDatosResultados) {
-                    Object datoCodice = dato.valorCodice(contractFolder, indice);
-                    cell = row.createCell(cellnum++);
-                    if (datoCodice instanceof BigDecimal) {
-                        cell.setCellValue((double) ((BigDecimal)datoCodice).doubleValue());
-                    } else if (datoCodice instanceof String) {
-                        // DatosResultados no tiene OBJETO_CONTRATO, no aplicar limpieza
-                        cell.setCellValue((String) datoCodice);
-                    } else if (datoCodice instanceof GregorianCalendar) {
-                        cell.setCellValue((LocalDateTime) ((GregorianCalendar)datoCodice).toZonedDateTime().toLocalDateTime());
-                    } else if (datoCodice instanceof Boolean) {
-                        cell.setCellValue((Boolean) datoCodice);
+    /**
+     * Entry leida en modo pipeline, con su extraccion en curso (null si no se vuelca).
+     */
+    private static final class EntradaEnProceso {
+        private final EntradaAtom entrada;
+        private final Future<EntradaExtraida> extraccion;
+
+        private EntradaEnProceso(EntradaAtom entrada, Future<EntradaExtraida> extraccion) {
+            this.entrada = entrada;
+            this.extraccion = extraccion;
+        }
+    }
+
+    /**
+     * Filas calculadas por un extractor (y la entry, solo si hay que comprobar el binding).
+     */
+    private static final class EntradaExtraida {
+        private final EntryType entry;
+        private final List<FilaExcel> filas;
+
+        private EntradaExtraida(EntryType entry, List<FilaExcel> filas) {
+            this.entry = entry;
+            this.filas = filas;
+        }
+    }
+
+    /**
+     * Procesa un fichero ATOM en modo streaming: las entries se recorren de una en una,
+     * de forma que nunca se mantiene el FeedType completo en memoria.
+     *
+     * @return href del enlace "next" del fichero, o null si es el ultimo de la cadena
+     */
+    private String procesarFicheroStreaming(FuenteAtom ficheroRISP) throws Exception {
+        AtomStreamReader lector = new AtomStreamReader(JaxbContextRegistry.getUnmarshaller(CONTEXTO_JAXB_ATOM));
+        return lector.leer(ficheroRISP, entrada -> {
+            numeroEntries++;
+            procesarEntradaAtom(entrada);
+        }, null);
+    }
+
+    /**
+     * Pre-pasada sobre la cadena que empieza en ficheroRISP: recoge en entriesDeleted las
+     * deleted-entry de todos sus ficheros (solo sus atributos, las entries se saltan), de
+     * forma que un borrado publicado en un fichero posterior tambien se aplica a las entries
+     * de los ficheros anteriores. Con --ultima-version recoge tambien en indiceVersiones el
+     * id y la fecha updated de cada entry.
+     */
+    private void indexarBorrados(FuenteAtom ficheroRISP) throws Exception {
+        HashSet<FuenteAtom> visitados = new HashSet<>();
+        FuenteAtom actual = ficheroRISP;
+        while (actual != null && visitados.add(actual)) {
+            String hrefSiguiente;
+            IndiceIncremental.Segmento segmento = indiceIncremental != null ? indiceIncremental.leer(actual) : null;
+            if (segmento != null) {
+                // Fichero sin cambios: no hace falta abrirlo
+                for (String[] borrado : segmento.getBorrados()) {
+                    entriesDeleted.registrar(borrado[0], borrado[1]);
+                }
+                if (indiceVersiones != null) {
+                    for (IndiceIncremental.EntradaIndexada entrada : segmento.getEntradas()) {
+                        indiceVersiones.registrar(entrada.getId(), entrada.getMillisUpdated());
                     }
-                    cell.setCellStyle(SpreeadSheetManager.getCellStyleFormato(dato.getFormato()));
                 }
+                hrefSiguiente = segmento.getSiguiente();
+                segmentos.put(actual, segmento);
+            } else if (indiceIncremental != null) {
+                // Se guardan para el segmento nuevo del fichero
+                List<String[]> borrados = new ArrayList<>();
+                hrefSiguiente = AtomStreamReader.leerBorrados(actual, (ref, when) -> {
+                    entriesDeleted.registrar(ref, when);
+                    borrados.add(new String[] {ref, when});
+                }, manejadorVersiones());
+                borradosLeidos.put(actual, borrados);
+            } else {
+                hrefSiguiente = AtomStreamReader.leerBorrados(actual, entriesDeleted::registrar, manejadorVersiones());
             }
+            actual = hrefSiguiente != null ? actual.siguiente(hrefSiguiente) : null;
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void procesarEntryCompleta(EntryType entry, SXSSFSheet sheet, GregorianCalendar fechaDeleted,
-                                       ArrayList<DatosLicitacionGenerales> buscadorDatosSeleccionables,
-                                       ArrayList<DatosResultados> buscadorDatosResultados) {
-        Cell cell;
-        ContractFolderStatusType contractFolder = ((JAXBElement<ContractFolderStatusType>) entry.getAny().get(0)).getValue();
+    /**
+     * Manejador de la pre-pasada que registra la version de cada entry, o null si no hace
+     * falta leer las entries (sin --ultima-version).
+     */
+    private AtomStreamReader.ManejadorEntry manejadorVersiones() {
+        if (indiceVersiones == null) {
+            return null;
+        }
+        return entrada -> indiceVersiones.registrar(entrada.getId(), IndiceVersiones.millis(entrada.getUpdated()));
+    }
 
-        if(contractFolder.getTenderResult().size() > 0) {
-            for (int indice = 0; indice < contractFolder.getTenderResult().size(); indice++) {
-                procesarEntry(entry, sheet, fechaDeleted, buscadorDatosSeleccionables);
-                Row row = sheet.getRow(sheet.getLastRowNum());
-                int cellnum = buscadorDatosSeleccionables.size()+4;
-                for (DatosResultados dato: buscadorDatosResultados) {
-                    Object datoCodice = dato.valorCodice(contractFolder, indice);
-                    cell = row.createCell(cellnum++);
-                    if (datoCodice instanceof BigDecimal) {
-                        cell.setCellValue((double) ((BigDecimal)datoCodice).doubleValue());
-                    } else if (datoCodice instanceof String) {
-                        // DatosResultados no tiene OBJETO_CONTRATO, no aplicar limpieza
-                        cell.setCellValue((String) datoCodice);
-                    } else if (datoCodice instanceof GregorianCalendar) {
-                        cell.setCellValue((LocalDateTime) ((GregorianCalendar)datoCodice).toZonedDateTime().toLocalDateTime());
-                    } else if (datoCodice instanceof Boolean) {
-                        cell.setCellValue((Boolean) datoCodice);
-                    }
-                    cell.setCellStyle(SpreeadSheetManager.getCellStyleFormato(dato.getFormato()));
+    /**
+     * Con --ultima-version, indica si hay en las cadenas una version mas reciente (segun
+     * updated) de la entry; sin el, nunca la hay y se conserva la primera que aparece.
+     */
+    private boolean esVersionAnterior(EntradaAtom entrada) throws Exception {
+        return indiceVersiones != null
+                && !indiceVersiones.esUltima(entrada.getId(), IndiceVersiones.millis(entrada.getUpdated()));
+    }
+
+    private boolean esVersionAnterior(EntryType entry) {
+        return indiceVersiones != null && !indiceVersiones.esUltima(entry.getId().getValue(),
+                entry.getUpdated().getValue().toGregorianCalendar().getTimeInMillis());
+    }
+
+    private boolean esVersionAnterior(IndiceIncremental.EntradaIndexada entrada) {
+        return indiceVersiones != null && !indiceVersiones.esUltima(entrada.getId(), entrada.getMillisUpdated());
+    }
+
+    /**
+     * Modo streaming con --indice. Si el segmento guardado del fichero sigue valiendo,
+     * vuelca sus filas sin abrir el ATOM; si no, lo procesa en streaming y escribe su
+     * segmento nuevo.
+     *
+     * @return href del enlace "next" del fichero, o null si es el ultimo de la cadena
+     */
+    private String procesarFicheroIndexado(FuenteAtom ficheroRISP) throws Exception {
+        IndiceIncremental.Segmento segmento = segmentos.get(ficheroRISP);
+        if (segmento != null) {
+            List<IndiceIncremental.EntradaIndexada> entradas = segmento.getEntradas();
+            if (reutilizable(entradas)) {
+                reutilizarSegmento(entradas);
+                ficherosReutilizados++;
+                return segmento.getSiguiente();
+            }
+        }
+
+        List<String[]> borrados = segmento != null ? segmento.getBorrados() : borradosLeidos.get(ficheroRISP);
+        IndiceIncremental.Escritura escritura = borrados != null ? indiceIncremental.escribir(ficheroRISP, borrados) : null;
+        AtomStreamReader lector = new AtomStreamReader(JaxbContextRegistry.getUnmarshaller(CONTEXTO_JAXB_ATOM));
+        String hrefSiguiente = lector.leer(ficheroRISP, entrada -> {
+            numeroEntries++;
+            boolean duplicada = entriesProcesadas.contains(entrada.getId());
+            List<FilaExcel> filas = procesarEntradaAtom(entrada);
+            if (escritura != null) {
+                escritura.anadir(entrada.getId(), entrada.getTamano(), duplicada ? null : entrada.getTipo(),
+                        entrada.getUpdated(), filas);
+            }
+        }, null);
+        if (escritura != null) {
+            escritura.cerrar(hrefSiguiente);
+        }
+        ficherosIndexados++;
+        return hrefSiguiente;
+    }
+
+    /**
+     * Un segmento se puede reutilizar si tiene las filas de todas las entries que hay que
+     * volcar ahora. Una entry que en la ejecucion anterior era duplicada no las tiene.
+     */
+    private boolean reutilizable(List<IndiceIncremental.EntradaIndexada> entradas) {
+        HashSet<String> vistas = new HashSet<>();
+        for (IndiceIncremental.EntradaIndexada entrada : entradas) {
+            if (entriesProcesadas.contains(entrada.getId()) || esVersionAnterior(entrada) || !vistas.add(entrada.getId())) {
+                continue;
+            }
+            if (entrada.getTipo() != null && !tipoIncluido(entrada.getTipo())) {
+                continue;
+            }
+            if (entrada.getFilas() == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Vuelca las entries de un segmento igual que procesarEntradaAtom, recalculando la
+     * fecha y el estado de cada fila con las deleted-entry de esta ejecucion.
+     */
+    private void reutilizarSegmento(List<IndiceIncremental.EntradaIndexada> entradas) {
+        for (IndiceIncremental.EntradaIndexada entrada : entradas) {
+            numeroEntries++;
+            if (entriesProcesadas.contains(entrada.getId())) {
+                entriesDuplicadasSaltadas++;
+                bytesDuplicadosSaltados += entrada.getTamano();
+                continue;
+            }
+            if (esVersionAnterior(entrada)) {
+                entriesVersionAnterior++;
+                continue;
+            }
+            entriesProcesadas.add(entrada.getId());
+            if (entrada.getTipo() != null && !tipoIncluido(entrada.getTipo())) {
+                continue;
+            }
+
+            XMLGregorianCalendar updated = entrada.getUpdated();
+            long fechaDeleted = entriesDeleted.get(entrada.getId());
+            List<FilaExcel> filas = new ArrayList<>(entrada.getFilas().size());
+            for (FilaExcel guardada : entrada.getFilas()) {
+                FilaExcel fila = new FilaExcel(guardada.getHoja(), guardada.getColumnas());
+                // Identificador y enlace
+                fila.anadirCopia(guardada, 0);
+                fila.anadirCopia(guardada, 1);
+                anadirFechaEstado(fila, updated, fechaDeleted, guardada.getCeldasCabecera() > 3);
+                fila.marcarCabecera();
+                for (int i = guardada.getCeldasCabecera(); i < guardada.getColumnas(); i++) {
+                    fila.anadirCopia(guardada, i);
                 }
+                filas.add(fila);
             }
-        } else {
-            procesarEntry(entry, sheet, fechaDeleted, buscadorDatosSeleccionables);
+            escribirFilas(filas);
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void procesarEncargo(EntryType entry, SXSSFSheet sheet, GregorianCalendar fechaDeleted, ArrayList<DatosEMP> buscadorDatosSelecionables) {
-        Cell cell;
-        ContractFolderStatusType contractFolder = ((JAXBElement<ContractFolderStatusType>) entry.getAny().get(0)).getValue();
+    /**
+     * Configuracion que determina las filas guardadas en el indice: si cambia, los
+     * segmentos anteriores no se reutilizan.
+     */
+    private String configuracionIndice() {
+        return "dosTablas=" + dosTablas
+                + ";hojaResultados=" + hojaResultados
+                + ";licitaciones=" + seleccionLicitacionGenerales
+                + ";resultados=" + seleccionLicitacionResultados
+                + ";emp=" + seleccionEncargosMediosPropios
+                + ";cpm=" + seleccionConsultasPreliminares
+                + ";formatos=" + Arrays.toString(EnumFormatos.values());
+    }
 
-        Row row = sheet.createRow(sheet.getLastRowNum()+1);
-        int cellnum = 0;
+    /**
+     * Procesa una entry leida en modo streaming. El identificador y el tipo se obtienen
+     * sin deserializarla, de forma que ni las entries ya procesadas ni las de tipos
+     * excluidos (--sin-emp, --sin-cpm) pasan por JAXB.
+     *
+     * @return Filas volcadas, o null si la entry no se vuelca
+     */
+    private List<FilaExcel> procesarEntradaAtom(EntradaAtom entrada) throws Exception {
+        if (entriesProcesadas.contains(entrada.getId())) {
+            entriesDuplicadasSaltadas++;
+            bytesDuplicadosSaltados += entrada.getTamano();
+            return null;
+        }
+        if (esVersionAnterior(entrada)) {
+            // Se volcara la version mas reciente, en el fichero en que aparezca
+            entriesVersionAnterior++;
+            return null;
+        }
+        TipoEntry tipo = entrada.getTipo();
+        if (!tipoIncluido(tipo)) {
+            entriesProcesadas.add(entrada.getId());
+            return null;
+        }
+        EntryType entry = deserializar(entrada);
+        if (comprobarBinding) {
+            comprobarBinding(entrada, entry, tipo);
+        }
+        List<FilaExcel> filas = extraerFilas(entry, tipo, entriesDeleted.get(entry.getId().getValue()));
+        escribirFilas(filas);
+        entriesProcesadas.add(entry.getId().getValue());
+        return filas;
+    }
 
-        cell = row.createCell(cellnum++);
-        cell.setCellValue(entry.getId().getValue().substring(entry.getId().getValue().lastIndexOf("/")+1));
-        cell = row.createCell(cellnum++);
-        cell.setCellValue(entry.getLink().get(0).getHref());
+    /**
+     * Columnas de un grupo de --columnas ("licitaciones=ESTADO,OBJETO_CONTRATO;cpm=..."),
+     * en el orden del enum. Si el grupo no aparece en la especificacion, todas.
+     *
+     * @throws IllegalArgumentException Si un grupo o una columna no existen
+     */
+    static <E extends Enum<E>> ArrayList<E> seleccionColumnas(Class<E> tipo, String grupo, String columnas) {
+        if (columnas == null || columnas.trim().isEmpty()) {
+            return new ArrayList<>(EnumSet.allOf(tipo));
+        }
+        EnumSet<E> seleccion = null;
+        for (String especificacion : columnas.split(";")) {
+            if (especificacion.trim().isEmpty()) {
+                continue;
+            }
+            int igual = especificacion.indexOf('=');
+            String nombreGrupo = (igual >= 0 ? especificacion.substring(0, igual) : especificacion).trim().toLowerCase();
+            if (!Arrays.asList(GRUPO_LICITACIONES, GRUPO_RESULTADOS, GRUPO_EMP, GRUPO_CPM).contains(nombreGrupo)) {
+                throw new IllegalArgumentException("Grupo de columnas desconocido: " + nombreGrupo);
+            }
+            if (!nombreGrupo.equals(grupo)) {
+                continue;
+            }
+            if (seleccion == null) {
+                seleccion = EnumSet.noneOf(tipo);
+            }
+            String lista = igual >= 0 ? especificacion.substring(igual + 1) : "";
+            for (String nombre : lista.split(",")) {
+                if (nombre.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    seleccion.add(Enum.valueOf(tipo, nombre.trim().toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Columna desconocida en " + grupo + ": " + nombre.trim());
+                }
+            }
+        }
+        return new ArrayList<>(seleccion != null ? seleccion : EnumSet.allOf(tipo));
+    }
 
-        GregorianCalendar updated = entry.getUpdated().getValue().toGregorianCalendar();
+    /**
+     * Elementos CODICE que necesitan las columnas seleccionadas, para que EnlazadorStax
+     * salte el resto. TenderResult siempre hace falta: cada uno da una fila de resultados.
+     */
+    private Set<String> elementosColumnas() {
+        Set<String> elementos = new HashSet<>();
+        elementos.add("TenderResult");
+        for (DatosLicitacionGenerales dato : seleccionLicitacionGenerales) {
+            elementos.addAll(Arrays.asList(dato.getElementos()));
+        }
+        for (DatosResultados dato : seleccionLicitacionResultados) {
+            elementos.addAll(Arrays.asList(dato.getElementos()));
+        }
+        for (DatosEMP dato : seleccionEncargosMediosPropios) {
+            elementos.addAll(Arrays.asList(dato.getElementos()));
+        }
+        for (DatosCPM dato : seleccionConsultasPreliminares) {
+            elementos.addAll(Arrays.asList(dato.getElementos()));
+        }
+        return elementos;
+    }
 
-        if (fechaDeleted == null || fechaDeleted.compareTo(updated) < 0) {
-            cell = row.createCell(cellnum++);
-            cell.setCellValue((LocalDateTime)entry.getUpdated().getValue().toGregorianCalendar().toZonedDateTime().toLocalDateTime());
-            cell.setCellStyle(SpreeadSheetManager.getCellStyleFechaLarga());
-            cell = row.createCell(cellnum++);
-            cell.setCellValue("VIGENTE");
-        } else {
-            cell = row.createCell(cellnum++);
-            cell.setCellValue((LocalDateTime)fechaDeleted.toZonedDateTime().toLocalDateTime());
-            cell.setCellStyle(SpreeadSheetManager.getCellStyleFechaLarga());
-            cell = row.createCell(cellnum++);
-            if (((fechaDeleted.getTimeInMillis() - updated.getTimeInMillis())/1000/3660/24/365) > 5){
-                cell.setCellValue("ARCHIVADA");
-            } else {
-                cell.setCellValue("ANULADA");
+    /**
+     * Deserializa una entry con el binding seleccionado. Se puede llamar desde el hilo
+     * de lectura anticipada: cada hilo usa su Unmarshaller y el enlazador es thread-safe.
+     */
+    private EntryType deserializar(EntradaAtom entrada) throws Exception {
+        if (enlazadorStax != null) {
+            return entrada.getEntry(enlazadorStax);
+        }
+        return entrada.getEntry(JaxbContextRegistry.getUnmarshaller(CONTEXTO_JAXB_ATOM));
+    }
+
+    /**
+     * --comprobar-binding: deserializa la entry tambien con JAXB y compara todas las
+     * columnas que se vuelcan para su tipo, avisando de las que difieren.
+     */
+    private void comprobarBinding(EntradaAtom entrada, EntryType entryStax, TipoEntry tipo) throws Exception {
+        EntryType entryJaxb = entrada.leerConJaxb(JaxbContextRegistry.getUnmarshaller(CONTEXTO_JAXB_ATOM));
+        List<String> columnas = new ArrayList<>();
+        List<Object> valoresJaxb = new ArrayList<>();
+        List<Object> valoresStax = new ArrayList<>();
+        valoresExportados(entryJaxb, tipo, columnas, valoresJaxb);
+        valoresExportados(entryStax, tipo, null, valoresStax);
+
+        entriesComprobadas++;
+        List<String> diferentes = new ArrayList<>();
+        for (int i = 0; i < columnas.size(); i++) {
+            Object valorStax = i < valoresStax.size() ? valoresStax.get(i) : null;
+            if (!Objects.equals(valoresJaxb.get(i), valorStax)) {
+                diferentes.add(columnas.get(i) + " (JAXB: " + valoresJaxb.get(i) + ", StAX: " + valorStax + ")");
+            }
+        }
+        if (!diferentes.isEmpty() || valoresStax.size() != valoresJaxb.size()) {
+            entriesConDiferencias++;
+            if (entriesConDiferencias <= MAX_DIFERENCIAS_DETALLADAS) {
+                String aviso = "  Aviso: la entry " + entrada.getId() + " difiere entre JAXB y StAX: " + diferentes;
+                System.out.println(aviso);
+                PlacspLogger.warning(aviso);
             }
         }
+    }
 
-        for (DatosEMP dato: buscadorDatosSelecionables) {
-            Object datoCodice = dato.valorCodice(contractFolder);
-            cell = row.createCell(cellnum++);
-            if (datoCodice instanceof BigDecimal) {
-                cell.setCellValue((double) ((BigDecimal)datoCodice).doubleValue());
-            } else if (datoCodice instanceof String) {
-                // Solo aplicar limpieza al campo OBJETO_CONTRATO (descripción)
-                if (dato == DatosEMP.OBJETO_CONTRATO) {
-                    cell.setCellValue(limpiarSaltosDeLinea((String) datoCodice));
+    /**
+     * Valores que se vuelcan de una entry de un tipo, en el orden de las columnas
+     * (una fila por TenderResult). Una columna que falla se registra con su excepcion.
+     *
+     * @param columnas Si no es null, recibe el nombre de cada valor
+     */
+    private void valoresExportados(EntryType entry, TipoEntry tipo, List<String> columnas, List<Object> valores) {
+        anadirValor(columnas, valores, "id", () -> entry.getId().getValue());
+        anadirValor(columnas, valores, "link", () -> entry.getLink().get(0).getHref());
+        anadirValor(columnas, valores, "updated", () -> entry.getUpdated().getValue());
+
+        ContextoEntry contexto = contextoEntry(entry, tipo);
+        if (tipo == TipoEntry.CPM) {
+            for (DatosCPM dato : seleccionConsultasPreliminares) {
+                anadirValor(columnas, valores, dato.name(), () -> dato.valorCodice(contexto));
+            }
+            return;
+        }
+
+        if (tipo == TipoEntry.EMP) {
+            for (DatosEMP dato : seleccionEncargosMediosPropios) {
+                anadirValor(columnas, valores, dato.name(), () -> dato.valorCodice(contexto));
+            }
+            return;
+        }
+        for (DatosLicitacionGenerales dato : seleccionLicitacionGenerales) {
+            anadirValor(columnas, valores, dato.name(), () -> dato.valorCodice(contexto));
+        }
+        int resultados = contexto.getContractFolder().getTenderResult().size();
+        for (int indice = 0; indice < resultados; indice++) {
+            int indiceResultado = indice;
+            for (DatosResultados dato : seleccionLicitacionResultados) {
+                anadirValor(columnas, valores, dato.name() + "[" + indice + "]", () -> dato.valorCodice(contexto, indiceResultado));
+            }
+        }
+    }
+
+    private static void anadirValor(List<String> columnas, List<Object> valores, String columna, Supplier<Object> valor) {
+        if (columnas != null) {
+            columnas.add(columna);
+        }
+        try {
+            valores.add(valor.get());
+        } catch (RuntimeException e) {
+            valores.add(e.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Indica si las entries del tipo indicado tienen hoja en el Excel.
+     */
+    private boolean tipoIncluido(TipoEntry tipo) {
+        switch (tipo) {
+            case CPM:
+                return seleccionConsultasPreliminares.size() > 0;
+            case EMP:
+                return seleccionEncargosMediosPropios.size() > 0;
+            default:
+                return true;
+        }
+    }
+
+    private void procesarEntrada(EntryType entry) {
+        procesarEntrada(entry, TipoEntry.de(entry));
+    }
+
+    /**
+     * Vuelca una entry en la hoja correspondiente a su tipo (CPM, EMP o licitacion),
+     * salvo que ya se haya procesado una entry con el mismo identificador o que sea una
+     * version anterior de otra (--ultima-version).
+     */
+    private void procesarEntrada(EntryType entry, TipoEntry tipo) {
+        String id = entry.getId().getValue();
+        if (entriesProcesadas.contains(id)) {
+            return;
+        }
+        if (esVersionAnterior(entry)) {
+            entriesVersionAnterior++;
+            return;
+        }
+        escribirFilas(extraerFilas(entry, tipo, entriesDeleted.get(id)));
+        entriesProcesadas.add(id);
+    }
+
+    /**
+     * Escribe en el libro las filas calculadas de una entry. Solo lo hace un hilo.
+     */
+    private void escribirFilas(List<FilaExcel> filas) {
+        try {
+            for (FilaExcel fila : filas) {
+                spreeadSheetManager.getEscritor(fila.getHoja()).escribir(fila);
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Calcula las filas de una entry en la hoja de su tipo. No toca el libro, de forma
+     * que se puede ejecutar en los hilos extractores.
+     */
+    private List<FilaExcel> extraerFilas(EntryType entry, TipoEntry tipo, long fechaDeleted) {
+        List<FilaExcel> filas = new ArrayList<>();
+        if (tipo == TipoEntry.CPM) {
+            if (seleccionConsultasPreliminares.size() > 0) {
+                filas.add(filaCPM(entry, contextoEntry(entry, tipo), fechaDeleted, seleccionConsultasPreliminares));
+            }
+        } else if (tipo == TipoEntry.EMP) {
+            if (seleccionEncargosMediosPropios.size() > 0) {
+                filas.add(filaEncargo(entry, contextoEntry(entry, tipo), fechaDeleted, seleccionEncargosMediosPropios));
+            }
+        } else if (dosTablas) {
+            ContextoEntry contexto = contextoEntry(entry, tipo);
+            filas.add(filaEntry(entry, contexto, SpreeadSheetManager.LICITACIONES, fechaDeleted, seleccionLicitacionGenerales, 0));
+            if (hojaResultados) {
+                filas.addAll(filasResultados(entry, contexto, fechaDeleted, seleccionLicitacionResultados));
+            }
+        } else {
+            filas.addAll(filasCompletas(entry, contextoEntry(entry, tipo), fechaDeleted, seleccionLicitacionGenerales, seleccionLicitacionResultados));
+        }
+        return filas;
+    }
+
+    /**
+     * Objetos CODICE de la entry que comparten todas sus columnas, resueltos una vez.
+     */
+    private static ContextoEntry contextoEntry(EntryType entry, TipoEntry tipo) {
+        Object contenido = ((JAXBElement<?>) entry.getAny().get(0)).getValue();
+        if (tipo == TipoEntry.CPM) {
+            return new ContextoEntry((PreliminaryMarketConsultationStatusType) contenido);
+        }
+        return new ContextoEntry((ContractFolderStatusType) contenido);
+    }
+
+    /**
+     * Primeras celdas de todas las filas: identificador, enlace, fecha de actualizacion
+     * (o de borrado) y, si se pide, el estado (VIGENTE, ANULADA o ARCHIVADA).
+     */
+    private static void anadirCabecera(FilaExcel fila, EntryType entry, long fechaDeleted, boolean conEstado) {
+        fila.anadir(entry.getId().getValue().substring(entry.getId().getValue().lastIndexOf("/")+1), null);
+        fila.anadir(entry.getLink().get(0).getHref(), null);
+        anadirFechaEstado(fila, entry.getUpdated().getValue(), fechaDeleted, conEstado);
+        fila.marcarCabecera();
+    }
+
+    /**
+     * Fecha de actualizacion de la entry, o la de su deleted-entry si es posterior, y si
+     * se pide el estado que corresponde.
+     */
+    private static void anadirFechaEstado(FilaExcel fila, XMLGregorianCalendar updated, long fechaDeleted, boolean conEstado) {
+        // El instante de updated solo hace falta para compararlo con el del borrado
+        long millisUpdated = fechaDeleted == IndiceBorrados.SIN_BORRADO ? 0 : updated.toGregorianCalendar().getTimeInMillis();
+        if (fechaDeleted == IndiceBorrados.SIN_BORRADO || IndiceBorrados.millis(fechaDeleted) < millisUpdated) {
+            fila.anadirNumero(FechasExcel.serial(updated), SpreeadSheetManager.getCellStyleFechaLarga());
+            if (conEstado) {
+                fila.anadir("VIGENTE", null);
+            }
+        } else {
+            fila.anadirNumero(IndiceBorrados.serialExcel(fechaDeleted), SpreeadSheetManager.getCellStyleFechaLarga());
+            if (conEstado) {
+                if (((IndiceBorrados.millis(fechaDeleted) - millisUpdated)/1000/3660/24/365) > 5){
+                    fila.anadir("ARCHIVADA", null);
                 } else {
-                    cell.setCellValue((String) datoCodice);
+                    fila.anadir("ANULADA", null);
                 }
-            } else if (datoCodice instanceof GregorianCalendar) {
-                cell.setCellValue((LocalDateTime) ((GregorianCalendar)datoCodice).toZonedDateTime().toLocalDateTime());
-            } else if (datoCodice instanceof Boolean) {
-                cell.setCellValue((Boolean) datoCodice);
             }
-            cell.setCellStyle(SpreeadSheetManager.getCellStyleFormato(dato.getFormato()));
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void procesarCPM(EntryType entry, SXSSFSheet sheet, GregorianCalendar fechaDeleted, ArrayList<DatosCPM> buscadorDatosSelecionables) {
-        Cell cell;
-        PreliminaryMarketConsultationStatusType preliminaryMarketConsultationStatusType = ((JAXBElement<PreliminaryMarketConsultationStatusType>) entry.getAny().get(0)).getValue();
+    /**
+     * @param celdasExtra Celdas que se anadiran despues (columnas de resultados)
+     */
+    private FilaExcel filaEntry(EntryType entry, ContextoEntry contexto, String hoja, long fechaDeleted, ArrayList<DatosLicitacionGenerales> buscadorDatosSeleecionables, int celdasExtra) {
+        FilaExcel fila = new FilaExcel(hoja, buscadorDatosSeleecionables.size() + 4 + celdasExtra);
+        anadirCabecera(fila, entry, fechaDeleted, true);
+
+        for (DatosLicitacionGenerales dato: buscadorDatosSeleecionables) {
+            // OBJETO_CONTRATO (descripcion) se vuelca sin limpiar en esta hoja
+            fila.anadirDato(dato.valorCodice(contexto), dato.getFormato());
+        }
+        return fila;
+    }
+
+    private List<FilaExcel> filasResultados(EntryType entry, ContextoEntry contexto, long fechaDeleted, ArrayList<DatosResultados> buscadorDatosResultados) {
+        ContractFolderStatusType contractFolder = contexto.getContractFolder();
+        List<FilaExcel> filas = new ArrayList<>();
 
-        Row row = sheet.createRow(sheet.getLastRowNum()+1);
-        int cellnum = 0;
+        if(contractFolder.getTenderResult() != null) {
+            for (int indice = 0; indice < contractFolder.getTenderResult().size(); indice++) {
+                FilaExcel fila = new FilaExcel(SpreeadSheetManager.RESULTADOS, buscadorDatosResultados.size() + 3);
+                anadirCabecera(fila, entry, fechaDeleted, false);
 
-        cell = row.createCell(cellnum++);
-        cell.setCellValue(entry.getId().getValue().substring(entry.getId().getValue().lastIndexOf("/")+1));
-        cell = row.createCell(cellnum++);
-        cell.setCellValue(entry.getLink().get(0).getHref());
+                for (DatosResultados dato: buscadorDatosResultados) {
+                    fila.anadirDato(dato.valorCodice(contexto, indice), dato.getFormato());
+                }
+                filas.add(fila);
+            }
+        }
+        return filas;
+    }
 
-        GregorianCalendar updated = entry.getUpdated().getValue().toGregorianCalendar();
+    private List<FilaExcel> filasCompletas(EntryType entry, ContextoEntry contexto, long fechaDeleted,
+                                           ArrayList<DatosLicitacionGenerales> buscadorDatosSeleccionables,
+                                           ArrayList<DatosResultados> buscadorDatosResultados) {
+        ContractFolderStatusType contractFolder = contexto.getContractFolder();
+        List<FilaExcel> filas = new ArrayList<>();
 
-        if (fechaDeleted == null || fechaDeleted.compareTo(updated) < 0) {
-            cell = row.createCell(cellnum++);
-            cell.setCellValue((LocalDateTime)entry.getUpdated().getValue().toGregorianCalendar().toZonedDateTime().toLocalDateTime());
-            cell.setCellStyle(SpreeadSheetManager.getCellStyleFechaLarga());
-            cell = row.createCell(cellnum++);
-            cell.setCellValue("VIGENTE");
+        if(contractFolder.getTenderResult().size() > 0) {
+            // Las columnas generales son iguales en todas las filas de la entry: se calculan
+            // una vez y cada resultado parte de una copia
+            FilaExcel general = filaEntry(entry, contexto, SpreeadSheetManager.LICITACIONES, fechaDeleted, buscadorDatosSeleccionables, 0);
+            for (int indice = 0; indice < contractFolder.getTenderResult().size(); indice++) {
+                // Una fila por resultado: columnas generales seguidas de las del resultado
+                FilaExcel fila = new FilaExcel(general, buscadorDatosResultados.size());
+                for (DatosResultados dato: buscadorDatosResultados) {
+                    fila.anadirDato(dato.valorCodice(contexto, indice), dato.getFormato());
+                }
+                filas.add(fila);
+            }
         } else {
-            cell = row.createCell(cellnum++);
-            cell.setCellValue((LocalDateTime)fechaDeleted.toZonedDateTime().toLocalDateTime());
-            cell.setCellStyle(SpreeadSheetManager.getCellStyleFechaLarga());
-            cell = row.createCell(cellnum++);
-            if (((fechaDeleted.getTimeInMillis() - updated.getTimeInMillis())/1000/3660/24/365) > 5){
-                cell.setCellValue("ARCHIVADA");
-            } else {
-                cell.setCellValue("ANULADA");
+            filas.add(filaEntry(entry, contexto, SpreeadSheetManager.LICITACIONES, fechaDeleted, buscadorDatosSeleccionables, 0));
+        }
+        return filas;
+    }
+
+    private FilaExcel filaEncargo(EntryType entry, ContextoEntry contexto, long fechaDeleted, ArrayList<DatosEMP> buscadorDatosSelecionables) {
+        FilaExcel fila = new FilaExcel(SpreeadSheetManager.EMP, buscadorDatosSelecionables.size() + 4);
+        anadirCabecera(fila, entry, fechaDeleted, true);
+
+        for (DatosEMP dato: buscadorDatosSelecionables) {
+            Object datoCodice = dato.valorCodice(contexto);
+            // Solo aplicar limpieza al campo OBJETO_CONTRATO (descripción)
+            if (dato == DatosEMP.OBJETO_CONTRATO && datoCodice instanceof String) {
+                datoCodice = LimpiadorTexto.limpiar((String) datoCodice);
             }
+            fila.anadirDato(datoCodice, dato.getFormato());
         }
+        return fila;
+    }
+
+    private FilaExcel filaCPM(EntryType entry, ContextoEntry contexto, long fechaDeleted, ArrayList<DatosCPM> buscadorDatosSelecionables) {
+        FilaExcel fila = new FilaExcel(SpreeadSheetManager.CPM, buscadorDatosSelecionables.size() + 4);
+        anadirCabecera(fila, entry, fechaDeleted, true);
 
         for (DatosCPM dato: buscadorDatosSelecionables) {
-            Object datoCodice = dato.valorCodice(preliminaryMarketConsultationStatusType);
-            cell = row.createCell(cellnum++);
-            if (datoCodice instanceof BigDecimal) {
-                cell.setCellValue((double) ((BigDecimal)datoCodice).doubleValue());
-            } else if (datoCodice instanceof String) {
-                // Solo aplicar limpieza al campo OBJETO_CONTRATO (descripción)
-                if (dato == DatosCPM.OBJETO_CONTRATO) {
-                    cell.setCellValue(limpiarSaltosDeLinea((String) datoCodice));
-                } else {
-                    cell.setCellValue((String) datoCodice);
-                }
-            } else if (datoCodice instanceof GregorianCalendar) {
-                cell.setCellValue((LocalDateTime) ((GregorianCalendar)datoCodice).toZonedDateTime().toLocalDateTime());
-            } else if (datoCodice instanceof Boolean) {
-                cell.setCellValue((Boolean) datoCodice);
+            Object datoCodice = dato.valorCodice(contexto);
+            // Solo aplicar limpieza al campo OBJETO_CONTRATO (descripción)
+            if (dato == DatosCPM.OBJETO_CONTRATO && datoCodice instanceof String) {
+                datoCodice = LimpiadorTexto.limpiar((String) datoCodice);
             }
-            cell.setCellStyle(SpreeadSheetManager.getCellStyleFormato(dato.getFormato()));
+            fila.anadirDato(datoCodice, dato.getFormato());
         }
+        return fila;
     }
 
     private void insertarTitulos(SpreeadSheetManager spreeadSheetManager,
@@ -852,7 +1299,7 @@ private static String limpiarSaltosDeLinea(String texto) {
         for (DatosLicitacionGenerales dato : seleccionLicitacionGenerales) {
             cell = row.createCell(cellnum++); cell.setCellValue(dato.getTiulo()); cell.setCellStyle(SpreeadSheetManager.getCellStyleTitulo());
         }
-        if (spreeadSheetManager.getWorkbook().getSheet(SpreeadSheetManager.RESULTADOS) == null) {
+        if (!dosTablas) {
             for (DatosResultados dato : seleccionLicitacionResultados) {
                 cell = row.createCell(cellnum++); cell.setCellValue(dato.getTiulo()); cell.setCellStyle(SpreeadSheetManager.getCellStyleTitulo());
             }
@@ -906,15 +1353,37 @@ private static String limpiarSaltosDeLinea(String texto) {
         final boolean dosTablas;
         final boolean sinEMP;
         final boolean sinCPM;
+        final boolean streaming;
+        final boolean paralelo;
+        final int hilos;
+        final int lecturaAnticipada;
+        final String binding;
+        final boolean comprobarBinding;
+        final int extractores;
+        final String columnas;
+        final String indice;
+        final boolean ultimaVersion;
+        final int cacheLimpieza;
         final boolean valid;
         final int exitCode;
 
-        private Args(List<String> inPaths, String outPath, boolean dosTablas, boolean sinEMP, boolean sinCPM, boolean valid, int exitCode) {
+        private Args(List<String> inPaths, String outPath, boolean dosTablas, boolean sinEMP, boolean sinCPM, boolean streaming, boolean paralelo, int hilos, int lecturaAnticipada, String binding, boolean comprobarBinding, int extractores, String columnas, String indice, boolean ultimaVersion, int cacheLimpieza, boolean valid, int exitCode) {
             this.inPaths = inPaths;
             this.outPath = outPath;
             this.dosTablas = dosTablas;
             this.sinEMP = sinEMP;
             this.sinCPM = sinCPM;
+            this.streaming = streaming;
+            this.paralelo = paralelo;
+            this.hilos = hilos;
+            this.lecturaAnticipada = lecturaAnticipada;
+            this.binding = binding;
+            this.comprobarBinding = comprobarBinding;
+            this.extractores = extractores;
+            this.columnas = columnas;
+            this.indice = indice;
+            this.ultimaVersion = ultimaVersion;
+            this.cacheLimpieza = cacheLimpieza;
             this.valid = valid;
             this.exitCode = exitCode;
         }
@@ -927,25 +1396,93 @@ private static String limpiarSaltosDeLinea(String texto) {
                 if (haveDefaults) {
                     List<String> defaultPaths = new ArrayList<>();
                     defaultPaths.add(AtomToExcelCLI.DEFAULT_IN_PATH);
-                    return new Args(defaultPaths, AtomToExcelCLI.DEFAULT_OUT_PATH, false, false, false, true, 0);
+                    return new Args(defaultPaths, AtomToExcelCLI.DEFAULT_OUT_PATH, false, false, false, false, false, 0, 0, BINDING_JAXB, false, 0, null, null, false, LimpiadorTexto.CAPACIDAD_CACHE_POR_DEFECTO, true, 0);
                 }
-                return new Args(new ArrayList<>(), null, false, false, false, false, 1);
+                return new Args(new ArrayList<>(), null, false, false, false, false, false, 0, 0, BINDING_JAXB, false, 0, null, null, false, LimpiadorTexto.CAPACIDAD_CACHE_POR_DEFECTO, false, 1);
             }
             List<String> inPaths = new ArrayList<>();
             String out = null;
-            boolean dosTablas = false, sinEMP = false, sinCPM = false;
+            boolean dosTablas = false, sinEMP = false, sinCPM = false, streaming = false, paralelo = false;
+            boolean comprobarBinding = false, bindingValido = true, columnasValidas = true, ultimaVersion = false;
+            int hilos = 0, lecturaAnticipada = 0, extractores = 0;
+            int cacheLimpieza = LimpiadorTexto.CAPACIDAD_CACHE_POR_DEFECTO;
+            String binding = BINDING_JAXB;
+            String columnas = null;
+            String indice = null;
             for (int i = 0; i < args.length; i++) {
                 String a = args[i];
                 switch (a) {
-                    case "--help": return new Args(new ArrayList<>(), null, false, false, false, false, 0);
+                    case "--help": return new Args(new ArrayList<>(), null, false, false, false, false, false, 0, 0, BINDING_JAXB, false, 0, null, null, false, LimpiadorTexto.CAPACIDAD_CACHE_POR_DEFECTO, false, 0);
                     case "--in": if (i+1 < args.length) inPaths.add(args[++i]); break;
                     case "--out": if (i+1 < args.length) out = args[++i]; break;
                     case "--dos-tablas": dosTablas = true; break;
                     case "--sin-emp": sinEMP = true; break;
                     case "--sin-cpm": sinCPM = true; break;
+                    case "--streaming": streaming = true; break;
+                    case "--paralelo": paralelo = true; break;
+                    case "--hilos":
+                        if (i+1 < args.length) {
+                            try {
+                                hilos = Integer.parseInt(args[++i]);
+                            } catch (NumberFormatException e) {
+                                hilos = 0;
+                            }
+                        }
+                        break;
+                    case "--lectura-anticipada":
+                        if (i+1 < args.length) {
+                            try {
+                                lecturaAnticipada = Integer.parseInt(args[++i]);
+                            } catch (NumberFormatException e) {
+                                lecturaAnticipada = 0;
+                            }
+                        }
+                        break;
+                    case "--binding":
+                        if (i+1 < args.length) {
+                            binding = args[++i].toLowerCase();
+                            bindingValido = BINDING_JAXB.equals(binding) || BINDING_STAX.equals(binding);
+                        }
+                        break;
+                    case "--comprobar-binding": comprobarBinding = true; break;
+                    case "--extractores":
+                        if (i+1 < args.length) {
+                            try {
+                                extractores = Integer.parseInt(args[++i]);
+                            } catch (NumberFormatException e) {
+                                extractores = 0;
+                            }
+                        }
+                        break;
+                    case "--columnas": if (i+1 < args.length) columnas = args[++i]; break;
+                    case "--indice": if (i+1 < args.length) indice = args[++i]; break;
+                    case "--ultima-version": ultimaVersion = true; break;
+                    case "--cache-limpieza":
+                        if (i+1 < args.length) {
+                            try {
+                                cacheLimpieza = Integer.parseInt(args[++i]);
+                            } catch (NumberFormatException e) {
+                                cacheLimpieza = LimpiadorTexto.CAPACIDAD_CACHE_POR_DEFECTO;
+                            }
+                        }
+                        break;
                     default: break;
                 }
             }
+            if (columnas != null) {
+                try {
+                    seleccionColumnas(DatosLicitacionGenerales.class, GRUPO_LICITACIONES, columnas);
+                    seleccionColumnas(DatosResultados.class, GRUPO_RESULTADOS, columnas);
+                    seleccionColumnas(DatosEMP.class, GRUPO_EMP, columnas);
+                    seleccionColumnas(DatosCPM.class, GRUPO_CPM, columnas);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("--columnas: " + e.getMessage());
+                    columnasValidas = false;
+                }
+            }
+            if (!bindingValido || !columnasValidas) {
+                return new Args(inPaths, out, dosTablas, sinEMP, sinCPM, streaming, paralelo, hilos, lecturaAnticipada, binding, comprobarBinding, extractores, columnas, indice, ultimaVersion, cacheLimpieza, false, 1);
+            }
             boolean ok = !inPaths.isEmpty() && out != null;
             // Si faltan argumentos, usamos defaults si están configurados
             if (!ok && AtomToExcelCLI.DEFAULT_IN_PATH != null && !AtomToExcelCLI.DEFAULT_IN_PATH.isEmpty()
@@ -958,7 +1495,7 @@ private static String limpiarSaltosDeLinea(String texto) {
                 }
                 ok = true;
             }
-            return new Args(inPaths, out, dosTablas, sinEMP, sinCPM, ok, ok ? 0 : 1);
+            return new Args(inPaths, out, dosTablas, sinEMP, sinCPM, streaming, paralelo, hilos, lecturaAnticipada, binding, comprobarBinding, extractores, columnas, indice, ultimaVersion, cacheLimpieza, ok, ok ? 0 : 1);
         }
 
         String usage() {
@@ -968,9 +1505,29 @@ private static String limpiarSaltosDeLinea(String texto) {
                    "  [--dos-tablas]     Separar licitaciones y resultados\n" +
                    "  [--sin-emp]        No incluir hoja EMP\n" +
                    "  [--sin-cpm]        No incluir hoja CPM\n" +
+                   "  [--streaming]      Leer las entries una a una (memoria constante)\n" +
+                   "  [--paralelo]       Parsear en paralelo los ficheros de la cadena ATOM\n" +
+                   "  [--hilos <n>]      Hilos para --paralelo (por defecto, nucleos disponibles)\n" +
+                   "  [--lectura-anticipada <n>] Leer en segundo plano hasta n ficheros por delante\n" +
+                   "  [--binding <jaxb|stax>] Deserializar las entries con JAXB (por defecto) o con\n" +
+                   "                     StAX, solo los elementos de las columnas (requiere --streaming)\n" +
+                   "  [--comprobar-binding] Con --binding stax, comparar cada entry con JAXB\n" +
+                   "  [--extractores <n>] Con --streaming, calcular las columnas en n hilos mientras\n" +
+                   "                     un hilo lee las entries y otro escribe el Excel\n" +
+                   "  [--columnas <spec>] Columnas a exportar por hoja, p. ej.\n" +
+                   "                     \"licitaciones=ESTADO,OBJETO_CONTRATO;resultados=ADJUDICATARIO\"\n" +
+                   "                     (grupos: licitaciones, resultados, emp, cpm; un grupo que no\n" +
+                   "                     aparece conserva todas sus columnas)\n" +
+                   "  [--indice <dir>]   Con --streaming, indice persistente en dir: los ficheros sin\n" +
+                   "                     cambios desde la ultima conversion no se vuelven a leer\n" +
+                   "  [--ultima-version] Si un id aparece varias veces, conservar la version con el\n" +
+                   "                     updated mas reciente (por defecto, la primera que aparece)\n" +
+                   "  [--cache-limpieza <n>] Textos limpios que se guardan para no volver a limpiar\n" +
+                   "                     las descripciones repetidas (por defecto 4096, 0 = sin cache)\n" +
                    "  [--help]           Mostrar esta ayuda\n" +
-                   "\nSi --in es un .zip, se descomprimirá automáticamente\n" +
-                   "y se buscará el .atom con el mismo nombre.\n" +
+                   "\nSi --in es un .zip, se lee directamente del ZIP (sin descomprimir a disco)\n" +
+                   "empezando por el .atom con el mismo nombre. Los enlaces 'next' se buscan\n" +
+                   "en todos los ZIP indicados.\n" +
                    "\nPuedes especificar múltiples --in para combinar varias fuentes ATOM\n" +
                    "en un único archivo Excel.\n" +
                    "\nTambién puedes editar en la clase:\n" +
@@ -0,0 +1,138 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Conjunto de ZIPs de PLACSP abiertos con ZipFile, cuyos ficheros ATOM se leen
+ * directamente del contenido comprimido, sin extraerlos a disco.
+ *
+ * Los enlaces "next" se resuelven contra todos los ZIPs del conjunto, de forma que una
+ * cadena puede continuar en los ZIPs de otros meses. Si un mismo fichero esta en varios
+ * ZIPs, prevalece el del ultimo ZIP anadido (igual que al descomprimirlos todos en una
+ * misma carpeta en ese orden). ZipFile admite lecturas concurrentes de distintas entradas.
+ */
+public class ArchivosZip implements AutoCloseable {
+
+    private final List<ZipFile> zips = new ArrayList<>();
+    // Nombre completo dentro del ZIP -> ZIP que lo contiene
+    private final Map<String, ZipFile> ficheros = new HashMap<>();
+
+    /**
+     * Anade un ZIP al conjunto y devuelve el fichero ATOM por el que empezar: el que tiene
+     * el mismo nombre que el ZIP o, si no lo hay, el primer .atom del ZIP.
+     *
+     * @return La fuente inicial, o null si el ZIP no contiene ningun .atom
+     */
+    public FuenteAtom anadir(File zip) throws IOException {
+        ZipFile zipFile = new ZipFile(zip);
+        zips.add(zipFile);
+
+        String nombreBase = zip.getName().replaceAll("\\.[zZ][iI][pP]$", "") + ".atom";
+        String inicio = null;
+        String primero = null;
+        Enumeration<? extends ZipEntry> entradas = zipFile.entries();
+        while (entradas.hasMoreElements()) {
+            ZipEntry entrada = entradas.nextElement();
+            if (entrada.isDirectory() || !entrada.getName().toLowerCase().endsWith(".atom")) {
+                continue;
+            }
+            ficheros.put(entrada.getName(), zipFile);
+            if (primero == null) {
+                primero = entrada.getName();
+            }
+            if (inicio == null && FuenteAtom.nombreEnlace(entrada.getName()).equalsIgnoreCase(nombreBase)) {
+                inicio = entrada.getName();
+            }
+        }
+        String nombre = inicio != null ? inicio : primero;
+        return nombre != null ? new FicheroZip(nombre) : null;
+    }
+
+    /**
+     * Numero de ficheros ATOM distintos en el conjunto.
+     */
+    public int size() {
+        return ficheros.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        for (ZipFile zip : zips) {
+            try {
+                zip.close();
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+        zips.clear();
+        ficheros.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Fichero ATOM dentro de uno de los ZIPs del conjunto.
+     */
+    private final class FicheroZip extends FuenteAtom {
+
+        private final String nombre;
+
+        private FicheroZip(String nombre) {
+            this.nombre = nombre;
+        }
+
+        @Override
+        public String getNombre() {
+            return nombreEnlace(nombre);
+        }
+
+        @Override
+        public InputStream abrir() throws IOException {
+            ZipFile zip = ficheros.get(nombre);
+            if (zip == null) {
+                throw new IOException("El conjunto de ZIPs ya no contiene " + nombre);
+            }
+            return zip.getInputStream(zip.getEntry(nombre));
+        }
+
+        @Override
+        public String getFirma() {
+            ZipFile zip = ficheros.get(nombre);
+            ZipEntry entrada = zip != null ? zip.getEntry(nombre) : null;
+            return entrada != null ? entrada.getSize() + "-" + Long.toHexString(entrada.getCrc()) : "";
+        }
+
+        @Override
+        public FuenteAtom siguiente(String href) {
+            int barra = nombre.lastIndexOf('/');
+            String siguiente = (barra >= 0 ? nombre.substring(0, barra + 1) : "") + nombreEnlace(href);
+            return ficheros.containsKey(siguiente) ? new FicheroZip(siguiente) : null;
+        }
+
+        private ArchivosZip conjunto() {
+            return ArchivosZip.this;
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            return otro instanceof FicheroZip && ((FicheroZip) otro).conjunto() == conjunto()
+                    && nombre.equals(((FicheroZip) otro).nombre);
+        }
+
+        @Override
+        public int hashCode() {
+            return nombre.hashCode();
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.purl.atompub.tombstones._1.DeletedEntryType;
+
+/**
+ * Lector en streaming de ficheros ATOM de PLACSP.
+ *
+ * En lugar de cargar el FeedType completo en memoria, divide el feed en sus hijos
+ * directos trabajando sobre los bytes (DivisorFeedAtom) y entrega cada entry, sin
+ * deserializar, al manejador correspondiente (EntradaAtom). Las deleted-entry se
+ * deserializan con JAXB una a una. Una vez procesado cada elemento queda libre para
+ * el recolector, por lo que el consumo de heap no depende del tamano del fichero.
+ */
+public class AtomStreamReader {
+
+    public static final String ATOM_NS = "http://www.w3.org/2005/Atom";
+    public static final String TOMBSTONES_NS = "http://purl.org/atompub/tombstones/1.0";
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = crearFactoria();
+
+    /**
+     * Recibe cada entry del feed, todavia sin deserializar.
+     */
+    @FunctionalInterface
+    public interface ManejadorEntry {
+        void procesar(EntradaAtom entrada) throws Exception;
+    }
+
+    /**
+     * Recibe cada deleted-entry del feed, ya deserializada.
+     */
+    @FunctionalInterface
+    public interface ManejadorDeleted {
+        void procesar(DeletedEntryType deletedEntry) throws Exception;
+    }
+
+    /**
+     * Recibe los atributos de cada deleted-entry del feed, sin deserializarla.
+     */
+    @FunctionalInterface
+    public interface ManejadorBorrado {
+        void procesar(String ref, String when) throws Exception;
+    }
+
+    private final Unmarshaller unmarshaller;
+
+    public AtomStreamReader(Unmarshaller unmarshaller) {
+        this.unmarshaller = unmarshaller;
+    }
+
+    private static XMLInputFactory crearFactoria() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Los ficheros ATOM no usan DTD: se desactivan DTD y entidades externas
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+        return factory;
+    }
+
+    /**
+     * Recorre un fichero ATOM elemento a elemento.
+     *
+     * @param fuente Fichero ATOM a leer (en disco o dentro de un ZIP)
+     * @param manejadorEntry Manejador de entries (null para no capturarlas)
+     * @param manejadorDeleted Manejador de deleted-entries (null para no deserializarlas)
+     * @return href del enlace "next" del feed, o null si no hay siguiente fichero
+     */
+    public String leer(FuenteAtom fuente, ManejadorEntry manejadorEntry, ManejadorDeleted manejadorDeleted) throws Exception {
+        try (InputStream in = fuente.abrir()) {
+            return leer(in, manejadorEntry, manejadorDeleted);
+        }
+    }
+
+    /**
+     * Igual que {@link #leer(FuenteAtom, ManejadorEntry, ManejadorDeleted)}, sobre un flujo ya abierto
+     * (que no se cierra).
+     */
+    public String leer(InputStream in, ManejadorEntry manejadorEntry, ManejadorDeleted manejadorDeleted) throws Exception {
+        DivisorFeedAtom divisor = new DivisorFeedAtom(in);
+        DivisorFeedAtom.Filtro filtro = (ns, nombre) -> esEntry(ns, nombre) ? manejadorEntry != null
+                : esDeletedEntry(ns, nombre) ? manejadorDeleted != null
+                : esLink(ns, nombre);
+
+        String hrefSiguiente = null;
+        DivisorFeedAtom.Fragmento fragmento;
+        while ((fragmento = divisor.siguiente(filtro)) != null) {
+            if (fragmento.datos == null) {
+                continue;
+            }
+            if (esEntry(fragmento.espacioNombres, fragmento.nombre)) {
+                manejadorEntry.procesar(new EntradaAtom(divisor.getCabecera(), fragmento.datos, divisor.getCierre(), divisor.getCodificacion()));
+            } else if (esDeletedEntry(fragmento.espacioNombres, fragmento.nombre)) {
+                manejadorDeleted.procesar(deserializar(divisor, fragmento, DeletedEntryType.class));
+            } else {
+                // Igual que el recorrido de FeedType.getLink(): solo cuenta el ultimo enlace
+                hrefSiguiente = enlaceSiguiente(divisor, fragmento);
+            }
+        }
+        return hrefSiguiente;
+    }
+
+    /**
+     * Recorre un fichero ATOM leyendo solo los atributos de sus deleted-entry. Las entries
+     * se saltan sin copiarlas ni parsearlas.
+     *
+     * @return href del enlace "next" del feed, o null si no hay siguiente fichero
+     */
+    public static String leerBorrados(FuenteAtom fuente, ManejadorBorrado manejadorBorrado) throws Exception {
+        return leerBorrados(fuente, manejadorBorrado, null);
+    }
+
+    /**
+     * Igual que {@link #leerBorrados(FuenteAtom, ManejadorBorrado)}, entregando ademas las
+     * entries sin deserializar (para leer solo su id y su fecha de actualizacion).
+     *
+     * @param manejadorEntry Manejador de entries (null para saltarlas)
+     */
+    public static String leerBorrados(FuenteAtom fuente, ManejadorBorrado manejadorBorrado, ManejadorEntry manejadorEntry) throws Exception {
+        try (InputStream in = fuente.abrir()) {
+            DivisorFeedAtom divisor = new DivisorFeedAtom(in);
+            DivisorFeedAtom.Filtro filtro = (ns, nombre) -> esDeletedEntry(ns, nombre) || esLink(ns, nombre)
+                    || (manejadorEntry != null && esEntry(ns, nombre));
+
+            String hrefSiguiente = null;
+            DivisorFeedAtom.Fragmento fragmento;
+            while ((fragmento = divisor.siguiente(filtro)) != null) {
+                if (fragmento.datos == null) {
+                    continue;
+                }
+                if (esEntry(fragmento.espacioNombres, fragmento.nombre)) {
+                    manejadorEntry.procesar(new EntradaAtom(divisor.getCabecera(), fragmento.datos, divisor.getCierre(), divisor.getCodificacion()));
+                } else if (esDeletedEntry(fragmento.espacioNombres, fragmento.nombre)) {
+                    XMLStreamReader reader = abrirFragmento(divisor.getCabecera(), fragmento.datos, divisor.getCierre(), divisor.getCodificacion());
+                    try {
+                        manejadorBorrado.procesar(reader.getAttributeValue(null, "ref"), reader.getAttributeValue(null, "when"));
+                    } finally {
+                        reader.close();
+                    }
+                } else {
+                    hrefSiguiente = enlaceSiguiente(divisor, fragmento);
+                }
+            }
+            return hrefSiguiente;
+        }
+    }
+
+    /**
+     * Lee solo la cabecera del feed (hasta la primera entry) para obtener el enlace
+     * "next", sin deserializar nada. Permite resolver la cadena de ficheros de antemano.
+     *
+     * @return href del enlace "next" de la cabecera, o null si no lo hay
+     */
+    public static String leerEnlaceSiguiente(FuenteAtom fuente) throws Exception {
+        try (InputStream in = fuente.abrir()) {
+            DivisorFeedAtom divisor = new DivisorFeedAtom(in);
+            DivisorFeedAtom.Filtro filtro = AtomStreamReader::esLink;
+
+            String hrefSiguiente = null;
+            DivisorFeedAtom.Fragmento fragmento;
+            while ((fragmento = divisor.siguiente(filtro)) != null) {
+                if (esEntry(fragmento.espacioNombres, fragmento.nombre)) {
+                    break;
+                }
+                if (fragmento.datos != null) {
+                    hrefSiguiente = enlaceSiguiente(divisor, fragmento);
+                }
+            }
+            return hrefSiguiente;
+        }
+    }
+
+    /**
+     * href de un enlace del feed si es de tipo "next", o null en otro caso.
+     */
+    private static String enlaceSiguiente(DivisorFeedAtom divisor, DivisorFeedAtom.Fragmento fragmento) throws XMLStreamException {
+        XMLStreamReader reader = abrirFragmento(divisor.getCabecera(), fragmento.datos, divisor.getCierre(), divisor.getCodificacion());
+        try {
+            String rel = reader.getAttributeValue(null, "rel");
+            if (rel != null && rel.toLowerCase().compareTo("next") == 0) {
+                return reader.getAttributeValue(null, "href");
+            }
+            return null;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Abre un XMLStreamReader sobre un hijo del feed, envuelto en la etiqueta de apertura
+     * original del feed para conservar sus espacios de nombres. Los bytes se decodifican con
+     * la codificacion declarada en el prologo del fichero. El lector queda situado en la
+     * apertura del hijo.
+     */
+    static XMLStreamReader abrirFragmento(byte[] cabecera, byte[] datos, byte[] cierre, Charset codificacion) throws XMLStreamException {
+        InputStream in = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(cabecera), new ByteArrayInputStream(datos), new ByteArrayInputStream(cierre))));
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(new InputStreamReader(in, codificacion));
+        // feed
+        reader.nextTag();
+        // hijo
+        reader.nextTag();
+        return reader;
+    }
+
+    private static boolean esEntry(String ns, String nombre) {
+        return ATOM_NS.equals(ns) && "entry".equals(nombre);
+    }
+
+    private static boolean esDeletedEntry(String ns, String nombre) {
+        return TOMBSTONES_NS.equals(ns) && "deleted-entry".equals(nombre);
+    }
+
+    private static boolean esLink(String ns, String nombre) {
+        return ATOM_NS.equals(ns) && "link".equals(nombre);
+    }
+
+    /**
+     * Deserializa un hijo del feed capturado por el divisor.
+     */
+    private <T> T deserializar(DivisorFeedAtom divisor, DivisorFeedAtom.Fragmento fragmento, Class<T> tipo)
+            throws JAXBException, XMLStreamException {
+        XMLStreamReader reader = abrirFragmento(divisor.getCabecera(), fragmento.datos, divisor.getCierre(), divisor.getCodificacion());
+        try {
+            return unmarshaller.unmarshal(reader, tipo).getValue();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Avanza hasta el cierre del elemento actual, sin construir ningun objeto.
+     * Al terminar, el lector queda situado en el END_ELEMENT del elemento.
+     */
+    static void saltarElemento(XMLStreamReader reader) throws XMLStreamException {
+        int profundidad = 1;
+        while (profundidad > 0 && reader.hasNext()) {
+            int evento = reader.next();
+            if (evento == XMLStreamConstants.START_ELEMENT) {
+                profundidad++;
+            } else if (evento == XMLStreamConstants.END_ELEMENT) {
+                profundidad--;
+            }
+        }
+    }
+
+    /**
+     * Avanza hasta la siguiente apertura o cierre de elemento, ignorando texto,
+     * comentarios y espacios entre los hijos del feed.
+     */
+    static int siguienteEtiqueta(XMLStreamReader reader) throws XMLStreamException {
+        int evento = reader.getEventType();
+        while (evento != XMLStreamConstants.START_ELEMENT && evento != XMLStreamConstants.END_ELEMENT
+                && evento != XMLStreamConstants.END_DOCUMENT) {
+            evento = reader.next();
+        }
+        return evento;
+    }
+}
@@ -32,7 +32,10 @@ import es.age.dgpe.placsp.risp.parser.utils.PlacspLogger;
  * 
  * Parametros configurables desde .env:
  * - CLI_COMMAND: Comando del CLI a ejecutar
- * - CLI_DOS_TABLAS, CLI_INCLUIR_EMP, CLI_INCLUIR_CPM: Opciones del CLI
+ * - CLI_DOS_TABLAS, CLI_INCLUIR_EMP, CLI_INCLUIR_CPM, CLI_STREAMING, CLI_PARALELO, CLI_HILOS,
+ *   CLI_LECTURA_ANTICIPADA, CLI_EXTRACTORES, CLI_BINDING, CLI_COMPROBAR_BINDING, CLI_COLUMNAS,
+ *   CLI_INDICE_INCREMENTAL, CLI_ULTIMA_VERSION: Opciones del CLI (el indice incremental se guarda junto a los ATOMs,
+ *   en la carpeta IndiceIncremental.DIRECTORIO)
  * - ANYO_MES_PATTERN, FECHA_COMPLETA_PATTERN: Patrones de fechas
  * - EXCEL_NAME_PERF_CONTRAT, EXCEL_NAME_AGREGADAS: Nombres de archivos Excel
  */
@@ -79,6 +82,40 @@ public class AtomToExcelConverter {
         if (!EnvConfig.isCliIncluirCpm()) {
             options.append(" --sin-cpm");
         }
+        if (EnvConfig.isCliStreaming()) {
+            options.append(" --streaming");
+        }
+        if (EnvConfig.isCliParalelo()) {
+            options.append(" --paralelo");
+            if (EnvConfig.getCliHilos() > 0) {
+                options.append(" --hilos ").append(EnvConfig.getCliHilos());
+            }
+        }
+        if (EnvConfig.getCliLecturaAnticipada() > 0) {
+            options.append(" --lectura-anticipada ").append(EnvConfig.getCliLecturaAnticipada());
+        }
+        if (EnvConfig.getCliExtractores() > 0) {
+            options.append(" --extractores ").append(EnvConfig.getCliExtractores());
+        }
+        if (!"jaxb".equalsIgnoreCase(EnvConfig.getCliBinding())) {
+            options.append(" --binding ").append(EnvConfig.getCliBinding());
+        }
+        if (EnvConfig.isCliComprobarBinding()) {
+            options.append(" --comprobar-binding");
+        }
+        if (!EnvConfig.getCliColumnas().trim().isEmpty()) {
+            options.append(" --columnas '").append(EnvConfig.getCliColumnas().trim()).append("'");
+        }
+        if (EnvConfig.isCliIndiceIncremental()) {
+            Path directorioIndice = Paths.get(inputPath).toAbsolutePath().getParent().resolve(IndiceIncremental.DIRECTORIO);
+            options.append(" --indice '").append(directorioIndice).append("'");
+        }
+        if (EnvConfig.isCliUltimaVersion()) {
+            options.append(" --ultima-version");
+        }
+        if (EnvConfig.getCliCacheLimpieza() >= 0) {
+            options.append(" --cache-limpieza ").append(EnvConfig.getCliCacheLimpieza());
+        }
 
         if (os.contains("win")) {
             args.add("cmd.exe");
@@ -644,6 +681,9 @@ public class AtomToExcelConverter {
                 System.out.println("\n  [LIMPIEZA] Eliminando " + atomsAEliminar.size() + " ATOMs antiguos (anteriores a " + fechaLimite + "):");
                 for (Path atom : atomsAEliminar) {
                     Files.delete(atom);
+                    // Y su segmento del indice incremental, si lo tiene
+                    Files.deleteIfExists(IndiceIncremental.segmento(
+                            Paths.get(atomDir, IndiceIncremental.DIRECTORIO).toFile(), atom.getFileName().toString()).toPath());
                     System.out.println("    - Eliminado: " + atom.getFileName());
                 }
             }
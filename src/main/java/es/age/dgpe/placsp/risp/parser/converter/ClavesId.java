@@ -0,0 +1,73 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+/**
+ * Convierte los identificadores de entry de PLACSP (URLs como
+ * https://contrataciondelestado.es/sindicacion/licitacionesPerfilContratante/1234567) en
+ * claves long para las tablas con direccionamiento abierto de ConjuntoIds e IndiceBorrados.
+ *
+ * Solo tienen clave los ids con el mismo prefijo (todo hasta la ultima barra) que el primer
+ * id numerico visto y un sufijo numerico sin ceros a la izquierda: la clave es el sufijo + 1,
+ * de modo que dos ids distintos nunca comparten clave. Los demas se guardan aparte como String.
+ */
+final class ClavesId {
+
+    /**
+     * Clave reservada para los huecos libres de las tablas y para los ids sin clave.
+     */
+    static final long SIN_CLAVE = 0L;
+
+    // Digitos de un sufijo que caben siempre en un long (sin llegar a Long.MAX_VALUE)
+    private static final int MAX_DIGITOS = 18;
+
+    private String prefijo;
+
+    ClavesId() {
+    }
+
+    ClavesId(ClavesId otra) {
+        prefijo = otra.prefijo;
+    }
+
+    /**
+     * Clave del id, o SIN_CLAVE si hay que guardarlo como String.
+     *
+     * @param fijarPrefijo Si todavia no hay prefijo, tomar el de este id
+     */
+    long clave(String id, boolean fijarPrefijo) {
+        if (id == null) {
+            return SIN_CLAVE;
+        }
+        int barra = id.lastIndexOf('/');
+        int digitos = id.length() - barra - 1;
+        if (digitos == 0 || digitos > MAX_DIGITOS || (digitos > 1 && id.charAt(barra + 1) == '0')) {
+            // Sin sufijo, demasiado largo o con ceros a la izquierda ("007" no es "7")
+            return SIN_CLAVE;
+        }
+        long sufijo = 0;
+        for (int i = barra + 1; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return SIN_CLAVE;
+            }
+            sufijo = sufijo * 10 + (c - '0');
+        }
+        if (prefijo == null) {
+            if (!fijarPrefijo) {
+                return SIN_CLAVE;
+            }
+            prefijo = id.substring(0, barra + 1);
+        } else if (barra + 1 != prefijo.length() || !id.regionMatches(0, prefijo, 0, prefijo.length())) {
+            return SIN_CLAVE;
+        }
+        return sufijo + 1;
+    }
+
+    /**
+     * Posicion inicial de la secuencia de sondeo de una clave en una tabla de tamano
+     * potencia de 2. Dispersa los bits, porque los ids de PLACSP son casi consecutivos.
+     */
+    static int posicion(long clave, int mascara) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
@@ -0,0 +1,108 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Cola acotada alimentada por un hilo en segundo plano.
+ *
+ * El productor se ejecuta en su propio hilo y se bloquea cuando la cola esta llena,
+ * de forma que nunca va mas de "capacidad" elementos por delante del consumidor.
+ * Si el productor falla (con una excepcion o con un Error), se relanza al consumidor
+ * cuando este llega al final de los elementos ya producidos.
+ *
+ * @param <T> Tipo de los elementos producidos
+ */
+public class ColaAnticipada<T> implements AutoCloseable {
+
+    /**
+     * Destino de los elementos producidos. Bloquea si la cola esta llena.
+     */
+    @FunctionalInterface
+    public interface Destino<T> {
+        void poner(T elemento) throws InterruptedException;
+    }
+
+    /**
+     * Codigo que produce los elementos en el hilo en segundo plano.
+     */
+    @FunctionalInterface
+    public interface Productor<T> {
+        void producir(Destino<T> destino) throws Exception;
+    }
+
+    private static final Object FIN = new Object();
+
+    private final BlockingQueue<Object> cola;
+    private final Thread hilo;
+    private volatile Throwable error;
+    private boolean terminada = false;
+
+    public ColaAnticipada(int capacidad, String nombreHilo, Productor<T> productor) {
+        this.cola = new ArrayBlockingQueue<>(Math.max(1, capacidad));
+        this.hilo = new Thread(() -> {
+            boolean cancelado = false;
+            try {
+                productor.producir(cola::put);
+            } catch (InterruptedException e) {
+                // Cancelado por el consumidor
+                cancelado = true;
+            } catch (Throwable e) {
+                // Tambien los Error (OutOfMemoryError...): el consumidor no debe quedarse esperando
+                error = e;
+            } finally {
+                if (!cancelado) {
+                    try {
+                        cola.put(FIN);
+                    } catch (InterruptedException e) {
+                        // Cancelado por el consumidor
+                    }
+                }
+            }
+        }, nombreHilo);
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+    }
+
+    /**
+     * Devuelve el siguiente elemento, esperando a que el productor lo genere.
+     *
+     * @return El siguiente elemento, o null cuando el productor ha terminado
+     */
+    @SuppressWarnings("unchecked")
+    public T siguiente() throws Exception {
+        if (terminada) {
+            return null;
+        }
+        Object elemento = cola.take();
+        if (elemento == FIN) {
+            terminada = true;
+            Throwable e = error;
+            if (e instanceof Error) {
+                throw (Error) e;
+            } else if (e instanceof Exception) {
+                throw (Exception) e;
+            } else if (e != null) {
+                throw new Exception(e);
+            }
+            return null;
+        }
+        return (T) elemento;
+    }
+
+    /**
+     * Elementos producidos que esperan al consumidor.
+     */
+    public int getProfundidad() {
+        return cola.size();
+    }
+
+    /**
+     * Detiene el productor si todavia no ha terminado.
+     */
+    @Override
+    public void close() {
+        hilo.interrupt();
+        cola.clear();
+    }
+}
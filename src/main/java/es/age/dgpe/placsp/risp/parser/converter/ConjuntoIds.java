@@ -0,0 +1,95 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.util.HashSet;
+
+/**
+ * Conjunto de identificadores de entries (el valor del elemento id, una URL como
+ * https://contrataciondelestado.es/sindicacion/licitacionesPerfilContratante/1234567).
+ *
+ * Los ids con clave numerica (ver ClavesId) se guardan como long en una tabla con
+ * direccionamiento abierto, sin crear ningun objeto por id. El resto (otro prefijo o un
+ * sufijo no numerico) van a un HashSet de Strings, asi que el conjunto es exacto: dos ids
+ * distintos nunca se confunden.
+ */
+public class ConjuntoIds {
+
+    private static final int CAPACIDAD_INICIAL = 1 << 10;
+    // Ocupacion maxima de la tabla antes de duplicarla
+    private static final float CARGA_MAXIMA = 0.75f;
+
+    private final ClavesId claves;
+    private long[] tabla;
+    private int numericos;
+    private final HashSet<String> otros;
+
+    public ConjuntoIds() {
+        claves = new ClavesId();
+        tabla = new long[CAPACIDAD_INICIAL];
+        otros = new HashSet<>();
+    }
+
+    /**
+     * Copia independiente de otro conjunto.
+     */
+    public ConjuntoIds(ConjuntoIds otro) {
+        claves = new ClavesId(otro.claves);
+        tabla = otro.tabla.clone();
+        numericos = otro.numericos;
+        otros = new HashSet<>(otro.otros);
+    }
+
+    /**
+     * Anade un id.
+     *
+     * @return true si no estaba ya en el conjunto
+     */
+    public boolean add(String id) {
+        long clave = claves.clave(id, true);
+        if (clave == ClavesId.SIN_CLAVE) {
+            return otros.add(id);
+        }
+        int posicion = buscar(tabla, clave);
+        if (tabla[posicion] == clave) {
+            return false;
+        }
+        tabla[posicion] = clave;
+        if (++numericos > tabla.length * CARGA_MAXIMA) {
+            ampliar();
+        }
+        return true;
+    }
+
+    public boolean contains(String id) {
+        long clave = claves.clave(id, false);
+        if (clave == ClavesId.SIN_CLAVE) {
+            return otros.contains(id);
+        }
+        return tabla[buscar(tabla, clave)] == clave;
+    }
+
+    public int size() {
+        return numericos + otros.size();
+    }
+
+    /**
+     * Posicion de la clave en la tabla, o el primer hueco libre de su secuencia de sondeo.
+     */
+    private static int buscar(long[] tabla, long clave) {
+        int mascara = tabla.length - 1;
+        int posicion = ClavesId.posicion(clave, mascara);
+        while (tabla[posicion] != ClavesId.SIN_CLAVE && tabla[posicion] != clave) {
+            posicion = (posicion + 1) & mascara;
+        }
+        return posicion;
+    }
+
+    private void ampliar() {
+        long[] nueva = new long[tabla.length * 2];
+        for (long clave : tabla) {
+            if (clave != ClavesId.SIN_CLAVE) {
+                nueva[buscar(nueva, clave)] = clave;
+            }
+        }
+        tabla = nueva;
+    }
+}
@@ -0,0 +1,503 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Divide un feed ATOM en sus elementos de primer nivel (hijos directos de feed)
+ * trabajando sobre los bytes, sin parsear XML.
+ *
+ * Solo se reconoce la estructura de etiquetas (aperturas, cierres, comentarios, CDATA
+ * e instrucciones de proceso), lo justo para saber donde empieza y termina cada hijo.
+ * Los bytes de los hijos que interesan se copian tal cual para deserializarlos despues;
+ * el resto se recorre sin copiar nada.
+ *
+ * Para que cada fragmento se pueda parsear por separado se conserva la etiqueta de
+ * apertura del feed (con sus declaraciones de espacios de nombres), su cierre y la
+ * codificacion declarada en el prologo. Solo se admiten codificaciones en las que los
+ * caracteres ASCII ocupan un byte con su mismo valor (UTF-8, ISO-8859-x, windows-125x...);
+ * el resto (UTF-16, UTF-32, EBCDIC...) se rechaza al abrir el fichero.
+ */
+class DivisorFeedAtom {
+
+    /**
+     * Decide, a la vista del nombre del elemento, si se copian sus bytes.
+     */
+    @FunctionalInterface
+    interface Filtro {
+        boolean capturar(String espacioNombres, String nombre);
+    }
+
+    /**
+     * Hijo directo del feed. Los datos son null si el filtro no pidio capturarlo.
+     */
+    static final class Fragmento {
+        final String espacioNombres;
+        final String nombre;
+        final byte[] datos;
+        final long tamano;
+
+        Fragmento(String espacioNombres, String nombre, byte[] datos, long tamano) {
+            this.espacioNombres = espacioNombres;
+            this.nombre = nombre;
+            this.datos = datos;
+            this.tamano = tamano;
+        }
+    }
+
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[TAMANO_BUFFER];
+    private int pos = 0;
+    private int lim = 0;
+
+    // Captura de los bytes del elemento actual
+    private boolean capturando = false;
+    private int inicioCaptura = 0;
+    private final ByteArrayOutputStream captura = new ByteArrayOutputStream(8 * 1024);
+
+    // Posicion en el fichero del primer byte del buffer
+    private long base = 0;
+
+    // Etiqueta de apertura que se esta analizando (feed o hijo directo)
+    private final ByteArrayOutputStream etiqueta = new ByteArrayOutputStream(512);
+
+    private byte[] cabecera;
+    private byte[] cierre;
+    private Charset codificacion = StandardCharsets.UTF_8;
+    private Map<String, String> espaciosFeed;
+    private boolean terminado = false;
+
+    DivisorFeedAtom(InputStream in) throws IOException {
+        this.in = in;
+        leerRaiz();
+    }
+
+    /**
+     * Etiqueta de apertura del feed, tal cual aparece en el fichero.
+     */
+    byte[] getCabecera() {
+        return cabecera;
+    }
+
+    /**
+     * Etiqueta de cierre del feed.
+     */
+    byte[] getCierre() {
+        return cierre;
+    }
+
+    /**
+     * Codificacion del fichero: la de la declaracion XML, o UTF-8 si no la indica.
+     */
+    Charset getCodificacion() {
+        return codificacion;
+    }
+
+    /**
+     * Avanza hasta el siguiente hijo directo del feed.
+     *
+     * @return El fragmento, o null si se ha llegado al cierre del feed
+     */
+    Fragmento siguiente(Filtro filtro) throws IOException {
+        while (!terminado) {
+            if (!buscarApertura()) {
+                terminado = true;
+                return null;
+            }
+            // El '<' sigue en el buffer: la captura empieza en el, por si es un hijo
+            capturando = true;
+            inicioCaptura = pos - 1;
+            captura.reset();
+            long inicio = base + pos - 1;
+
+            int c = leer();
+            if (c != '/' && c != '!' && c != '?' && c >= 0) {
+                return leerHijo(inicio, c, filtro);
+            }
+            capturando = false;
+            if (c == '/') {
+                // Cierre del feed
+                terminado = true;
+                return null;
+            } else if (c == '!') {
+                saltarDeclaracion();
+            } else if (c == '?') {
+                saltarHasta('?', '>');
+            }
+        }
+        return null;
+    }
+
+    private Fragmento leerHijo(long inicio, int primero, Filtro filtro) throws IOException {
+        etiqueta.reset();
+        etiqueta.write(primero);
+        boolean vacio = leerEtiqueta(true);
+
+        String qname = nombreEtiqueta();
+        Map<String, String> declaraciones = declaracionesEtiqueta();
+        int dosPuntos = qname.indexOf(':');
+        String prefijo = dosPuntos >= 0 ? qname.substring(0, dosPuntos) : "";
+        String nombre = dosPuntos >= 0 ? qname.substring(dosPuntos + 1) : qname;
+        String espacioNombres = declaraciones.containsKey(prefijo) ? declaraciones.get(prefijo) : espaciosFeed.get(prefijo);
+
+        boolean capturar = filtro != null && filtro.capturar(espacioNombres, nombre);
+        if (!capturar) {
+            capturando = false;
+        }
+
+        if (!vacio) {
+            saltarContenido();
+        }
+
+        byte[] datos = null;
+        if (capturar) {
+            volcarCaptura(pos);
+            capturando = false;
+            datos = captura.toByteArray();
+        }
+        return new Fragmento(espacioNombres, nombre, datos, base + pos - inicio);
+    }
+
+    /**
+     * Recorre el contenido de un elemento hasta su etiqueta de cierre.
+     */
+    private void saltarContenido() throws IOException {
+        int profundidad = 1;
+        while (profundidad > 0) {
+            if (!buscarApertura()) {
+                throw new IOException("Fin de fichero inesperado dentro de un elemento del feed");
+            }
+            int c = leer();
+            if (c == '/') {
+                saltarHasta('>');
+                profundidad--;
+            } else if (c == '!') {
+                saltarDeclaracion();
+            } else if (c == '?') {
+                saltarHasta('?', '>');
+            } else if (c >= 0) {
+                if (!leerEtiqueta(false)) {
+                    profundidad++;
+                }
+            } else {
+                throw new IOException("Fin de fichero inesperado dentro de un elemento del feed");
+            }
+        }
+    }
+
+    /**
+     * Salta el prologo y lee la etiqueta de apertura del feed.
+     */
+    private void leerRaiz() throws IOException {
+        comprobarMarcaOrden();
+        boolean inicio = true;
+        while (true) {
+            if (!buscarApertura()) {
+                throw new IOException("El fichero no contiene ningun elemento XML");
+            }
+            int c = leer();
+            if (c == '?' && inicio) {
+                leerDeclaracionXml();
+            } else if (c == '!') {
+                saltarDeclaracion();
+            } else if (c == '?') {
+                saltarHasta('?', '>');
+            } else if (c >= 0 && c != '/') {
+                etiqueta.reset();
+                etiqueta.write('<');
+                etiqueta.write(c);
+                boolean vacio = leerEtiqueta(true);
+                byte[] bytes = etiqueta.toByteArray();
+                String qname = nombreEtiqueta();
+                espaciosFeed = declaracionesEtiqueta();
+
+                if (vacio) {
+                    // <feed/>: se reescribe como apertura para poder envolver fragmentos
+                    int fin = bytes.length - 2;
+                    bytes = Arrays.copyOf(bytes, fin + 1);
+                    bytes[fin] = '>';
+                    terminado = true;
+                }
+                cabecera = bytes;
+                cierre = ("</" + qname + ">").getBytes(codificacion);
+                return;
+            } else {
+                throw new IOException("XML mal formado al inicio del fichero");
+            }
+            inicio = false;
+        }
+    }
+
+    /**
+     * Rechaza los ficheros en UTF-16 o UTF-32 (con o sin BOM), en los que los bytes
+     * de las etiquetas no coinciden con sus caracteres ASCII.
+     */
+    private void comprobarMarcaOrden() throws IOException {
+        if (!rellenar()) {
+            return;
+        }
+        int b0 = lim > 0 ? buffer[0] & 0xFF : -1;
+        int b1 = lim > 1 ? buffer[1] & 0xFF : -1;
+        if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE) || b0 == 0x00 || b1 == 0x00) {
+            throw new IOException("Codificacion no soportada en el fichero ATOM: UTF-16/UTF-32");
+        }
+    }
+
+    /**
+     * Lee la instruccion de proceso inicial y, si es la declaracion XML, toma su codificacion.
+     */
+    private void leerDeclaracionXml() throws IOException {
+        etiqueta.reset();
+        int anterior = 0;
+        while (true) {
+            int c = leer();
+            if (c < 0) {
+                throw new IOException("Fin de fichero inesperado");
+            }
+            if (c == '>' && anterior == '?') {
+                break;
+            }
+            etiqueta.write(c);
+            anterior = c;
+        }
+        String texto = new String(etiqueta.toByteArray(), StandardCharsets.ISO_8859_1);
+        if (!texto.startsWith("xml") || texto.length() < 4 || !esEspacio(texto.charAt(3))) {
+            return;
+        }
+        int i = texto.indexOf("encoding");
+        if (i < 0) {
+            return;
+        }
+        int j = i + "encoding".length();
+        while (j < texto.length() && texto.charAt(j) != '"' && texto.charAt(j) != '\'') {
+            j++;
+        }
+        int fin = j < texto.length() ? texto.indexOf(texto.charAt(j), j + 1) : -1;
+        if (fin < 0) {
+            throw new IOException("Declaracion XML mal formada: " + texto);
+        }
+        codificacion = codificacionSoportada(texto.substring(j + 1, fin).trim());
+    }
+
+    private static Charset codificacionSoportada(String nombre) throws IOException {
+        Charset charset;
+        try {
+            charset = Charset.forName(nombre);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IOException("Codificacion no soportada en el fichero ATOM: " + nombre, e);
+        }
+        if (StandardCharsets.UTF_8.equals(charset)) {
+            return charset;
+        }
+        // Un byte por caracter y ASCII en su sitio: el divisor puede buscar las etiquetas en los bytes
+        byte[] ascii = new byte[0x80];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1
+                || !Arrays.equals(ascii, new String(ascii, StandardCharsets.US_ASCII).getBytes(charset))) {
+            throw new IOException("Codificacion no soportada en el fichero ATOM: " + nombre);
+        }
+        return charset;
+    }
+
+    /**
+     * Lee el resto de una etiqueta de apertura hasta su '>', respetando los valores de
+     * atributos entre comillas (que pueden contener '>').
+     *
+     * @param guardar Si se acumulan los bytes en "etiqueta" para analizarla
+     * @return true si la etiqueta es vacia (termina en "/>")
+     */
+    private boolean leerEtiqueta(boolean guardar) throws IOException {
+        int comilla = 0;
+        int anterior = 0;
+        while (true) {
+            int c = leer();
+            if (c < 0) {
+                throw new IOException("Fin de fichero inesperado dentro de una etiqueta");
+            }
+            if (guardar) {
+                etiqueta.write(c);
+            }
+            if (comilla != 0) {
+                if (c == comilla) {
+                    comilla = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                comilla = c;
+            } else if (c == '>') {
+                return anterior == '/';
+            }
+            anterior = c;
+        }
+    }
+
+    /**
+     * Salta lo que sigue a "<!": comentario, seccion CDATA o declaracion (DOCTYPE).
+     */
+    private void saltarDeclaracion() throws IOException {
+        int c = leer();
+        if (c == '-') {
+            leer();
+            saltarHasta('-', '-', '>');
+        } else if (c == '[') {
+            saltarHasta(']', ']', '>');
+        } else {
+            // DOCTYPE, con posible subconjunto interno entre corchetes
+            int corchetes = 0;
+            while (c >= 0 && !(c == '>' && corchetes == 0)) {
+                if (c == '[') {
+                    corchetes++;
+                } else if (c == ']') {
+                    corchetes--;
+                }
+                c = leer();
+            }
+        }
+    }
+
+    /**
+     * Avanza hasta consumir la secuencia indicada.
+     */
+    private void saltarHasta(int... secuencia) throws IOException {
+        int coincidencias = 0;
+        while (coincidencias < secuencia.length) {
+            int c = leer();
+            if (c < 0) {
+                throw new IOException("Fin de fichero inesperado");
+            }
+            if (c == secuencia[coincidencias]) {
+                coincidencias++;
+            } else if (coincidencias == 2 && secuencia[0] == secuencia[1] && c == secuencia[1]) {
+                // "--->" o "]]]>": la secuencia sigue abierta
+            } else {
+                coincidencias = c == secuencia[0] ? 1 : 0;
+            }
+        }
+    }
+
+    /**
+     * Avanza hasta consumir el siguiente '<' (el texto entre etiquetas no puede contenerlo).
+     *
+     * @return false si se llega al final del fichero
+     */
+    private boolean buscarApertura() throws IOException {
+        while (true) {
+            for (int i = pos; i < lim; i++) {
+                if (buffer[i] == '<') {
+                    pos = i + 1;
+                    return true;
+                }
+            }
+            pos = lim;
+            if (!rellenar()) {
+                return false;
+            }
+        }
+    }
+
+    private int leer() throws IOException {
+        if (pos == lim && !rellenar()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xFF;
+    }
+
+    private boolean rellenar() throws IOException {
+        if (capturando) {
+            volcarCaptura(lim);
+            inicioCaptura = 0;
+        }
+        base += lim;
+        int leidos;
+        do {
+            leidos = in.read(buffer, 0, buffer.length);
+        } while (leidos == 0);
+        pos = 0;
+        lim = Math.max(leidos, 0);
+        return leidos > 0;
+    }
+
+    private void volcarCaptura(int hasta) {
+        captura.write(buffer, inicioCaptura, hasta - inicioCaptura);
+        inicioCaptura = hasta;
+    }
+
+    /**
+     * Nombre cualificado de la etiqueta acumulada (sin el '<' inicial).
+     */
+    private String nombreEtiqueta() {
+        byte[] bytes = etiqueta.toByteArray();
+        int inicio = bytes.length > 0 && bytes[0] == '<' ? 1 : 0;
+        int fin = inicio;
+        while (fin < bytes.length && !esEspacio(bytes[fin]) && bytes[fin] != '/' && bytes[fin] != '>') {
+            fin++;
+        }
+        return new String(bytes, inicio, fin - inicio, codificacion);
+    }
+
+    /**
+     * Declaraciones xmlns de la etiqueta acumulada (prefijo "" para el espacio por defecto).
+     */
+    private Map<String, String> declaracionesEtiqueta() {
+        String texto = new String(etiqueta.toByteArray(), codificacion);
+        Map<String, String> declaraciones = new HashMap<>();
+        int i = texto.indexOf("xmlns");
+        while (i >= 0) {
+            boolean inicioAtributo = i > 0 && Character.isWhitespace(texto.charAt(i - 1));
+            int j = i + 5;
+            String prefijo = null;
+            if (inicioAtributo && j < texto.length()) {
+                if (texto.charAt(j) == ':') {
+                    int finPrefijo = j + 1;
+                    while (finPrefijo < texto.length() && texto.charAt(finPrefijo) != '='
+                            && !Character.isWhitespace(texto.charAt(finPrefijo))) {
+                        finPrefijo++;
+                    }
+                    prefijo = texto.substring(j + 1, finPrefijo);
+                    j = finPrefijo;
+                } else if (texto.charAt(j) == '=' || Character.isWhitespace(texto.charAt(j))) {
+                    prefijo = "";
+                }
+            }
+            if (prefijo != null) {
+                while (j < texto.length() && texto.charAt(j) != '"' && texto.charAt(j) != '\'') {
+                    j++;
+                }
+                if (j < texto.length()) {
+                    char comilla = texto.charAt(j);
+                    int fin = texto.indexOf(comilla, j + 1);
+                    if (fin > j) {
+                        declaraciones.put(prefijo, desescapar(texto.substring(j + 1, fin)));
+                        i = texto.indexOf("xmlns", fin);
+                        continue;
+                    }
+                }
+            }
+            i = texto.indexOf("xmlns", i + 5);
+        }
+        return declaraciones;
+    }
+
+    private static String desescapar(String valor) {
+        if (valor.indexOf('&') < 0) {
+            return valor;
+        }
+        return valor.replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"")
+                .replace("&apos;", "'").replace("&amp;", "&");
+    }
+
+    private static boolean esEspacio(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
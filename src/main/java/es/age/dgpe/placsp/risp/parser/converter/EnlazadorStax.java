@@ -0,0 +1,411 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.annotation.XmlAnyAttribute;
+import javax.xml.bind.annotation.XmlAnyElement;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementDecl;
+import javax.xml.bind.annotation.XmlElementRef;
+import javax.xml.bind.annotation.XmlElementRefs;
+import javax.xml.bind.annotation.XmlElements;
+import javax.xml.bind.annotation.XmlMixed;
+import javax.xml.bind.annotation.XmlNsForm;
+import javax.xml.bind.annotation.XmlSchema;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.XmlValue;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3._2005.atom.EntryType;
+
+/**
+ * Deserializador de entries con StAX que no usa el runtime de JAXB.
+ *
+ * Construye los mismos objetos del modelo generado a partir de los XSD de CODICE y
+ * PLACE-ext (EntryType, ContractFolderStatusType...), de forma que las columnas
+ * (DatosLicitacionGenerales, DatosResultados, DatosEMP, DatosCPM) se calculan igual
+ * que con JAXB, pero solo rellena los elementos que leen las columnas seleccionadas
+ * (los que declara cada una en getElementos): el resto de subarboles se saltan sin
+ * crear ningun objeto.
+ *
+ * El enlace de cada clase (que elemento o atributo va a que campo, con que adaptador)
+ * se obtiene una sola vez de las anotaciones JAXB de las clases generadas, y se reutiliza
+ * para todas las entries. Es thread-safe.
+ */
+public class EnlazadorStax {
+
+    /**
+     * Elementos ATOM de la entry que lee el CLI, ademas de los de las columnas.
+     */
+    private static final List<String> ELEMENTOS_ENTRY = Arrays.asList("id", "link", "updated");
+
+    // ObjectFactory con los elementos raiz que pueden aparecer en la lista "any" de la entry
+    private static final Class<?>[] FACTORIAS_RAIZ = {
+            ext.place.codice.common.caclib.ObjectFactory.class
+    };
+
+    private static final DatatypeFactory DATATYPE_FACTORY = crearDatatypeFactory();
+
+    private final Set<String> elementos;
+    private final Map<Class<?>, Plan> planes = new ConcurrentHashMap<>();
+    // Espacio de nombres -> nombre -> clase de los elementos raiz
+    private final Map<String, Map<String, Class<?>>> raices = new HashMap<>();
+
+    /**
+     * @param elementos Nombres locales de los elementos CODICE que se rellenan: los que
+     *                  recorren las columnas seleccionadas (getElementos de Datos*)
+     */
+    public EnlazadorStax(Set<String> elementos) {
+        this.elementos = new HashSet<>(elementos);
+        this.elementos.addAll(ELEMENTOS_ENTRY);
+        for (Class<?> factoria : FACTORIAS_RAIZ) {
+            registrarRaices(factoria);
+        }
+    }
+
+    private static DatatypeFactory crearDatatypeFactory() {
+        try {
+            return DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Lee una entry. El lector debe estar en el inicio del elemento entry y queda en su cierre.
+     */
+    public EntryType leerEntry(XMLStreamReader reader) throws XMLStreamException {
+        return (EntryType) leerObjeto(reader, plan(EntryType.class));
+    }
+
+    private void registrarRaices(Class<?> factoria) {
+        for (Method metodo : factoria.getMethods()) {
+            XmlElementDecl declaracion = metodo.getAnnotation(XmlElementDecl.class);
+            if (declaracion == null || declaracion.scope() != XmlElementDecl.GLOBAL.class
+                    || !(metodo.getGenericReturnType() instanceof ParameterizedType)) {
+                continue;
+            }
+            Type tipo = ((ParameterizedType) metodo.getGenericReturnType()).getActualTypeArguments()[0];
+            if (tipo instanceof Class) {
+                raices.computeIfAbsent(declaracion.namespace(), k -> new HashMap<>()).put(declaracion.name(), (Class<?>) tipo);
+            }
+        }
+    }
+
+    private Plan plan(Class<?> clase) {
+        // Los planes de los hijos se resuelven al usarlos, asi que no hay recursion
+        return planes.computeIfAbsent(clase, Plan::new);
+    }
+
+    /**
+     * Lee el elemento actual como un objeto de la clase del plan: atributos, hijos
+     * enlazados y, si la clase lo tiene, su valor de texto.
+     */
+    private Object leerObjeto(XMLStreamReader reader, Plan plan) throws XMLStreamException {
+        Object objeto = plan.crear();
+
+        if (!plan.atributos.isEmpty()) {
+            for (int i = 0; i < reader.getAttributeCount(); i++) {
+                Propiedad atributo = plan.atributos.get(reader.getAttributeLocalName(i));
+                if (atributo != null) {
+                    atributo.asignar(objeto, atributo.convertir(reader.getAttributeValue(i)));
+                }
+            }
+        }
+
+        String texto = null;
+        StringBuilder textoLargo = null;
+        while (true) {
+            int evento = reader.next();
+            if (evento == XMLStreamConstants.START_ELEMENT) {
+                leerHijo(reader, plan, objeto);
+            } else if (evento == XMLStreamConstants.END_ELEMENT) {
+                break;
+            } else if (plan.valor != null && esTexto(evento)) {
+                // Como JAXB, el valor es la concatenacion de todos los nodos de texto
+                if (texto == null) {
+                    texto = reader.getText();
+                } else {
+                    if (textoLargo == null) {
+                        textoLargo = new StringBuilder(texto);
+                    }
+                    textoLargo.append(reader.getText());
+                }
+            }
+        }
+
+        if (plan.valor != null) {
+            String valor = textoLargo != null ? textoLargo.toString() : texto != null ? texto : "";
+            plan.valor.asignar(objeto, plan.valor.convertir(valor));
+        }
+        return objeto;
+    }
+
+    private void leerHijo(XMLStreamReader reader, Plan plan, Object objeto) throws XMLStreamException {
+        String ns = reader.getNamespaceURI();
+        String nombre = reader.getLocalName();
+
+        Map<String, Propiedad> delEspacio = plan.elementos.get(ns != null ? ns : "");
+        Propiedad propiedad = delEspacio != null ? delEspacio.get(nombre) : null;
+        if (propiedad != null) {
+            Object valor = propiedad.compuesta ? leerObjeto(reader, propiedad.plan()) : propiedad.convertir(leerTexto(reader));
+            propiedad.asignar(objeto, valor);
+            return;
+        }
+
+        if (plan.any != null) {
+            Map<String, Class<?>> raicesEspacio = raices.get(ns != null ? ns : "");
+            Class<?> clase = raicesEspacio != null ? raicesEspacio.get(nombre) : null;
+            if (clase != null) {
+                Object valor = leerObjeto(reader, plan(clase));
+                plan.any.asignar(objeto, crearJAXBElement(new QName(ns, nombre), clase, valor));
+                return;
+            }
+        }
+        AtomStreamReader.saltarElemento(reader);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static JAXBElement<?> crearJAXBElement(QName nombre, Class<?> clase, Object valor) {
+        return new JAXBElement(nombre, clase, valor);
+    }
+
+    /**
+     * Texto de un elemento simple; los elementos hijos, si los hubiera, se saltan.
+     */
+    private static String leerTexto(XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder texto = new StringBuilder();
+        while (true) {
+            int evento = reader.next();
+            if (evento == XMLStreamConstants.START_ELEMENT) {
+                AtomStreamReader.saltarElemento(reader);
+            } else if (evento == XMLStreamConstants.END_ELEMENT) {
+                return texto.toString();
+            } else if (esTexto(evento)) {
+                texto.append(reader.getText());
+            }
+        }
+    }
+
+    private static boolean esTexto(int evento) {
+        return evento == XMLStreamConstants.CHARACTERS || evento == XMLStreamConstants.CDATA
+                || evento == XMLStreamConstants.SPACE || evento == XMLStreamConstants.ENTITY_REFERENCE;
+    }
+
+    private static boolean esSimple(Class<?> tipo) {
+        return tipo == String.class || tipo == BigDecimal.class || tipo == BigInteger.class
+                || tipo == XMLGregorianCalendar.class || tipo == Boolean.class || tipo == boolean.class
+                || tipo == byte[].class;
+    }
+
+    /**
+     * Enlace de una clase generada: sus elementos, atributos, valor y lista "any".
+     */
+    private final class Plan {
+
+        private final Constructor<?> constructor;
+        // Espacio de nombres -> nombre local -> propiedad
+        private final Map<String, Map<String, Propiedad>> elementos = new HashMap<>();
+        private final Map<String, Propiedad> atributos = new HashMap<>();
+        private Propiedad valor;
+        private Propiedad any;
+
+        private Plan(Class<?> clase) {
+            try {
+                constructor = clase.getDeclaredConstructor();
+                constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalStateException("Clase sin constructor por defecto: " + clase.getName(), e);
+            }
+
+            for (Class<?> actual = clase; actual != null && actual != Object.class; actual = actual.getSuperclass()) {
+                for (Field campo : actual.getDeclaredFields()) {
+                    if (!Modifier.isStatic(campo.getModifiers())) {
+                        registrar(actual, campo);
+                    }
+                }
+            }
+        }
+
+        private void registrar(Class<?> declarante, Field campo) {
+            if (campo.isAnnotationPresent(XmlValue.class)) {
+                valor = new Propiedad(campo);
+            } else if (campo.isAnnotationPresent(XmlAttribute.class)) {
+                String nombre = campo.getAnnotation(XmlAttribute.class).name();
+                atributos.put("##default".equals(nombre) ? campo.getName() : nombre, new Propiedad(campo));
+            } else if (campo.isAnnotationPresent(XmlAnyElement.class)) {
+                if (List.class.isAssignableFrom(campo.getType())) {
+                    any = new Propiedad(campo);
+                }
+            } else if (!campo.isAnnotationPresent(XmlAnyAttribute.class) && !campo.isAnnotationPresent(XmlElements.class)
+                    && !campo.isAnnotationPresent(XmlElementRef.class) && !campo.isAnnotationPresent(XmlElementRefs.class)
+                    && !campo.isAnnotationPresent(XmlMixed.class) && !campo.isAnnotationPresent(XmlTransient.class)) {
+                XmlElement anotacion = campo.getAnnotation(XmlElement.class);
+                String nombre = anotacion != null && !"##default".equals(anotacion.name()) ? anotacion.name() : campo.getName();
+                if (!EnlazadorStax.this.elementos.contains(nombre)) {
+                    return;
+                }
+                String ns = anotacion != null && !"##default".equals(anotacion.namespace()) ? anotacion.namespace() : espacioPorDefecto(declarante);
+                Class<?> tipo = tipoElemento(campo);
+                if (tipo == null || tipo == Object.class || tipo.isEnum()) {
+                    return;
+                }
+                elementos.computeIfAbsent(ns, k -> new HashMap<>()).put(nombre, new Propiedad(campo));
+            }
+            // @XmlAnyAttribute, @XmlElements, @XmlMixed...: no aparecen en los elementos de las columnas
+        }
+
+        private Object crear() {
+            try {
+                return constructor.newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static String espacioPorDefecto(Class<?> clase) {
+        XmlSchema esquema = clase.getPackage() != null ? clase.getPackage().getAnnotation(XmlSchema.class) : null;
+        return esquema != null && esquema.elementFormDefault() == XmlNsForm.QUALIFIED ? esquema.namespace() : "";
+    }
+
+    private static Class<?> tipoElemento(Field campo) {
+        if (!List.class.isAssignableFrom(campo.getType())) {
+            return campo.getType();
+        }
+        Type generico = campo.getGenericType();
+        if (generico instanceof ParameterizedType) {
+            Type argumento = ((ParameterizedType) generico).getActualTypeArguments()[0];
+            if (argumento instanceof Class) {
+                return (Class<?>) argumento;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Campo de una clase generada, con su conversion de texto si es de tipo simple.
+     */
+    private final class Propiedad {
+
+        private final Field campo;
+        private final boolean lista;
+        private final Class<?> tipo;
+        private final boolean compuesta;
+        private final XmlAdapter<String, ?> adaptador;
+        private volatile Plan plan;
+
+        @SuppressWarnings("unchecked")
+        private Propiedad(Field campo) {
+            this.campo = campo;
+            this.campo.setAccessible(true);
+            this.lista = List.class.isAssignableFrom(campo.getType());
+            this.tipo = lista ? tipoElemento(campo) : campo.getType();
+            this.compuesta = tipo != null && !esSimple(tipo);
+
+            XmlJavaTypeAdapter anotacion = campo.getAnnotation(XmlJavaTypeAdapter.class);
+            XmlAdapter<String, ?> adaptadorCampo = null;
+            if (anotacion != null) {
+                try {
+                    adaptadorCampo = (XmlAdapter<String, ?>) anotacion.value().getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            this.adaptador = adaptadorCampo;
+        }
+
+        private Plan plan() {
+            Plan resuelto = plan;
+            if (resuelto == null) {
+                resuelto = EnlazadorStax.this.plan(tipo);
+                plan = resuelto;
+            }
+            return resuelto;
+        }
+
+        /**
+         * Convierte el texto de un atributo o elemento simple al tipo del campo, con los
+         * mismos criterios que JAXB. Un valor no valido se deja a null, como hace JAXB.
+         */
+        private Object convertir(String texto) {
+            try {
+                if (adaptador != null) {
+                    return adaptador.unmarshal(texto);
+                }
+                if (tipo == String.class) {
+                    return texto;
+                }
+                if (tipo == BigDecimal.class) {
+                    return DatatypeConverter.parseDecimal(texto);
+                }
+                if (tipo == BigInteger.class) {
+                    return DatatypeConverter.parseInteger(texto);
+                }
+                if (tipo == XMLGregorianCalendar.class) {
+                    return DATATYPE_FACTORY.newXMLGregorianCalendar(texto.trim());
+                }
+                if (tipo == Boolean.class || tipo == boolean.class) {
+                    String limpio = texto.trim();
+                    if ("true".equals(limpio) || "1".equals(limpio)) {
+                        return Boolean.TRUE;
+                    }
+                    return "false".equals(limpio) || "0".equals(limpio) ? Boolean.FALSE : null;
+                }
+                if (tipo == byte[].class) {
+                    return DatatypeConverter.parseBase64Binary(texto);
+                }
+                return null;
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void asignar(Object objeto, Object valor) {
+            if (valor == null) {
+                return;
+            }
+            try {
+                if (lista) {
+                    List<Object> elementos = (List<Object>) campo.get(objeto);
+                    if (elementos == null) {
+                        elementos = new ArrayList<>();
+                        campo.set(objeto, elementos);
+                    }
+                    elementos.add(valor);
+                } else {
+                    campo.set(objeto, valor);
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3._2005.atom.EntryType;
+
+import es.age.dgpe.placsp.risp.parser.model.TipoEntry;
+
+/**
+ * Entry de un feed ATOM tal cual aparece en el fichero (sus bytes), todavia sin deserializar.
+ *
+ * Permite consultar el identificador, la fecha de actualizacion y el tipo de la entry
+ * (licitacion, EMP o CPM) recorriendo solo los elementos necesarios con un XMLStreamReader,
+ * y deserializarla (con JAXB o con EnlazadorStax) unicamente si hace falta volcarla.
+ */
+public class EntradaAtom {
+
+    private static final String CAC_PLACE_EXT_NS = "urn:dgpe:names:draft:codice-place-ext:schema:xsd:CommonAggregateComponents-2";
+    private static final String CAC_NS = "urn:dgpe:names:draft:codice:schema:xsd:CommonAggregateComponents-2";
+    private static final String CBC_NS = "urn:dgpe:names:draft:codice:schema:xsd:CommonBasicComponents-2";
+
+    // Elementos ATOM con propiedad propia en EntryType; cualquier otro va a la lista "any"
+    private static final Set<String> ELEMENTOS_ENTRY = new HashSet<>(Arrays.asList(
+            "author", "category", "content", "contributor", "id", "link", "published",
+            "rights", "source", "summary", "title", "updated"));
+
+    private final byte[] cabecera;
+    private final byte[] datos;
+    private final byte[] cierre;
+    private final Charset codificacion;
+
+    private boolean cabeceraLeida = false;
+    private String id;
+    private String updated;
+    private TipoEntry tipo;
+    private EntryType entry;
+
+    EntradaAtom(byte[] cabecera, byte[] datos, byte[] cierre, Charset codificacion) {
+        this.cabecera = cabecera;
+        this.datos = datos;
+        this.cierre = cierre;
+        this.codificacion = codificacion;
+    }
+
+    /**
+     * Valor del elemento id de la entry (el mismo que entry.getId().getValue()).
+     */
+    public String getId() throws XMLStreamException {
+        if (!cabeceraLeida) {
+            analizar(false);
+        }
+        return id;
+    }
+
+    /**
+     * Texto del elemento updated de la entry, sin interpretar.
+     */
+    public String getUpdated() throws XMLStreamException {
+        if (!cabeceraLeida) {
+            analizar(false);
+        }
+        return updated;
+    }
+
+    /**
+     * Tipo de la entry, obtenido del nombre del elemento raiz de su contenido y del
+     * ResultCode del primer TenderResult, con el mismo criterio que TipoEntry.de(EntryType).
+     */
+    public TipoEntry getTipo() throws XMLStreamException {
+        if (tipo == null) {
+            analizar(true);
+        }
+        return tipo;
+    }
+
+    /**
+     * Tamano en bytes de la entry en el fichero.
+     */
+    public int getTamano() {
+        return datos.length;
+    }
+
+    /**
+     * Deserializa la entry con JAXB (solo la primera vez).
+     *
+     * @param unmarshaller Unmarshaller del hilo que llama
+     */
+    public EntryType getEntry(Unmarshaller unmarshaller) throws JAXBException, XMLStreamException {
+        if (entry == null) {
+            entry = leerConJaxb(unmarshaller);
+        }
+        return entry;
+    }
+
+    /**
+     * Deserializa la entry con StAX, rellenando solo los elementos del enlazador (solo la
+     * primera vez).
+     */
+    public EntryType getEntry(EnlazadorStax enlazador) throws XMLStreamException {
+        if (entry == null) {
+            XMLStreamReader reader = AtomStreamReader.abrirFragmento(cabecera, datos, cierre, codificacion);
+            try {
+                entry = enlazador.leerEntry(reader);
+            } finally {
+                reader.close();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Deserializa la entry con JAXB sin guardar el resultado, para compararlo con el de
+     * EnlazadorStax.
+     */
+    public EntryType leerConJaxb(Unmarshaller unmarshaller) throws JAXBException, XMLStreamException {
+        XMLStreamReader reader = AtomStreamReader.abrirFragmento(cabecera, datos, cierre, codificacion);
+        try {
+            return unmarshaller.unmarshal(reader, EntryType.class).getValue();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Recorre los hijos de la entry hasta tener id y updated y, si se pide, el tipo.
+     * El resto de elementos se saltan sin construir ningun objeto.
+     */
+    private void analizar(boolean clasificar) throws XMLStreamException {
+        XMLStreamReader reader = AtomStreamReader.abrirFragmento(cabecera, datos, cierre, codificacion);
+        try {
+            boolean contenidoVisto = false;
+            TipoEntry tipoLeido = TipoEntry.LICITACION;
+
+            reader.next();
+            int evento = AtomStreamReader.siguienteEtiqueta(reader);
+            while (evento == XMLStreamConstants.START_ELEMENT) {
+                String ns = reader.getNamespaceURI();
+                String nombre = reader.getLocalName();
+
+                if (AtomStreamReader.ATOM_NS.equals(ns) && "id".equals(nombre)) {
+                    id = reader.getElementText();
+                } else if (AtomStreamReader.ATOM_NS.equals(ns) && "updated".equals(nombre)) {
+                    updated = reader.getElementText();
+                } else if (!contenidoVisto && !(AtomStreamReader.ATOM_NS.equals(ns) && ELEMENTOS_ENTRY.contains(nombre))) {
+                    // Primer elemento de la lista "any": ContractFolderStatus o PreliminaryMarketConsultationStatus
+                    contenidoVisto = true;
+                    if (clasificar) {
+                        tipoLeido = clasificarContenido(reader, ns, nombre);
+                    } else {
+                        AtomStreamReader.saltarElemento(reader);
+                    }
+                } else {
+                    AtomStreamReader.saltarElemento(reader);
+                }
+
+                if (id != null && updated != null && (!clasificar || contenidoVisto)) {
+                    break;
+                }
+                reader.next();
+                evento = AtomStreamReader.siguienteEtiqueta(reader);
+            }
+
+            cabeceraLeida = true;
+            if (clasificar) {
+                tipo = tipoLeido;
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Clasifica el contenido de la entry. Al terminar, el lector queda en el cierre del elemento.
+     */
+    private static TipoEntry clasificarContenido(XMLStreamReader reader, String ns, String nombre) throws XMLStreamException {
+        if (!CAC_PLACE_EXT_NS.equals(ns) || !"ContractFolderStatus".equals(nombre)) {
+            AtomStreamReader.saltarElemento(reader);
+            if (CAC_PLACE_EXT_NS.equals(ns) && "PreliminaryMarketConsultationStatus".equals(nombre)) {
+                return TipoEntry.CPM;
+            }
+            return TipoEntry.LICITACION;
+        }
+
+        // Hijos de ContractFolderStatus: solo interesa el primer TenderResult
+        reader.next();
+        int evento = AtomStreamReader.siguienteEtiqueta(reader);
+        while (evento == XMLStreamConstants.START_ELEMENT) {
+            if (CAC_NS.equals(reader.getNamespaceURI()) && "TenderResult".equals(reader.getLocalName())) {
+                String codigo = null;
+                reader.next();
+                int eventoResultado = AtomStreamReader.siguienteEtiqueta(reader);
+                while (eventoResultado == XMLStreamConstants.START_ELEMENT) {
+                    if (CBC_NS.equals(reader.getNamespaceURI()) && "ResultCode".equals(reader.getLocalName())) {
+                        codigo = reader.getElementText();
+                    } else {
+                        AtomStreamReader.saltarElemento(reader);
+                    }
+                    reader.next();
+                    eventoResultado = AtomStreamReader.siguienteEtiqueta(reader);
+                }
+                // Resto de ContractFolderStatus
+                AtomStreamReader.saltarElemento(reader);
+                return TipoEntry.RESULT_CODE_EMP.equals(codigo) ? TipoEntry.EMP : TipoEntry.LICITACION;
+            }
+            AtomStreamReader.saltarElemento(reader);
+            reader.next();
+            evento = AtomStreamReader.siguienteEtiqueta(reader);
+        }
+        return TipoEntry.LICITACION;
+    }
+}
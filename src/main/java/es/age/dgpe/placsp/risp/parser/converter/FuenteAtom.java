@@ -0,0 +1,100 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fichero ATOM de entrada, ya sea en disco o dentro de un ZIP.
+ *
+ * Ademas de abrirlo, sabe resolver el fichero al que apunta un enlace "next": el ultimo
+ * segmento del href, en el mismo directorio (o en la misma carpeta del conjunto de ZIPs).
+ * Dos fuentes son iguales si designan el mismo fichero, para poder detectar ciclos.
+ */
+public abstract class FuenteAtom {
+
+    /**
+     * Nombre del fichero (sin directorio), para los mensajes.
+     */
+    public abstract String getNombre();
+
+    /**
+     * Abre el contenido del fichero. Quien llama debe cerrarlo.
+     */
+    public abstract InputStream abrir() throws IOException;
+
+    /**
+     * Firma del contenido actual del fichero (tamano y fecha de modificacion, o CRC dentro
+     * de un ZIP): si cambia, el fichero ha cambiado desde que se calculo.
+     */
+    public abstract String getFirma();
+
+    /**
+     * Fichero al que apunta un enlace "next" de este fichero.
+     *
+     * @return La fuente, o null si no existe
+     */
+    public abstract FuenteAtom siguiente(String href);
+
+    /**
+     * Fuente para un fichero en disco.
+     *
+     * @return La fuente, o null si el fichero no existe
+     */
+    public static FuenteAtom deFichero(File fichero) {
+        return fichero.exists() && fichero.isFile() ? new FicheroAtom(fichero) : null;
+    }
+
+    /**
+     * Nombre de fichero al que apunta un href (su ultimo segmento).
+     */
+    static String nombreEnlace(String href) {
+        String[] tempArray = href.split("/");
+        return tempArray[tempArray.length - 1];
+    }
+
+    @Override
+    public String toString() {
+        return getNombre();
+    }
+
+    private static final class FicheroAtom extends FuenteAtom {
+
+        private final File fichero;
+
+        private FicheroAtom(File fichero) {
+            this.fichero = fichero;
+        }
+
+        @Override
+        public String getNombre() {
+            return fichero.getName();
+        }
+
+        @Override
+        public InputStream abrir() throws IOException {
+            return new FileInputStream(fichero);
+        }
+
+        @Override
+        public String getFirma() {
+            return fichero.length() + "-" + fichero.lastModified();
+        }
+
+        @Override
+        public FuenteAtom siguiente(String href) {
+            return deFichero(new File(fichero.getParentFile(), nombreEnlace(href)));
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            return otro instanceof FicheroAtom && fichero.equals(((FicheroAtom) otro).fichero);
+        }
+
+        @Override
+        public int hashCode() {
+            return fichero.hashCode();
+        }
+    }
+}
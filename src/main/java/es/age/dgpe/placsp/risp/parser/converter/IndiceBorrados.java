@@ -0,0 +1,179 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.time.ZonedDateTime;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+
+import es.age.dgpe.placsp.risp.parser.model.FechasExcel;
+
+/**
+ * Indice ref -> fecha de borrado de las deleted-entry de una o varias cadenas ATOM.
+ *
+ * Cada fecha se guarda empaquetada en un long (instante en milisegundos y desplazamiento
+ * horario del fichero, en segundos) en lugar de un GregorianCalendar, de forma que el
+ * indice completo de todas las cadenas ocupa poco y se puede construir antes de volcar
+ * ninguna entry. Si una ref aparece varias veces, se conserva la primera o, si se pide,
+ * la mas reciente (con --ultima-version, para que no dependa del orden de los ficheros).
+ *
+ * Las refs con clave numerica (ver ClavesId) van a una tabla clave -> fecha con
+ * direccionamiento abierto fuera del heap (un ByteBuffer directo), que el GC no recorre
+ * aunque viva toda la conversion; las demas, a un HashMap.
+ */
+public class IndiceBorrados {
+
+    /**
+     * Valor devuelto por {@link #get(String)} para las entries sin deleted-entry.
+     */
+    public static final long SIN_BORRADO = Long.MIN_VALUE;
+
+    private static final int BITS_DESPLAZAMIENTO = 18;
+    private static final long MASCARA_DESPLAZAMIENTO = (1L << BITS_DESPLAZAMIENTO) - 1;
+    private static final int SESGO_DESPLAZAMIENTO = 1 << (BITS_DESPLAZAMIENTO - 1);
+
+    private static final DatatypeFactory DATATYPE_FACTORY = crearDatatypeFactory();
+
+    private static final int CAPACIDAD_INICIAL = 1 << 10;
+    // Ocupacion maxima de la tabla antes de duplicarla
+    private static final float CARGA_MAXIMA = 0.75f;
+
+    private final boolean masReciente;
+    private final ClavesId claves = new ClavesId();
+    // Pares (clave, fecha) consecutivos; clave SIN_CLAVE = hueco libre
+    private LongBuffer tabla = crearTabla(CAPACIDAD_INICIAL);
+    private int capacidad = CAPACIDAD_INICIAL;
+    private int numericas;
+    private final HashMap<String, Long> otras = new HashMap<>();
+
+    public IndiceBorrados() {
+        this(false);
+    }
+
+    /**
+     * @param masReciente Si una ref aparece varias veces, conservar la fecha mas reciente
+     *                    en lugar de la primera registrada
+     */
+    public IndiceBorrados(boolean masReciente) {
+        this.masReciente = masReciente;
+    }
+
+    private static DatatypeFactory crearDatatypeFactory() {
+        try {
+            return DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Registra una deleted-entry, salvo que ya hubiera una con la misma ref (y, si se
+     * conserva la mas reciente, con una fecha igual o posterior).
+     *
+     * @param ref Atributo ref de la deleted-entry
+     * @param when Atributo when, en formato xs:dateTime
+     */
+    public void registrar(String ref, String when) {
+        if (ref == null || when == null) {
+            return;
+        }
+        long clave = claves.clave(ref, true);
+        int posicion = clave != ClavesId.SIN_CLAVE ? buscar(tabla, capacidad, clave) : -1;
+        boolean existe = posicion >= 0 ? tabla.get(2 * posicion) == clave : otras.containsKey(ref);
+        if (existe && !masReciente) {
+            return;
+        }
+        long fecha = empaquetar(DATATYPE_FACTORY.newXMLGregorianCalendar(when.trim()).toGregorianCalendar());
+        if (existe && millis(fecha) <= millis(posicion >= 0 ? tabla.get(2 * posicion + 1) : otras.get(ref))) {
+            return;
+        }
+        if (posicion < 0) {
+            otras.put(ref, fecha);
+            return;
+        }
+        tabla.put(2 * posicion + 1, fecha);
+        if (existe) {
+            return;
+        }
+        tabla.put(2 * posicion, clave);
+        if (++numericas > capacidad * CARGA_MAXIMA) {
+            ampliar();
+        }
+    }
+
+    /**
+     * Fecha de borrado empaquetada de la entry, o {@link #SIN_BORRADO}.
+     */
+    public long get(String ref) {
+        long clave = claves.clave(ref, false);
+        if (clave == ClavesId.SIN_CLAVE) {
+            Long fecha = otras.get(ref);
+            return fecha != null ? fecha : SIN_BORRADO;
+        }
+        int posicion = buscar(tabla, capacidad, clave);
+        return tabla.get(2 * posicion) == clave ? tabla.get(2 * posicion + 1) : SIN_BORRADO;
+    }
+
+    public int size() {
+        return numericas + otras.size();
+    }
+
+    /**
+     * Instante (milisegundos desde epoch) de una fecha empaquetada.
+     */
+    public static long millis(long fecha) {
+        return fecha >> BITS_DESPLAZAMIENTO;
+    }
+
+    /**
+     * Numero de serie de Excel de la fecha y hora local, con el desplazamiento horario con
+     * el que venia en el fichero (la de GregorianCalendar.toZonedDateTime().toLocalDateTime()).
+     */
+    public static double serialExcel(long fecha) {
+        int desplazamiento = (int) (fecha & MASCARA_DESPLAZAMIENTO) - SESGO_DESPLAZAMIENTO;
+        return FechasExcel.serial(millis(fecha), desplazamiento);
+    }
+
+    private static LongBuffer crearTabla(int capacidad) {
+        // allocateDirect devuelve la memoria a cero: todos los huecos libres
+        return ByteBuffer.allocateDirect(capacidad * 2 * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /**
+     * Posicion (en pares) de la clave, o el primer hueco libre de su secuencia de sondeo.
+     */
+    private static int buscar(LongBuffer tabla, int capacidad, long clave) {
+        int mascara = capacidad - 1;
+        int posicion = ClavesId.posicion(clave, mascara);
+        long actual;
+        while ((actual = tabla.get(2 * posicion)) != ClavesId.SIN_CLAVE && actual != clave) {
+            posicion = (posicion + 1) & mascara;
+        }
+        return posicion;
+    }
+
+    private void ampliar() {
+        int nuevaCapacidad = capacidad * 2;
+        LongBuffer nueva = crearTabla(nuevaCapacidad);
+        for (int i = 0; i < capacidad; i++) {
+            long clave = tabla.get(2 * i);
+            if (clave != ClavesId.SIN_CLAVE) {
+                int posicion = buscar(nueva, nuevaCapacidad, clave);
+                nueva.put(2 * posicion, clave);
+                nueva.put(2 * posicion + 1, tabla.get(2 * i + 1));
+            }
+        }
+        tabla = nueva;
+        capacidad = nuevaCapacidad;
+    }
+
+    private static long empaquetar(GregorianCalendar fecha) {
+        ZonedDateTime zoned = fecha.toZonedDateTime();
+        long desplazamiento = zoned.getOffset().getTotalSeconds() + SESGO_DESPLAZAMIENTO;
+        return (fecha.getTimeInMillis() << BITS_DESPLAZAMIENTO) | desplazamiento;
+    }
+}
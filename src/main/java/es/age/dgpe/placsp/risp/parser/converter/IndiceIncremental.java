@@ -0,0 +1,472 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+
+import es.age.dgpe.placsp.risp.parser.model.EnumFormatos;
+import es.age.dgpe.placsp.risp.parser.model.FilaExcel;
+import es.age.dgpe.placsp.risp.parser.model.SpreeadSheetManager;
+import es.age.dgpe.placsp.risp.parser.model.TipoEntry;
+
+/**
+ * Indice persistente entre ejecuciones, para no volver a deserializar ni calcular las
+ * entries de los ficheros ATOM que no han cambiado desde la ultima conversion.
+ *
+ * Guarda un segmento por fichero ATOM: la firma del fichero, su enlace "next", sus
+ * deleted-entry y, por cada entry en el orden del fichero, su id, su fecha updated, su
+ * tipo y las filas que se volcaron de ella. Si en la siguiente ejecucion el fichero tiene
+ * la misma firma y la configuracion de columnas es la misma, sus filas se vuelcan sin
+ * abrir el ATOM. La deduplicacion y las celdas de fecha y estado (que dependen de las
+ * deleted-entry de toda la cadena) se recalculan en cada ejecucion.
+ *
+ * Los segmentos nuevos se escriben en ficheros temporales y solo sustituyen a los
+ * anteriores con {@link #confirmar()}, cuando la conversion ha terminado con exito. Los
+ * segmentos guardados no se proyectan en memoria: en Windows no se puede sustituir un
+ * fichero mientras siga proyectado, y el de un ATOM que ha cambiado se reescribe en la
+ * misma ejecucion en que se ha leido.
+ */
+public class IndiceIncremental {
+
+    /**
+     * Nombre del directorio del indice dentro de la carpeta de ATOMs.
+     */
+    public static final String DIRECTORIO = "indice-incremental";
+
+    private static final int MAGICO = 0x504C4958;
+    // Hay que cambiarla si cambia el formato del segmento o el calculo de alguna columna
+    private static final int VERSION = 3;
+    private static final String EXTENSION = ".idx";
+    private static final String EXTENSION_TEMPORAL = ".idx.tmp";
+
+    // Tipos de valor de las celdas guardadas (las fechas son numeros: su serie de Excel)
+    private static final byte CELDA_VACIA = 0;
+    private static final byte CELDA_TEXTO = 1;
+    private static final byte CELDA_NUMERO = 2;
+    private static final byte CELDA_BOOLEANO = 4;
+    // Celda sin estilo; el resto se guardan como el ordinal de su EnumFormatos
+    private static final byte SIN_ESTILO = -1;
+    // Entry cuyo tipo no se llego a calcular (era duplicada)
+    private static final byte TIPO_DESCONOCIDO = -1;
+
+    private static final DatatypeFactory DATATYPE_FACTORY = crearDatatypeFactory();
+
+    private final File directorio;
+    private final String configuracion;
+    // Nombre del ATOM -> segmento temporal escrito en esta ejecucion
+    private final Map<String, File> pendientes = new LinkedHashMap<>();
+
+    /**
+     * @param directorio Directorio de los segmentos (se crea si no existe)
+     * @param configuracion Descripcion de todo lo que cambia las filas (hojas y columnas
+     *                      seleccionadas); los segmentos con otra configuracion no se usan
+     */
+    public IndiceIncremental(File directorio, String configuracion) throws IOException {
+        Files.createDirectories(directorio.toPath());
+        this.directorio = directorio;
+        this.configuracion = configuracion;
+    }
+
+    private static DatatypeFactory crearDatatypeFactory() {
+        try {
+            return DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Fichero del segmento de un ATOM, para borrarlo junto con el ATOM.
+     */
+    public static File segmento(File directorio, String nombreAtom) {
+        return new File(directorio, nombreAtom + EXTENSION);
+    }
+
+    /**
+     * Segmento guardado de un fichero ATOM, o null si no lo hay o ya no vale (el fichero
+     * ha cambiado, las columnas son otras o el segmento es de otra version o esta incompleto).
+     */
+    public Segmento leer(FuenteAtom fuente) {
+        File fichero = segmento(directorio, fuente.getNombre());
+        if (!fichero.isFile()) {
+            return null;
+        }
+        // Solo se lee la cabecera; las entries se leen al pedirlas
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fichero)))) {
+            if (in.readInt() != MAGICO || in.readInt() != VERSION) {
+                return null;
+            }
+            String firma = leerTexto(in);
+            String configuracionSegmento = leerTexto(in);
+            if (!fuente.getFirma().equals(firma) || !configuracion.equals(configuracionSegmento)) {
+                return null;
+            }
+            return new Segmento(fichero, in, 8 + longitudTexto(firma) + longitudTexto(configuracionSegmento));
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Empieza el segmento nuevo de un fichero ATOM.
+     *
+     * @param borrados Deleted-entry del fichero (ref y when)
+     * @return La escritura, o null si ya se ha escrito el segmento de ese fichero en esta ejecucion
+     */
+    public Escritura escribir(FuenteAtom fuente, List<String[]> borrados) {
+        if (pendientes.containsKey(fuente.getNombre())) {
+            return null;
+        }
+        return new Escritura(fuente.getNombre(), fuente.getFirma(), borrados);
+    }
+
+    /**
+     * Sustituye los segmentos anteriores por los escritos en esta ejecucion.
+     */
+    public void confirmar() throws IOException {
+        for (Map.Entry<String, File> pendiente : pendientes.entrySet()) {
+            Files.move(pendiente.getValue().toPath(), segmento(directorio, pendiente.getKey()).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        pendientes.clear();
+    }
+
+    /**
+     * Borra los segmentos escritos en esta ejecucion sin confirmar (la conversion fallo).
+     */
+    public void descartar() {
+        for (File temporal : pendientes.values()) {
+            temporal.delete();
+        }
+        pendientes.clear();
+    }
+
+    /**
+     * Segmento guardado de un fichero ATOM. Las entries se leen del fichero al pedirlas,
+     * sin dejarlo abierto.
+     */
+    public static final class Segmento {
+
+        private final File fichero;
+        private final String siguiente;
+        private final List<String[]> borrados;
+        private final long inicioEntradas;
+
+        /**
+         * @param in Cabecera del segmento, situada despues de la configuracion
+         * @param leidos Bytes de la cabecera ya leidos
+         */
+        private Segmento(File fichero, DataInputStream in, long leidos) throws IOException {
+            this.fichero = fichero;
+            siguiente = leerTexto(in);
+            leidos += longitudTexto(siguiente);
+            int numeroBorrados = in.readInt();
+            leidos += 4;
+            borrados = new ArrayList<>(numeroBorrados);
+            for (int i = 0; i < numeroBorrados; i++) {
+                String[] borrado = {leerTexto(in), leerTexto(in)};
+                leidos += longitudTexto(borrado[0]) + longitudTexto(borrado[1]);
+                borrados.add(borrado);
+            }
+            inicioEntradas = leidos;
+        }
+
+        /**
+         * href del enlace "next" del fichero, o null si era el ultimo de la cadena.
+         */
+        public String getSiguiente() {
+            return siguiente;
+        }
+
+        /**
+         * Deleted-entry del fichero (ref y when).
+         */
+        public List<String[]> getBorrados() {
+            return borrados;
+        }
+
+        /**
+         * Entries del fichero, en su orden.
+         */
+        public List<EntradaIndexada> getEntradas() throws IOException {
+            ByteBuffer lectura;
+            try (FileChannel canal = FileChannel.open(fichero.toPath(), StandardOpenOption.READ)) {
+                long tamano = canal.size() - inicioEntradas;
+                if (tamano < 4 || tamano > Integer.MAX_VALUE) {
+                    throw new IOException("Segmento incompleto: " + fichero);
+                }
+                lectura = ByteBuffer.allocate((int) tamano);
+                while (lectura.hasRemaining()) {
+                    if (canal.read(lectura, inicioEntradas + lectura.position()) < 0) {
+                        throw new EOFException("Segmento incompleto: " + fichero);
+                    }
+                }
+                lectura.flip();
+            }
+            int numeroEntradas = lectura.getInt();
+            List<EntradaIndexada> entradas = new ArrayList<>(numeroEntradas);
+            for (int i = 0; i < numeroEntradas; i++) {
+                entradas.add(new EntradaIndexada(lectura));
+            }
+            return entradas;
+        }
+    }
+
+    /**
+     * Entry de un segmento guardado.
+     */
+    public static final class EntradaIndexada {
+
+        private final String id;
+        private final int tamano;
+        private final TipoEntry tipo;
+        private final String updated;
+        private final List<FilaExcel> filas;
+
+        private EntradaIndexada(ByteBuffer datos) {
+            id = leerTexto(datos);
+            tamano = datos.getInt();
+            byte codigoTipo = datos.get();
+            tipo = codigoTipo == TIPO_DESCONOCIDO ? null : TipoEntry.values()[codigoTipo];
+            updated = leerTexto(datos);
+            int numeroFilas = datos.getInt();
+            filas = numeroFilas < 0 ? null : new ArrayList<>(numeroFilas);
+            for (int i = 0; i < numeroFilas; i++) {
+                filas.add(leerFila(datos));
+            }
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Tamano en bytes de la entry en el fichero.
+         */
+        public int getTamano() {
+            return tamano;
+        }
+
+        /**
+         * Tipo de la entry, o null si no se calculo (era duplicada).
+         */
+        public TipoEntry getTipo() {
+            return tipo;
+        }
+
+        /**
+         * Fecha updated de la entry.
+         */
+        public XMLGregorianCalendar getUpdated() {
+            return DATATYPE_FACTORY.newXMLGregorianCalendar(updated.trim());
+        }
+
+        /**
+         * Instante de la fecha updated, como {@link IndiceVersiones#millis(String)}.
+         */
+        public long getMillisUpdated() {
+            return IndiceVersiones.millis(updated);
+        }
+
+        /**
+         * Filas que se volcaron de la entry, con la cabecera de aquella ejecucion, o null
+         * si no se volco (duplicada o de un tipo excluido).
+         */
+        public List<FilaExcel> getFilas() {
+            return filas;
+        }
+    }
+
+    /**
+     * Segmento nuevo de un fichero ATOM, que se va rellenando mientras se procesa.
+     */
+    public final class Escritura {
+
+        private final String nombre;
+        private final String firma;
+        private final List<String[]> borrados;
+        private final ByteArrayOutputStream bytesEntradas = new ByteArrayOutputStream();
+        private final DataOutputStream entradas = new DataOutputStream(bytesEntradas);
+        private int numeroEntradas = 0;
+
+        private Escritura(String nombre, String firma, List<String[]> borrados) {
+            this.nombre = nombre;
+            this.firma = firma;
+            this.borrados = borrados;
+        }
+
+        /**
+         * Anade la siguiente entry del fichero.
+         *
+         * @param tipo Tipo de la entry, o null si no se calculo
+         * @param updated Texto del elemento updated
+         * @param filas Filas volcadas, o null si no se volco
+         */
+        public void anadir(String id, int tamano, TipoEntry tipo, String updated, List<FilaExcel> filas) throws IOException {
+            escribirTexto(entradas, id);
+            entradas.writeInt(tamano);
+            entradas.writeByte(tipo != null ? tipo.ordinal() : TIPO_DESCONOCIDO);
+            escribirTexto(entradas, updated);
+            entradas.writeInt(filas != null ? filas.size() : -1);
+            if (filas != null) {
+                for (FilaExcel fila : filas) {
+                    escribirFila(entradas, fila);
+                }
+            }
+            numeroEntradas++;
+        }
+
+        /**
+         * Termina el segmento en un fichero temporal, pendiente de {@link #confirmar()}.
+         *
+         * @param siguiente href del enlace "next" del fichero, o null
+         */
+        public void cerrar(String siguiente) throws IOException {
+            File temporal = new File(directorio, nombre + EXTENSION_TEMPORAL);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporal)))) {
+                out.writeInt(MAGICO);
+                out.writeInt(VERSION);
+                escribirTexto(out, firma);
+                escribirTexto(out, configuracion);
+                escribirTexto(out, siguiente);
+                out.writeInt(borrados.size());
+                for (String[] borrado : borrados) {
+                    escribirTexto(out, borrado[0]);
+                    escribirTexto(out, borrado[1]);
+                }
+                out.writeInt(numeroEntradas);
+                entradas.flush();
+                bytesEntradas.writeTo(out);
+            }
+            pendientes.put(nombre, temporal);
+        }
+    }
+
+    private static void escribirFila(DataOutputStream out, FilaExcel fila) throws IOException {
+        escribirTexto(out, fila.getHoja());
+        out.writeByte(fila.getCeldasCabecera());
+        out.writeInt(fila.getColumnas());
+        for (int i = 0; i < fila.getColumnas(); i++) {
+            out.writeByte(codigoEstilo(fila.getEstilo(i)));
+            Object valor = fila.getValor(i);
+            if (fila.esNumero(i)) {
+                out.writeByte(CELDA_NUMERO);
+                out.writeDouble(fila.getNumero(i));
+            } else if (valor instanceof String) {
+                out.writeByte(CELDA_TEXTO);
+                escribirTexto(out, (String) valor);
+            } else if (valor instanceof Boolean) {
+                out.writeByte(CELDA_BOOLEANO);
+                out.writeBoolean((Boolean) valor);
+            } else {
+                out.writeByte(CELDA_VACIA);
+            }
+        }
+    }
+
+    private static FilaExcel leerFila(ByteBuffer datos) {
+        String hoja = leerTexto(datos);
+        int celdasCabecera = datos.get();
+        int columnas = datos.getInt();
+        FilaExcel fila = new FilaExcel(hoja, columnas);
+        for (int i = 0; i < columnas; i++) {
+            CellStyle estilo = estilo(datos.get());
+            switch (datos.get()) {
+                case CELDA_TEXTO:
+                    fila.anadir(leerTexto(datos), estilo);
+                    break;
+                case CELDA_NUMERO:
+                    fila.anadirNumero(datos.getDouble(), estilo);
+                    break;
+                case CELDA_BOOLEANO:
+                    fila.anadir(datos.get() != 0, estilo);
+                    break;
+                default:
+                    fila.anadir(null, estilo);
+                    break;
+            }
+            if (i + 1 == celdasCabecera) {
+                fila.marcarCabecera();
+            }
+        }
+        return fila;
+    }
+
+    /**
+     * Los estilos de las filas son los de SpreeadSheetManager, uno por formato.
+     */
+    private static byte codigoEstilo(CellStyle estilo) {
+        if (estilo != null) {
+            for (EnumFormatos formato : EnumFormatos.values()) {
+                if (SpreeadSheetManager.getCellStyleFormato(formato) == estilo) {
+                    return (byte) formato.ordinal();
+                }
+            }
+        }
+        return SIN_ESTILO;
+    }
+
+    private static CellStyle estilo(byte codigo) {
+        return codigo == SIN_ESTILO ? null : SpreeadSheetManager.getCellStyleFormato(EnumFormatos.values()[codigo]);
+    }
+
+    private static void escribirTexto(DataOutputStream out, String texto) throws IOException {
+        if (texto == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String leerTexto(DataInputStream in) throws IOException {
+        int longitud = in.readInt();
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Bytes que ocupa un texto escrito con escribirTexto.
+     */
+    private static int longitudTexto(String texto) {
+        return 4 + (texto != null ? texto.getBytes(StandardCharsets.UTF_8).length : 0);
+    }
+
+    private static String leerTexto(ByteBuffer datos) {
+        int longitud = datos.getInt();
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[longitud];
+        datos.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
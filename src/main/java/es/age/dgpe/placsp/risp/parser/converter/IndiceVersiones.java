@@ -0,0 +1,209 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+
+/**
+ * Indice id -> fecha de actualizacion mas reciente de las entries de una o varias cadenas
+ * ATOM, para conservar la ultima version de cada entry (--ultima-version) en lugar de la
+ * primera que aparece.
+ *
+ * Las fechas se guardan como instante en milisegundos. Los ids con clave numerica (ver
+ * ClavesId) van a una tabla clave -> fecha con direccionamiento abierto proyectada en
+ * memoria sobre un fichero temporal: ni ocupa heap ni tiene que caber en memoria, porque
+ * el sistema operativo puede llevar a disco las paginas que no se usan. Los demas ids,
+ * a un HashMap.
+ */
+public class IndiceVersiones implements Closeable {
+
+    /**
+     * Fecha de las entries sin elemento updated (o con uno que no se puede interpretar).
+     */
+    public static final long SIN_FECHA = Long.MIN_VALUE;
+
+    private static final DatatypeFactory DATATYPE_FACTORY = crearDatatypeFactory();
+
+    private static final int CAPACIDAD_INICIAL = 1 << 16;
+    // Ocupacion maxima de la tabla antes de duplicarla
+    private static final float CARGA_MAXIMA = 0.75f;
+    // Pares que caben en una sola proyeccion (como mucho Integer.MAX_VALUE bytes)
+    private static final int CAPACIDAD_MAXIMA = 1 << 26;
+
+    private final ClavesId claves = new ClavesId();
+    private final File directorio;
+    // Pares (clave, fecha) consecutivos; clave SIN_CLAVE = hueco libre
+    private LongBuffer tabla;
+    private File fichero;
+    private int capacidad;
+    private int numericas;
+    private final HashMap<String, Long> otras = new HashMap<>();
+    // Ficheros de tablas ya sustituidas que el sistema no deja borrar mientras sigan proyectados
+    private final List<File> pendientes = new ArrayList<>();
+
+    /**
+     * @param directorio Directorio de los ficheros temporales (null = el del sistema)
+     */
+    public IndiceVersiones(File directorio) throws IOException {
+        this.directorio = directorio;
+        capacidad = CAPACIDAD_INICIAL;
+        fichero = crearFichero();
+        tabla = proyectar(fichero, capacidad);
+    }
+
+    private static DatatypeFactory crearDatatypeFactory() {
+        try {
+            return DatatypeFactory.newInstance();
+        } catch (DatatypeConfigurationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Registra una version de una entry; se conserva la fecha mas reciente.
+     *
+     * @param id Valor del elemento id de la entry
+     * @param updated Instante del elemento updated (ver {@link #millis(String)})
+     */
+    public void registrar(String id, long updated) throws IOException {
+        if (id == null) {
+            return;
+        }
+        long clave = claves.clave(id, true);
+        if (clave == ClavesId.SIN_CLAVE) {
+            otras.merge(id, updated, Math::max);
+            return;
+        }
+        int posicion = buscar(tabla, capacidad, clave);
+        if (tabla.get(2 * posicion) == clave) {
+            if (updated > tabla.get(2 * posicion + 1)) {
+                tabla.put(2 * posicion + 1, updated);
+            }
+            return;
+        }
+        tabla.put(2 * posicion, clave);
+        tabla.put(2 * posicion + 1, updated);
+        if (++numericas > capacidad * CARGA_MAXIMA) {
+            ampliar();
+        }
+    }
+
+    /**
+     * Indica si una version de la entry es la mas reciente registrada. Las entries que no
+     * estan en el indice se consideran siempre la ultima version.
+     */
+    public boolean esUltima(String id, long updated) {
+        long clave = claves.clave(id, false);
+        if (clave == ClavesId.SIN_CLAVE) {
+            Long ultima = otras.get(id);
+            return ultima == null || updated >= ultima;
+        }
+        int posicion = buscar(tabla, capacidad, clave);
+        return tabla.get(2 * posicion) != clave || updated >= tabla.get(2 * posicion + 1);
+    }
+
+    public int size() {
+        return numericas + otras.size();
+    }
+
+    /**
+     * Instante (milisegundos desde epoch) del texto de un elemento updated, o
+     * {@link #SIN_FECHA} si no se puede interpretar.
+     */
+    public static long millis(String updated) {
+        if (updated == null || updated.trim().isEmpty()) {
+            return SIN_FECHA;
+        }
+        try {
+            return DATATYPE_FACTORY.newXMLGregorianCalendar(updated.trim()).toGregorianCalendar().getTimeInMillis();
+        } catch (IllegalArgumentException e) {
+            return SIN_FECHA;
+        }
+    }
+
+    /**
+     * Borra los ficheros temporales del indice.
+     */
+    @Override
+    public void close() {
+        tabla = null;
+        pendientes.add(fichero);
+        for (File pendiente : pendientes) {
+            if (!pendiente.delete()) {
+                pendiente.deleteOnExit();
+            }
+        }
+        pendientes.clear();
+    }
+
+    private File crearFichero() throws IOException {
+        File nuevo = File.createTempFile("placsp-versiones-", ".tmp", directorio);
+        nuevo.deleteOnExit();
+        return nuevo;
+    }
+
+    /**
+     * Proyecta en memoria una tabla de la capacidad indicada; el fichero recien creado
+     * esta a cero, es decir, todos los huecos libres.
+     */
+    private static LongBuffer proyectar(File fichero, int capacidad) throws IOException {
+        try (RandomAccessFile acceso = new RandomAccessFile(fichero, "rw");
+             FileChannel canal = acceso.getChannel()) {
+            // La proyeccion sigue siendo valida despues de cerrar el canal
+            return canal.map(FileChannel.MapMode.READ_WRITE, 0, (long) capacidad * 2 * Long.BYTES)
+                    .order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+    }
+
+    /**
+     * Posicion (en pares) de la clave, o el primer hueco libre de su secuencia de sondeo.
+     */
+    private static int buscar(LongBuffer tabla, int capacidad, long clave) {
+        int mascara = capacidad - 1;
+        int posicion = ClavesId.posicion(clave, mascara);
+        long actual;
+        while ((actual = tabla.get(2 * posicion)) != ClavesId.SIN_CLAVE && actual != clave) {
+            posicion = (posicion + 1) & mascara;
+        }
+        return posicion;
+    }
+
+    private void ampliar() throws IOException {
+        if (capacidad >= CAPACIDAD_MAXIMA) {
+            throw new IOException("Indice de versiones lleno: " + numericas + " ids");
+        }
+        int nuevaCapacidad = capacidad * 2;
+        File nuevoFichero = crearFichero();
+        LongBuffer nueva;
+        try {
+            nueva = proyectar(nuevoFichero, nuevaCapacidad);
+        } catch (IOException e) {
+            nuevoFichero.delete();
+            throw e;
+        }
+        for (int i = 0; i < capacidad; i++) {
+            long clave = tabla.get(2 * i);
+            if (clave != ClavesId.SIN_CLAVE) {
+                int posicion = buscar(nueva, nuevaCapacidad, clave);
+                nueva.put(2 * posicion, clave);
+                nueva.put(2 * posicion + 1, tabla.get(2 * i + 1));
+            }
+        }
+        if (!fichero.delete()) {
+            pendientes.add(fichero);
+        }
+        tabla = nueva;
+        fichero = nuevoFichero;
+        capacidad = nuevaCapacidad;
+    }
+}
@@ -0,0 +1,94 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Lee los ficheros de una cadena ATOM en paralelo y los entrega en el orden de la cadena.
+ *
+ * Como maximo hay "ventana" ficheros en vuelo (en lectura o leidos y pendientes de
+ * entregar), de forma que la memoria ocupada por los feeds ya parseados queda acotada
+ * aunque los hilos lectores vayan por delante del consumidor.
+ *
+ * @param <T> Resultado de la lectura de cada fichero
+ */
+public class LectorCadenaParalelo<T> implements AutoCloseable {
+
+    /**
+     * Lectura de un fichero de la cadena. Se ejecuta en los hilos del executor,
+     * por lo que no debe compartir objetos que no sean thread-safe.
+     */
+    @FunctionalInterface
+    public interface Lectura<T> {
+        T leer(FuenteAtom fuente) throws Exception;
+    }
+
+    private final List<FuenteAtom> cadena;
+    private final ExecutorService executor;
+    private final int ventana;
+    private final Lectura<T> lectura;
+
+    private final ArrayDeque<Future<T>> enVuelo = new ArrayDeque<>();
+    private int siguienteEnviar = 0;
+
+    public LectorCadenaParalelo(List<FuenteAtom> cadena, ExecutorService executor, int ventana, Lectura<T> lectura) {
+        this.cadena = cadena;
+        this.executor = executor;
+        this.ventana = Math.max(1, ventana);
+        this.lectura = lectura;
+        rellenarVentana();
+    }
+
+    private void rellenarVentana() {
+        while (enVuelo.size() < ventana && siguienteEnviar < cadena.size()) {
+            FuenteAtom fuente = cadena.get(siguienteEnviar++);
+            enVuelo.add(executor.submit(() -> lectura.leer(fuente)));
+        }
+    }
+
+    public boolean hayMas() {
+        return !enVuelo.isEmpty();
+    }
+
+    /**
+     * Devuelve el resultado del siguiente fichero de la cadena, esperando a que
+     * termine su lectura si es necesario.
+     */
+    public T siguiente() throws Exception {
+        Future<T> futuro = enVuelo.poll();
+        if (futuro == null) {
+            throw new IllegalStateException("No quedan ficheros en la cadena");
+        }
+        try {
+            return futuro.get();
+        } catch (ExecutionException e) {
+            Throwable causa = e.getCause();
+            // ForkJoinPool envuelve las excepciones comprobadas en una RuntimeException
+            if (causa != null && causa.getClass() == RuntimeException.class && causa.getCause() instanceof Exception) {
+                causa = causa.getCause();
+            }
+            if (causa instanceof Exception) {
+                throw (Exception) causa;
+            }
+            throw e;
+        } finally {
+            rellenarVentana();
+        }
+    }
+
+    /**
+     * Cancela las lecturas pendientes (por ejemplo, si la cadena real resulta
+     * distinta de la resuelta de antemano).
+     */
+    @Override
+    public void close() {
+        for (Future<T> futuro : enVuelo) {
+            futuro.cancel(true);
+        }
+        enVuelo.clear();
+        siguienteEnviar = cadena.size();
+    }
+}
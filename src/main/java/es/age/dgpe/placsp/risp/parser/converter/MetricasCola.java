@@ -0,0 +1,45 @@
+package es.age.dgpe.placsp.risp.parser.converter;
+
+/**
+ * Profundidad media y maxima de una cola, muestreada por su consumidor.
+ *
+ * Sirve para ver que etapa limita un pipeline: una cola casi siempre llena indica que
+ * el consumidor es el cuello de botella, y una casi siempre vacia, que lo es el productor.
+ * No es thread-safe: solo debe muestrearla un hilo.
+ */
+public class MetricasCola {
+
+    private final String nombre;
+    private final int capacidad;
+    private long muestras = 0;
+    private long suma = 0;
+    private int maxima = 0;
+
+    /**
+     * @param capacidad Capacidad de la cola, o 0 si no esta acotada
+     */
+    public MetricasCola(String nombre, int capacidad) {
+        this.nombre = nombre;
+        this.capacidad = capacidad;
+    }
+
+    public void registrar(int profundidad) {
+        muestras++;
+        suma += profundidad;
+        maxima = Math.max(maxima, profundidad);
+    }
+
+    public double getMedia() {
+        return muestras > 0 ? (double) suma / muestras : 0;
+    }
+
+    public int getMaxima() {
+        return maxima;
+    }
+
+    @Override
+    public String toString() {
+        return nombre + ": media " + String.format("%.1f", getMedia()) + ", maxima " + maxima
+                + (capacidad > 0 ? " de " + capacidad : "");
+    }
+}
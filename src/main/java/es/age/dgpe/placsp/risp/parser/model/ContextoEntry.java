@@ -0,0 +1,210 @@
+/*******************************************************************************
+ * Copyright 2021 Subdirección General de Coordinación de la Contratación Electronica - Dirección General Del Patrimonio Del Estado - Subsecretaría de Hacienda - Ministerio de Hacienda - Administración General del Estado - Gobierno de España
+ * 
+ * Licencia con arreglo a la EUPL, Versión 1.2 o –en cuanto sean aprobadas por la Comisión Europea– versiones posteriores de la EUPL (la «Licencia»);
+ * Solo podrá usarse esta obra si se respeta la Licencia.
+ * Puede obtenerse una copia de la Licencia en:
+ * 
+ * https://joinup.ec.europa.eu/software/page/eupl
+ * 
+ * Salvo cuando lo exija la legislación aplicable o se acuerde por escrito, el programa distribuido con arreglo a la Licencia se distribuye «TAL CUAL», SIN GARANTÍAS NI CONDICIONES DE NINGÚN TIPO, ni expresas ni implícitas.
+ * Véase la Licencia en el idioma concreto que rige los permisos y limitaciones que establece la Licencia.
+ ******************************************************************************/
+package es.age.dgpe.placsp.risp.parser.model;
+
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.elemento;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.dgpe.codice.common.caclib.BudgetAmountType;
+import org.dgpe.codice.common.caclib.PartyType;
+import org.dgpe.codice.common.caclib.ProcurementProjectLotType;
+import org.dgpe.codice.common.caclib.ProcurementProjectType;
+import org.dgpe.codice.common.caclib.TenderResultType;
+import org.dgpe.codice.common.caclib.TenderedProjectType;
+import org.dgpe.codice.common.caclib.TenderingProcessType;
+import org.dgpe.codice.common.caclib.TenderingTermsType;
+
+import ext.place.codice.common.caclib.ContractFolderStatusType;
+import ext.place.codice.common.caclib.LocatedContractingPartyType;
+import ext.place.codice.common.caclib.PreliminaryMarketConsultationStatusType;
+
+/**
+ * Objetos CODICE de una entry que leen varias columnas, resueltos una sola vez para
+ * todas ellas: el proyecto, el organo de contratacion, el proceso y las condiciones de
+ * licitacion y, para las columnas de resultados, el lote de cada resultado.
+ *
+ * El proyecto de cada resultado se resuelve una vez, y si se buscan los lotes de mas de
+ * un resultado se indexan por ID en lugar de recorrerlos para cada uno. Se crea uno por
+ * entry y solo lo usa el hilo que calcula sus filas.
+ */
+public final class ContextoEntry {
+
+	private final ContractFolderStatusType contractFolder;
+	private final PreliminaryMarketConsultationStatusType preliminaryMarket;
+
+	private final ProcurementProjectType procurementProject;
+	private final LocatedContractingPartyType locatedContractingParty;
+	private final PartyType party;
+	private final TenderingProcessType tenderingProcess;
+	private final TenderingTermsType tenderingTerms;
+
+	// ID -> lote, y proyecto de cada resultado; se calculan al pedirlos
+	private HashMap<String, ProcurementProjectLotType> lotes;
+	private int busquedasLote;
+	private ProcurementProjectType[] proyectosResultado;
+	private boolean[] proyectoResuelto;
+
+	public ContextoEntry(ContractFolderStatusType contractFolder) {
+		this.contractFolder = contractFolder;
+		this.preliminaryMarket = null;
+		this.procurementProject = contractFolder.getProcurementProject();
+		this.locatedContractingParty = contractFolder.getLocatedContractingParty();
+		this.party = NavegacionCodice.parte(locatedContractingParty);
+		this.tenderingProcess = contractFolder.getTenderingProcess();
+		this.tenderingTerms = contractFolder.getTenderingTerms();
+	}
+
+	public ContextoEntry(PreliminaryMarketConsultationStatusType preliminaryMarket) {
+		this.contractFolder = null;
+		this.preliminaryMarket = preliminaryMarket;
+		this.procurementProject = preliminaryMarket.getProcurementProject();
+		this.locatedContractingParty = preliminaryMarket.getLocatedContractingParty();
+		this.party = NavegacionCodice.parte(locatedContractingParty);
+		this.tenderingProcess = preliminaryMarket.getTenderingProcess();
+		this.tenderingTerms = null;
+	}
+
+	/**
+	 * Licitacion o encargo de la entry (null si es una consulta preliminar).
+	 */
+	public ContractFolderStatusType getContractFolder() {
+		return contractFolder;
+	}
+
+	/**
+	 * Consulta preliminar de la entry (null si no lo es).
+	 */
+	public PreliminaryMarketConsultationStatusType getPreliminaryMarket() {
+		return preliminaryMarket;
+	}
+
+	public ProcurementProjectType getProcurementProject() {
+		return procurementProject;
+	}
+
+	public BudgetAmountType getBudgetAmount() {
+		return procurementProject != null ? procurementProject.getBudgetAmount() : null;
+	}
+
+	public LocatedContractingPartyType getLocatedContractingParty() {
+		return locatedContractingParty;
+	}
+
+	/**
+	 * Party del organo de contratacion, o null.
+	 */
+	public PartyType getParty() {
+		return party;
+	}
+
+	public TenderingProcessType getTenderingProcess() {
+		return tenderingProcess;
+	}
+
+	public TenderingTermsType getTenderingTerms() {
+		return tenderingTerms;
+	}
+
+	/**
+	 * Resultado en la posicion indicada, o null si no existe.
+	 */
+	public TenderResultType getTenderResult(int indice) {
+		return contractFolder != null ? elemento(contractFolder.getTenderResult(), indice) : null;
+	}
+
+	/**
+	 * Procurementprojectlot asociado al resultado que existe en el lugar indicado, o
+	 * null si no existe.
+	 */
+	public ProcurementProjectLotType getProcurementProjectLot(int indice) {
+		TenderResultType resultado = getTenderResult(indice);
+		TenderedProjectType proyectoAdjudicado = resultado != null ? resultado.getAwardedTenderedProject() : null;
+		if (proyectoAdjudicado == null || proyectoAdjudicado.getProcurementProjectLotID() == null) {
+			return null;
+		}
+		String numeroLote = proyectoAdjudicado.getProcurementProjectLotID().getValue();
+		if (numeroLote == null) {
+			return null;
+		}
+		if (lotes == null && busquedasLote++ == 0) {
+			// Para un solo resultado no compensa indexar los lotes
+			return buscarLote(numeroLote);
+		}
+		return lotes().get(numeroLote);
+	}
+
+	/**
+	 * Procurementproject del lote del resultado indicado o, si la licitacion no esta
+	 * estructurada en lotes, el de la licitacion.
+	 */
+	public ProcurementProjectType getProcurementProject(int indice) {
+		List<TenderResultType> resultados = contractFolder != null ? contractFolder.getTenderResult() : null;
+		if (resultados == null || indice < 0 || indice >= resultados.size()) {
+			return procurementProject;
+		}
+		if (proyectosResultado == null || proyectosResultado.length != resultados.size()) {
+			proyectosResultado = new ProcurementProjectType[resultados.size()];
+			proyectoResuelto = new boolean[resultados.size()];
+		}
+		if (!proyectoResuelto[indice]) {
+			ProcurementProjectLotType lote = getProcurementProjectLot(indice);
+			proyectosResultado[indice] = lote != null ? lote.getProcurementProject() : procurementProject;
+			proyectoResuelto[indice] = true;
+		}
+		return proyectosResultado[indice];
+	}
+
+	public BudgetAmountType getBudgetAmount(int indice) {
+		ProcurementProjectType proyecto = getProcurementProject(indice);
+		return proyecto != null ? proyecto.getBudgetAmount() : null;
+	}
+
+	/**
+	 * Busca el lote por ID recorriendo la lista: vale el primero con ese ID, y un lote
+	 * sin ID corta la busqueda.
+	 */
+	private ProcurementProjectLotType buscarLote(String numeroLote) {
+		for (ProcurementProjectLotType lote : contractFolder.getProcurementProjectLot()) {
+			String id = NavegacionCodice.valor(lote.getID());
+			if (id == null) {
+				return null;
+			}
+			if (id.compareTo(numeroLote) == 0) {
+				return lote;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Lotes de la licitacion por ID, con el mismo criterio que buscarLote: si hay dos con
+	 * el mismo ID vale el primero, y los que vienen despues de un lote sin ID no se
+	 * encuentran.
+	 */
+	private HashMap<String, ProcurementProjectLotType> lotes() {
+		if (lotes == null) {
+			List<ProcurementProjectLotType> lista = contractFolder.getProcurementProjectLot();
+			lotes = new HashMap<>(Math.max(16, lista.size() * 4 / 3 + 1));
+			for (ProcurementProjectLotType lote : lista) {
+				String id = NavegacionCodice.valor(lote.getID());
+				if (id == null) {
+					break;
+				}
+				lotes.putIfAbsent(id, lote);
+			}
+		}
+		return lotes;
+	}
+}
@@ -12,274 +12,172 @@
  ******************************************************************************/
 package es.age.dgpe.placsp.risp.parser.model;
 
-import java.util.GregorianCalendar;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.fecha;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.identificador;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.nombre;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.primeraPublicacion;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.primero;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.valor;
 
-import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
 
+import org.dgpe.codice.common.caclib.AddressType;
+import org.dgpe.codice.common.caclib.AttachmentType;
 import org.dgpe.codice.common.caclib.CommodityClassificationType;
-import org.dgpe.codice.common.caclib.PartyIdentificationType;
+import org.dgpe.codice.common.caclib.ExternalReferenceType;
+import org.dgpe.codice.common.caclib.PartyType;
+import org.dgpe.codice.common.caclib.ProcurementProjectType;
+import org.dgpe.codice.common.caclib.TenderingProcessType;
 
 import es.age.dgpe.placsp.risp.parser.utils.genericode.GenericodeTypes;
-import ext.place.codice.common.caclib.AdditionalPublicationDocumentReferenceType;
-import ext.place.codice.common.caclib.AdditionalPublicationStatusType;
-import ext.place.codice.common.caclib.NoticeInfoType;
+import ext.place.codice.common.caclib.LocatedContractingPartyType;
 import ext.place.codice.common.caclib.PreliminaryMarketConsultationStatusType;
  
 public enum DatosCPM{
-	PRIMERA_PUBLICACION("Primera publicación", EnumFormatos.FECHA_CORTA) {
+	PRIMERA_PUBLICACION("Primera publicación", EnumFormatos.FECHA_CORTA, "ValidNoticeInfo", "NoticeTypeCode", "AdditionalPublicationStatus", "PublicationMediaName", "AdditionalPublicationDocumentReference", "IssueDate") {
 	@Override
-		public GregorianCalendar valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			GregorianCalendar primeraPublicacion = null;
-
-			try {
-				// Se recorren los validnoticeinfo
-				for (NoticeInfoType noticeInfo : preliminaryMarket.getValidNoticeInfo()) {
-					try {
-						// No se tiene en cuenta si es anuncio previo
-						if (noticeInfo.getNoticeTypeCode().getValue().compareTo("DOC_PIN") != 0) {
-							// Se recorren los medios de publicacion
-							for (AdditionalPublicationStatusType additionalPublicationStatus : noticeInfo
-									.getAdditionalPublicationStatus()) {
-								// Se comprueba si el medio es el perfil de contratante
-								if (additionalPublicationStatus.getPublicationMediaName().getValue().equalsIgnoreCase("Perfil del Contratante")) {
-									// Se obtiene la fecha más antigua
-									for (AdditionalPublicationDocumentReferenceType additionalPublicationDocumentReference : additionalPublicationStatus
-											.getAdditionalPublicationDocumentReference()) {
-										GregorianCalendar fecha = additionalPublicationDocumentReference.getIssueDate().getValue().toGregorianCalendar();
-										if (primeraPublicacion == null
-												|| primeraPublicacion.compareTo(fecha) == DatatypeConstants.GREATER) {
-											primeraPublicacion = fecha;
-										}
-									}
-								}
-							}
-						}
-					} catch (Exception e) {
-						//El ATOM cumple con el esquema, pero no con los requisito
-					}
-				}
-				return primeraPublicacion;
-			} catch (Exception e) {
-				return null;
-			}
+		public XMLGregorianCalendar valorCodice(ContextoEntry contexto) {
+			// Fecha más antigua publicada en el perfil de contratante, sin contar los anuncios previos
+			return primeraPublicacion(contexto.getPreliminaryMarket().getValidNoticeInfo(), true);
 		}
 	},
-	ESTADO ("Estado"){
+	ESTADO ("Estado", "PreliminaryMarketConsultationStatusCode"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket){
-			try {
-				String estado = GenericodeTypes.ESTADO_CONSULTA_PRELIMINAR.getValue(preliminaryMarket.getPreliminaryMarketConsultationStatusCode().getValue());
-				return estado;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			String estado = valor(contexto.getPreliminaryMarket().getPreliminaryMarketConsultationStatusCode());
+			return estado != null ? GenericodeTypes.ESTADO_CONSULTA_PRELIMINAR.getValue(estado) : null;
 		}
 	},
-	NUMERO_EXPEDIENTE ("Número de consulta preliminar"){
+	NUMERO_EXPEDIENTE ("Número de consulta preliminar", "PreliminaryMarketConsultationID"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket){
-			try {
-				String numExpediente = preliminaryMarket.getPreliminaryMarketConsultationID().getValue();
-				return numExpediente;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			return valor(contexto.getPreliminaryMarket().getPreliminaryMarketConsultationID());
 		}
 	},
-	OBJETO_CONTRATO ("Objeto de la consulta"){
+	OBJETO_CONTRATO ("Objeto de la consulta", "ProcurementProject", "Name"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket){
-			try {
-				String objeto = preliminaryMarket.getProcurementProject().getName().get(0).getValue();
-				return objeto;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			return objeto(contexto);
 		}
 	},
-	FECHA_INICIO_CONSULTA ("Fecha de incio de la consulta", EnumFormatos.FECHA_CORTA){
+	FECHA_INICIO_CONSULTA ("Fecha de incio de la consulta", EnumFormatos.FECHA_CORTA, "PlannedDate"){
 		@Override
-		public GregorianCalendar valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				return preliminaryMarket.getPlannedDate().getValue().toGregorianCalendar();
-			} catch (Exception e) {
-				return null;
-			}
+		public XMLGregorianCalendar valorCodice(ContextoEntry contexto) {
+			return fecha(contexto.getPreliminaryMarket().getPlannedDate());
 		}
 	},
-	FECHA_LIMITE_RESPUESTA ("Fecha límite de respuesta", EnumFormatos.FECHA_CORTA){
+	FECHA_LIMITE_RESPUESTA ("Fecha límite de respuesta", EnumFormatos.FECHA_CORTA, "LimitDate"){
 		@Override
-		public GregorianCalendar valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				return preliminaryMarket.getLimitDate().getValue().toGregorianCalendar();
-			} catch (Exception e) {
-				return null;
-			}
+		public XMLGregorianCalendar valorCodice(ContextoEntry contexto) {
+			return fecha(contexto.getPreliminaryMarket().getLimitDate());
 		}
 	},
-	DIRECCION_PRESENTACION ("Dirección para presentación"){
+	DIRECCION_PRESENTACION ("Dirección para presentación", "Attachment", "ExternalReference", "URI"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket){
-			try {
-				String direccionRespuesta = preliminaryMarket.getAttachment().getExternalReference().getURI().getValue();
-				return direccionRespuesta;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			AttachmentType adjunto = contexto.getPreliminaryMarket().getAttachment();
+			ExternalReferenceType referencia = adjunto != null ? adjunto.getExternalReference() : null;
+			return referencia != null ? valor(referencia.getURI()) : null;
 		}
 	},
-	TIPO_CONSULTA ("Tipo de consulta"){
+	TIPO_CONSULTA ("Tipo de consulta", "ConditionTypeCode"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket){
-			try {
-				String tipoConsulta = GenericodeTypes.TIPO_CONSULTA_PRELIMINAR.getValue(preliminaryMarket.getConditionTypeCode().getValue());
-				return tipoConsulta;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			String tipoConsulta = valor(contexto.getPreliminaryMarket().getConditionTypeCode());
+			return tipoConsulta != null ? GenericodeTypes.TIPO_CONSULTA_PRELIMINAR.getValue(tipoConsulta) : null;
 		}
 	},
-	CONDICIONES_CONSULTA ("Condiciones o términos de envío de la consulta"){
+	CONDICIONES_CONSULTA ("Condiciones o términos de envío de la consulta", "ConditionsText"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket){
-			try {
-				String objeto = preliminaryMarket.getConditionsText().getValue();
-				return objeto;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			return valor(contexto.getPreliminaryMarket().getConditionsText());
 		}
 	},
-	FUTURA_LIC_TIPO_CONTRATO ("Futura licitación. Tipo de contrato"){
+	FUTURA_LIC_TIPO_CONTRATO ("Futura licitación. Tipo de contrato", "ProcurementProject", "TypeCode"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				return GenericodeTypes.TIPO_CONTRATO.getValue(preliminaryMarket.getProcurementProject().getTypeCode().getValue());
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			ProcurementProjectType proyecto = contexto.getProcurementProject();
+			String tipo = proyecto != null ? valor(proyecto.getTypeCode()) : null;
+			return tipo != null ? GenericodeTypes.TIPO_CONTRATO.getValue(tipo) : null;
 		}
 	},
-	FUTURA_LIC_OBJETO ("Futura licitación. Objeto"){
+	FUTURA_LIC_OBJETO ("Futura licitación. Objeto", "ProcurementProject", "Name"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				return preliminaryMarket.getProcurementProject().getName().get(0).getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			return objeto(contexto);
 		}
 	},
-	FUTURA_LIC_PROCEDIMIENTO ("Futura licitación. Procedimiento"){
+	FUTURA_LIC_PROCEDIMIENTO ("Futura licitación. Procedimiento", "TenderingProcess", "ProcedureCode"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				return GenericodeTypes.TIPO_PROCEDIMIENTO.getValue(preliminaryMarket.getTenderingProcess().getProcedureCode().getValue());
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingProcessType proceso = contexto.getTenderingProcess();
+			String procedimiento = proceso != null ? valor(proceso.getProcedureCode()) : null;
+			return procedimiento != null ? GenericodeTypes.TIPO_PROCEDIMIENTO.getValue(procedimiento) : null;
 		}
 	},
-	CPV ("CPV"){
+	CPV ("CPV", "ProcurementProject", "RequiredCommodityClassification", "ItemClassificationCode"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
+		public String valorCodice(ContextoEntry contexto) {
 			String valoresCPV = "";
-			try {
-				for (CommodityClassificationType commodity : preliminaryMarket.getProcurementProject().getRequiredCommodityClassification()) {
-					valoresCPV += commodity.getItemClassificationCode().getValue() + SEPARADOR;
-				}
-				return valoresCPV;
-			}catch(Exception e) {
+			ProcurementProjectType proyecto = contexto.getProcurementProject();
+			if (proyecto == null) {
 				return valoresCPV;
-			}			
+			}
+			for (CommodityClassificationType commodity : proyecto.getRequiredCommodityClassification()) {
+				if (commodity.getItemClassificationCode() == null) {
+					// Se devuelven los CPV anteriores
+					return valoresCPV;
+				}
+				valoresCPV += commodity.getItemClassificationCode().getValue() + SEPARADOR;
+			}
+			return valoresCPV;
 		}
 	},
-	ORGANO_CONTRATACION ("Órgano de Contratación"){
+	ORGANO_CONTRATACION ("Órgano de Contratación", "LocatedContractingParty", "Party", "PartyName", "Name"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				return preliminaryMarket.getLocatedContractingParty().getParty().getPartyName().get(0).getName().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return nombre(contexto.getParty());
 		}
 	},
-	ID_PLATAFORMA_OC ("ID OC en PLACSP"){
+	ID_PLATAFORMA_OC ("ID OC en PLACSP", "LocatedContractingParty", "Party", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				String idPlatOC = "";
-				for (PartyIdentificationType partyIdentificationType : preliminaryMarket.getLocatedContractingParty().getParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("ID_PLATAFORMA") == 0){
-						idPlatOC = partyIdentificationType.getID().getValue();
-					}
-				}
-				return idPlatOC;
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(contexto.getParty(), "ID_PLATAFORMA");
 		}
 	},
-	NIF_OC ("NIF OC"){
+	NIF_OC ("NIF OC", "LocatedContractingParty", "Party", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				String nif = "";
-				for (PartyIdentificationType partyIdentificationType : preliminaryMarket.getLocatedContractingParty().getParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("NIF") == 0){
-						nif = partyIdentificationType.getID().getValue();
-					}
-				}
-				return nif;
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(contexto.getParty(), "NIF");
 		}
 	},
-	DIR3 ("DIR3"){
+	DIR3 ("DIR3", "LocatedContractingParty", "Party", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				String dir3 = "";
-				for (PartyIdentificationType partyIdentificationType : preliminaryMarket.getLocatedContractingParty().getParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("DIR3") == 0){
-						dir3 = partyIdentificationType.getID().getValue();
-					}
-				}				
-				return dir3;
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(contexto.getParty(), "DIR3");
 		}
 	},
-	ENLACE_PERFIL_CONTRATANTE ("Enlace al Perfil de Contratante del OC"){
+	ENLACE_PERFIL_CONTRATANTE ("Enlace al Perfil de Contratante del OC", "LocatedContractingParty", "BuyerProfileURIID"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {
-				return preliminaryMarket.getLocatedContractingParty().getBuyerProfileURIID().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			LocatedContractingPartyType organo = contexto.getLocatedContractingParty();
+			return organo != null ? valor(organo.getBuyerProfileURIID()) : null;
 		}
 	},
-	TIPO_ADMINISTRACION ("Tipo de Administración"){
+	TIPO_ADMINISTRACION ("Tipo de Administración", "LocatedContractingParty", "ContractingPartyTypeCode"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {				
-				return GenericodeTypes.TIPO_ADMINISTRACION.getValue(preliminaryMarket.getLocatedContractingParty().getContractingPartyTypeCode().getValue());
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			LocatedContractingPartyType organo = contexto.getLocatedContractingParty();
+			String tipo = organo != null ? valor(organo.getContractingPartyTypeCode()) : null;
+			return tipo != null ? GenericodeTypes.TIPO_ADMINISTRACION.getValue(tipo) : null;
 		}
 	},
-	CODIGO_POSTAL ("Código Postal"){
+	CODIGO_POSTAL ("Código Postal", "LocatedContractingParty", "Party", "PostalAddress", "PostalZone"){
 		@Override
-		public String valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
-			try {			
-				return preliminaryMarket.getLocatedContractingParty().getParty().getPostalAddress().getPostalZone().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			PartyType parte = contexto.getParty();
+			AddressType direccion = parte != null ? parte.getPostalAddress() : null;
+			return direccion != null ? valor(direccion.getPostalZone()) : null;
 		}
 	};
 
@@ -287,15 +185,19 @@ public enum DatosCPM{
 	
 	private final String titulo;
 	private final EnumFormatos formato;
+	// Elementos CODICE que lee valorCodice (ver EnlazadorStax)
+	private final String[] elementos;
 
-	DatosCPM(String name, EnumFormatos format) {
+	DatosCPM(String name, EnumFormatos format, String... elementos) {
 		this.titulo = name;
 		this.formato = format;
+		this.elementos = elementos;
 	}
 	
-	DatosCPM(String name){
+	DatosCPM(String name, String... elementos) {
 		this.titulo = name;
 		this.formato = EnumFormatos.TEXTO;
+		this.elementos = elementos;
 	}
 	
 	
@@ -307,8 +209,26 @@ public enum DatosCPM{
 		return formato;
 	}
 	
+	/**
+	 * Nombres de los elementos CODICE que recorre valorCodice, para deserializar
+	 * solo los que necesitan las columnas seleccionadas.
+	 */
+	public String[] getElementos() {
+		return elementos;
+	}
+	
+	
+	private static String objeto(ContextoEntry contexto) {
+		ProcurementProjectType proyecto = contexto.getProcurementProject();
+		return proyecto != null ? valor(primero(proyecto.getName())) : null;
+	}
 	
-	public abstract Object valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket);
+
+	public abstract Object valorCodice(ContextoEntry contexto);
+
+	public Object valorCodice(PreliminaryMarketConsultationStatusType preliminaryMarket) {
+		return valorCodice(new ContextoEntry(preliminaryMarket));
+	}
 	
 
 }
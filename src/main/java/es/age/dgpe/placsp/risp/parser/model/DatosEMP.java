@@ -12,90 +12,55 @@
  ******************************************************************************/
 package es.age.dgpe.placsp.risp.parser.model;
 
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.fecha;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.identificador;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.lugarEjecucion;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.nombre;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.primeraPublicacion;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.primero;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.valor;
+
 import java.math.BigDecimal;
-import java.util.GregorianCalendar;
 
-import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
 
+import org.dgpe.codice.common.caclib.AddressType;
+import org.dgpe.codice.common.caclib.BudgetAmountType;
 import org.dgpe.codice.common.caclib.CommodityClassificationType;
-import org.dgpe.codice.common.caclib.PartyIdentificationType;
+import org.dgpe.codice.common.caclib.PartyType;
+import org.dgpe.codice.common.caclib.ProcurementProjectType;
+import org.dgpe.codice.common.caclib.TenderResultType;
 
 import es.age.dgpe.placsp.risp.parser.utils.genericode.GenericodeTypes;
-import ext.place.codice.common.caclib.AdditionalPublicationDocumentReferenceType;
-import ext.place.codice.common.caclib.AdditionalPublicationStatusType;
 import ext.place.codice.common.caclib.ContractFolderStatusType;
-import ext.place.codice.common.caclib.NoticeInfoType;
+import ext.place.codice.common.caclib.LocatedContractingPartyType;
  
 public enum DatosEMP{
-	PRIMERA_PUBLICACION("Primera publicación", EnumFormatos.FECHA_CORTA) {
+	PRIMERA_PUBLICACION("Primera publicación", EnumFormatos.FECHA_CORTA, "ValidNoticeInfo", "NoticeTypeCode", "AdditionalPublicationStatus", "PublicationMediaName", "AdditionalPublicationDocumentReference", "IssueDate") {
 	@Override
-		public GregorianCalendar valorCodice(ContractFolderStatusType contractFolder) {
-			GregorianCalendar primeraPublicacion = null;
-
-			try {
-				// Se recorren los validnoticeinfo
-				for (NoticeInfoType noticeInfo : contractFolder.getValidNoticeInfo()) {
-					try {
-						// No se tiene en cuenta si es anuncio previo
-						if (noticeInfo.getNoticeTypeCode().getValue().compareTo("DOC_PIN") != 0) {
-							// Se recorren los medios de publicacion
-							for (AdditionalPublicationStatusType additionalPublicationStatus : noticeInfo
-									.getAdditionalPublicationStatus()) {
-								// Se comprueba si el medio es el perfil de contratante
-								if (additionalPublicationStatus.getPublicationMediaName().getValue().equalsIgnoreCase("Perfil del Contratante")) {
-									// Se obtiene la fecha más antigua
-									for (AdditionalPublicationDocumentReferenceType additionalPublicationDocumentReference : additionalPublicationStatus
-											.getAdditionalPublicationDocumentReference()) {
-										GregorianCalendar fecha = additionalPublicationDocumentReference.getIssueDate().getValue().toGregorianCalendar();
-										if (primeraPublicacion == null
-												|| primeraPublicacion.compareTo(fecha) == DatatypeConstants.GREATER) {
-											primeraPublicacion = fecha;
-										}
-									}
-								}
-							}
-						}
-					} catch (Exception e) {
-						//El ATOM cumple con el esquema, pero no con los requisito
-					}
-				}
-				return primeraPublicacion;
-			} catch (Exception e) {
-				return null;
-			}
+		public XMLGregorianCalendar valorCodice(ContextoEntry contexto) {
+			// Fecha más antigua publicada en el perfil de contratante, sin contar los anuncios previos
+			return primeraPublicacion(contexto.getContractFolder().getValidNoticeInfo(), true);
 		}
 	},
-	ESTADO ("Estado"){
+	ESTADO ("Estado", "ContractFolderStatusCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder){
-			try {
-				String estado = GenericodeTypes.ESTADO.getValue(contractFolder.getContractFolderStatusCode().getValue());
-				return estado;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			String estado = valor(contexto.getContractFolder().getContractFolderStatusCode());
+			return estado != null ? GenericodeTypes.ESTADO.getValue(estado) : null;
 		}
 	},
-	NUMERO_EXPEDIENTE ("Número de expediente"){
+	NUMERO_EXPEDIENTE ("Número de expediente", "ContractFolderID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder){
-			try {
-				String numExpediente = contractFolder.getContractFolderID().getValue();
-				return numExpediente;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			return valor(contexto.getContractFolder().getContractFolderID());
 		}
 	},
-	OBJETO_CONTRATO ("Objeto del Encargo"){
+	OBJETO_CONTRATO ("Objeto del Encargo", "ProcurementProject", "Name", "BudgetAmount", "EstimatedOverallContractAmount"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder){
-			try {
-				String objeto = contractFolder.getProcurementProject().getName().get(0).getValue();
-				return objeto;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			ProcurementProjectType proyecto = contexto.getProcurementProject();
+			return proyecto != null ? valor(primero(proyecto.getName())) : null;
 		}
 	},
 	/*VALOR_ESTIMADO ("Valor estimado del encargo", EnumFormatos.MONEDA){
@@ -110,224 +75,122 @@ public enum DatosEMP{
 			
 		}
 	},*/
-	PRESUPUESTO_BASE_SIN_IMPUESTOS ("Presupuesto base sin impuestos", EnumFormatos.MONEDA){
+	PRESUPUESTO_BASE_SIN_IMPUESTOS ("Presupuesto base sin impuestos", EnumFormatos.MONEDA, "ProcurementProject", "BudgetAmount", "TaxExclusiveAmount"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				BigDecimal presupuestoConImpuestos = contractFolder.getProcurementProject().getBudgetAmount().getTaxExclusiveAmount().getValue();
-				return presupuestoConImpuestos;
-			}catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto) {
+			BudgetAmountType presupuesto = contexto.getBudgetAmount();
+			return presupuesto != null ? valor(presupuesto.getTaxExclusiveAmount()) : null;
 		}
 	},
-	PRESUPUESTO_BASE_CON_IMPUESTOS ("Presupuesto base con impuestos", EnumFormatos.MONEDA){
+	PRESUPUESTO_BASE_CON_IMPUESTOS ("Presupuesto base con impuestos", EnumFormatos.MONEDA, "ProcurementProject", "BudgetAmount", "TotalAmount"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				BigDecimal presupuestoSinImpuestos = contractFolder.getProcurementProject().getBudgetAmount().getTotalAmount().getValue();
-				return presupuestoSinImpuestos;	
-			}catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto) {
+			BudgetAmountType presupuesto = contexto.getBudgetAmount();
+			return presupuesto != null ? valor(presupuesto.getTotalAmount()) : null;
 		}
 	},
-	CPV ("CPV"){
+	CPV ("CPV", "ProcurementProject", "RequiredCommodityClassification", "ItemClassificationCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
+		public String valorCodice(ContextoEntry contexto) {
 			String valoresCPV = "";
-			try {
-				for (CommodityClassificationType commodity : contractFolder.getProcurementProject().getRequiredCommodityClassification()) {
-					valoresCPV += commodity.getItemClassificationCode().getValue() + SEPARADOR;
-				}
-				return valoresCPV;
-			}catch(Exception e) {
+			ProcurementProjectType proyecto = contexto.getProcurementProject();
+			if (proyecto == null) {
 				return valoresCPV;
-			}			
+			}
+			for (CommodityClassificationType commodity : proyecto.getRequiredCommodityClassification()) {
+				if (commodity.getItemClassificationCode() == null) {
+					// Se devuelven los CPV anteriores
+					return valoresCPV;
+				}
+				valoresCPV += commodity.getItemClassificationCode().getValue() + SEPARADOR;
+			}
+			return valoresCPV;
 		}
 	},
-	TIPO_CONTRATO ("Tipo de encargo"){
+	TIPO_CONTRATO ("Tipo de encargo", "ProcurementProject", "TypeCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return GenericodeTypes.TIPO_CONTRATO.getValue(contractFolder.getProcurementProject().getTypeCode().getValue());
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			ProcurementProjectType proyecto = contexto.getProcurementProject();
+			String tipo = proyecto != null ? valor(proyecto.getTypeCode()) : null;
+			return tipo != null ? GenericodeTypes.TIPO_CONTRATO.getValue(tipo) : null;
 		}
 	},
-	LUGAR_EJECUCION ("Lugar de ejecución"){
+	LUGAR_EJECUCION ("Lugar de ejecución", "ProcurementProject", "RealizedLocation", "CountrySubentityCode", "CountrySubentity", "Address", "Country", "IdentificationCode", "Name"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			String codigo = "";
-			String descripcion = "";
-			try {
-				codigo = contractFolder.getProcurementProject().getRealizedLocation().getCountrySubentityCode().getValue();				
-			}catch(Exception e) {
-				codigo = "";
-			}			
-			try {
-				descripcion = contractFolder.getProcurementProject().getRealizedLocation().getCountrySubentity().getValue();				
-			}catch(Exception e) {
-				descripcion = "";
-			}
-			
-			if (codigo == "" && descripcion == "") {
-				//Se intenta obtener el codigo del país
-				try {
-					codigo = contractFolder.getProcurementProject().getRealizedLocation().getAddress().getCountry().getIdentificationCode().getValue();
-				}catch(Exception e) {
-					codigo = "";
-				}			
-				try {
-					descripcion = contractFolder.getProcurementProject().getRealizedLocation().getAddress().getCountry().getName().getValue();
-				}catch(Exception e) {
-					descripcion = "";
-				}
-				
-			}
-			
-			return codigo + " - " + descripcion;
+		public String valorCodice(ContextoEntry contexto) {
+			return lugarEjecucion(contexto.getProcurementProject());
 		}
 	},
-	ORGANO_CONTRATACION ("Órgano de Contratación"){
+	ORGANO_CONTRATACION ("Órgano de Contratación", "LocatedContractingParty", "Party", "PartyName", "Name"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return contractFolder.getLocatedContractingParty().getParty().getPartyName().get(0).getName().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return nombre(contexto.getParty());
 		}
 	},
-	ID_PLATAFORMA_OC ("ID OC en PLACSP"){
+	ID_PLATAFORMA_OC ("ID OC en PLACSP", "LocatedContractingParty", "Party", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				String idPlatOC = "";
-				for (PartyIdentificationType partyIdentificationType : contractFolder.getLocatedContractingParty().getParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("ID_PLATAFORMA") == 0){
-						idPlatOC = partyIdentificationType.getID().getValue();
-					}
-				}
-				return idPlatOC;
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(contexto.getParty(), "ID_PLATAFORMA");
 		}
 	},
-	NIF_OC ("NIF OC"){
+	NIF_OC ("NIF OC", "LocatedContractingParty", "Party", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				String nif = "";
-				for (PartyIdentificationType partyIdentificationType : contractFolder.getLocatedContractingParty().getParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("NIF") == 0){
-						nif = partyIdentificationType.getID().getValue();
-					}
-				}
-				return nif;
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(contexto.getParty(), "NIF");
 		}
 	},
-	DIR3 ("DIR3"){
+	DIR3 ("DIR3", "LocatedContractingParty", "Party", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				String dir3 = "";
-				for (PartyIdentificationType partyIdentificationType : contractFolder.getLocatedContractingParty().getParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("DIR3") == 0){
-						dir3 = partyIdentificationType.getID().getValue();
-					}
-				}				
-				return dir3;
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(contexto.getParty(), "DIR3");
 		}
 	},
-	ENLACE_PERFIL_CONTRATANTE ("Enlace al Perfil de Contratante del OC"){
+	ENLACE_PERFIL_CONTRATANTE ("Enlace al Perfil de Contratante del OC", "LocatedContractingParty", "BuyerProfileURIID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return contractFolder.getLocatedContractingParty().getBuyerProfileURIID().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			LocatedContractingPartyType organo = contexto.getLocatedContractingParty();
+			return organo != null ? valor(organo.getBuyerProfileURIID()) : null;
 		}
 	},
-	TIPO_ADMINISTRACION ("Tipo de Administración"){
+	TIPO_ADMINISTRACION ("Tipo de Administración", "LocatedContractingParty", "ContractingPartyTypeCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {				
-				return GenericodeTypes.TIPO_ADMINISTRACION.getValue(contractFolder.getLocatedContractingParty().getContractingPartyTypeCode().getValue());
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			LocatedContractingPartyType organo = contexto.getLocatedContractingParty();
+			String tipo = organo != null ? valor(organo.getContractingPartyTypeCode()) : null;
+			return tipo != null ? GenericodeTypes.TIPO_ADMINISTRACION.getValue(tipo) : null;
 		}
 	},
-	CODIGO_POSTAL ("Código Postal"){
+	CODIGO_POSTAL ("Código Postal", "LocatedContractingParty", "Party", "PostalAddress", "PostalZone"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {			
-				return contractFolder.getLocatedContractingParty().getParty().getPostalAddress().getPostalZone().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			PartyType parte = contexto.getParty();
+			AddressType direccion = parte != null ? parte.getPostalAddress() : null;
+			return direccion != null ? valor(direccion.getPostalZone()) : null;
 		}
 	},
-	FECHA_ACUERDO_EMP ("Fecha del acuerdo del encargo", EnumFormatos.FECHA_CORTA){
+	FECHA_ACUERDO_EMP ("Fecha del acuerdo del encargo", EnumFormatos.FECHA_CORTA, "TenderResult", "AwardDate"){
 		@Override
-		public GregorianCalendar valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return contractFolder.getTenderResult().get(0).getAwardDate().getValue().toGregorianCalendar();
-			} catch (Exception e) {
-				return null;
-			}
+		public XMLGregorianCalendar valorCodice(ContextoEntry contexto) {
+			TenderResultType resultado = primero(contexto.getContractFolder().getTenderResult());
+			return resultado != null ? fecha(resultado.getAwardDate()) : null;
 		}
 	},
-	MEDIO_PROPIO_PERSONIFICADO ("Medio propio personificado"){
+	MEDIO_PROPIO_PERSONIFICADO ("Medio propio personificado", "TenderResult", "WinningParty", "PartyName", "Name"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {			
-				return contractFolder.getTenderResult().get(0).getWinningParty().getPartyName().get(0).getName().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return nombre(medioPropio(contexto));
 		}
 	},
-	MEDIO_PROPIO_PERSONIFICADO_NIF ("NIF Medio propio personificado"){
+	MEDIO_PROPIO_PERSONIFICADO_NIF ("NIF Medio propio personificado", "TenderResult", "WinningParty", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				String nif = "";
-				for (PartyIdentificationType partyIdentificationType : contractFolder.getTenderResult().get(0).getWinningParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("NIF") == 0){
-						nif = partyIdentificationType.getID().getValue();
-					}
-				}
-				return nif;
-			}catch(Exception e) {
-				return null;
-			}					
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(medioPropio(contexto), "NIF");
 		}
 	},
-	MEDIO_PROPIO_PERSONIFICADO_ID_PLATAFORMA ("ID_PLATAFORMA Medio propio personificado"){
+	MEDIO_PROPIO_PERSONIFICADO_ID_PLATAFORMA ("ID_PLATAFORMA Medio propio personificado", "TenderResult", "WinningParty", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				String idPlataforma = "";
-				for (PartyIdentificationType partyIdentificationType : contractFolder.getTenderResult().get(0).getWinningParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("ID_PLATAFORMA") == 0){
-						idPlataforma = partyIdentificationType.getID().getValue();
-					}
-				}
-				return idPlataforma;
-			}catch(Exception e) {
-				return null;
-			}					
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(medioPropio(contexto), "ID_PLATAFORMA");
 		}
 	};
 
@@ -335,15 +198,19 @@ public enum DatosEMP{
 	
 	private final String titulo;
 	private final EnumFormatos formato;
+	// Elementos CODICE que lee valorCodice (ver EnlazadorStax)
+	private final String[] elementos;
 
-	DatosEMP(String name, EnumFormatos format) {
+	DatosEMP(String name, EnumFormatos format, String... elementos) {
 		this.titulo = name;
 		this.formato = format;
+		this.elementos = elementos;
 	}
 	
-	DatosEMP(String name){
+	DatosEMP(String name, String... elementos) {
 		this.titulo = name;
 		this.formato = EnumFormatos.TEXTO;
+		this.elementos = elementos;
 	}
 	
 	
@@ -355,8 +222,29 @@ public enum DatosEMP{
 		return formato;
 	}
 	
+	/**
+	 * Nombres de los elementos CODICE que recorre valorCodice, para deserializar
+	 * solo los que necesitan las columnas seleccionadas.
+	 */
+	public String[] getElementos() {
+		return elementos;
+	}
 	
-	public abstract Object valorCodice(ContractFolderStatusType contractFolder);
+	
+	/**
+	 * Adjudicatario del encargo: el medio propio personificado del primer resultado.
+	 */
+	private static PartyType medioPropio(ContextoEntry contexto) {
+		TenderResultType resultado = primero(contexto.getContractFolder().getTenderResult());
+		return resultado != null ? resultado.getWinningParty() : null;
+	}
+	
+
+	public abstract Object valorCodice(ContextoEntry contexto);
+
+	public Object valorCodice(ContractFolderStatusType contractFolder) {
+		return valorCodice(new ContextoEntry(contractFolder));
+	}
 	
 
 }
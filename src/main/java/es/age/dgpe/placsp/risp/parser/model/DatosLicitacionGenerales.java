@@ -12,487 +12,330 @@
  ******************************************************************************/
 package es.age.dgpe.placsp.risp.parser.model;
 
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.finPlazo;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.identificador;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.lugarEjecucion;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.nombre;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.primeraPublicacion;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.primero;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.siNo;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.valor;
+
 import java.math.BigDecimal;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZoneId;
 import java.util.GregorianCalendar;
 
-import javax.xml.datatype.DatatypeConstants;
 import javax.xml.datatype.XMLGregorianCalendar;
 
+import org.dgpe.codice.common.caclib.AddressType;
+import org.dgpe.codice.common.caclib.BudgetAmountType;
 import org.dgpe.codice.common.caclib.CommodityClassificationType;
 import org.dgpe.codice.common.caclib.PartyIdentificationType;
+import org.dgpe.codice.common.caclib.PartyType;
+import org.dgpe.codice.common.caclib.ProcurementProjectType;
+import org.dgpe.codice.common.caclib.SubcontractTermsType;
+import org.dgpe.codice.common.caclib.TenderingProcessType;
+import org.dgpe.codice.common.caclib.TenderingTermsType;
 import org.dgpe.codice.common.cbclib.FundingProgramCodeType;
+import org.dgpe.codice.common.cbclib.IDType;
 
 import es.age.dgpe.placsp.risp.parser.utils.genericode.GenericodeTypes;
-import ext.place.codice.common.caclib.AdditionalPublicationDocumentReferenceType;
-import ext.place.codice.common.caclib.AdditionalPublicationStatusType;
 import ext.place.codice.common.caclib.ContractFolderStatusType;
-import ext.place.codice.common.caclib.NoticeInfoType;
+import ext.place.codice.common.caclib.LocatedContractingPartyType;
  
 public enum DatosLicitacionGenerales{
-	PRIMERA_PUBLICACION("Primera publicaci\u00f3n", EnumFormatos.FECHA_CORTA) {
+	PRIMERA_PUBLICACION("Primera publicaci\u00f3n", EnumFormatos.FECHA_CORTA, "ValidNoticeInfo", "NoticeTypeCode", "AdditionalPublicationStatus", "AdditionalPublicationDocumentReference", "IssueDate") {
 	@Override
-		public GregorianCalendar valorCodice(ContractFolderStatusType contractFolder) {
-			GregorianCalendar primeraPublicacion = null;
-
-			try {
-				// Se recorren los validnoticeinfo
-				for (NoticeInfoType noticeInfo : contractFolder.getValidNoticeInfo()) {
-					try {
-						// No se tiene en cuenta si es anuncio previo
-						if (noticeInfo.getNoticeTypeCode().getValue().compareTo("DOC_PIN") != 0) {
-							// Se recorren los medios de publicacion
-							for (AdditionalPublicationStatusType additionalPublicationStatus : noticeInfo
-									.getAdditionalPublicationStatus()) {
-								// Se obtiene la fecha más antigua
-								for (AdditionalPublicationDocumentReferenceType additionalPublicationDocumentReference : additionalPublicationStatus
-										.getAdditionalPublicationDocumentReference()) {
-									GregorianCalendar fecha = additionalPublicationDocumentReference.getIssueDate().getValue().toGregorianCalendar();
-									if (primeraPublicacion == null
-											|| primeraPublicacion.compareTo(fecha) == DatatypeConstants.GREATER) {
-										primeraPublicacion = fecha;
-									}
-								}
-							}
-						}
-					} catch (Exception e) {
-						//El ATOM cumple con el esquema, pero no con los requisito
-					}
-				}
-				return primeraPublicacion;
-			} catch (Exception e) {
-				return null;
-			}
+		public XMLGregorianCalendar valorCodice(ContextoEntry contexto) {
+			// Fecha más antigua de los validnoticeinfo que no son anuncio previo
+			return primeraPublicacion(contexto.getContractFolder().getValidNoticeInfo(), false);
 		}
 	},
-	ESTADO ("Estado"){
+	ESTADO ("Estado", "ContractFolderStatusCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder){
-			try {
-				String estado = GenericodeTypes.ESTADO.getValue(contractFolder.getContractFolderStatusCode().getValue());
-				return estado;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			String estado = valor(contexto.getContractFolder().getContractFolderStatusCode());
+			return estado != null ? GenericodeTypes.ESTADO.getValue(estado) : null;
 		}
 	},
-	NUMERO_EXPEDIENTE ("N\u00famero de expediente"){
+	NUMERO_EXPEDIENTE ("N\u00famero de expediente", "ContractFolderID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder){
-			try {
-				String numExpediente = contractFolder.getContractFolderID().getValue();
-				return numExpediente;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			return valor(contexto.getContractFolder().getContractFolderID());
 		}
 	},
-	OBJETO_CONTRATO ("Objeto del Contrato"){
+	OBJETO_CONTRATO ("Objeto del Contrato", "ProcurementProject", "Name"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder){
-			try {
-				String objeto = contractFolder.getProcurementProject().getName().get(0).getValue();
-				return objeto;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			ProcurementProjectType proyecto = contexto.getProcurementProject();
+			return proyecto != null ? valor(primero(proyecto.getName())) : null;
 		}
 	},
-	ID_TED ("Identificador \u00fanico TED"){
+	ID_TED ("Identificador \u00fanico TED", "UUID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder){
-			try {
-				String objeto = contractFolder.getUUID().get(0).getValue();
-				return objeto;
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto){
+			return valor(primero(contexto.getContractFolder().getUUID()));
 		}
 	},
-	VALOR_ESTIMADO ("Valor estimado del contrato", EnumFormatos.MONEDA){
+	VALOR_ESTIMADO ("Valor estimado del contrato", EnumFormatos.MONEDA, "ProcurementProject", "BudgetAmount", "EstimatedOverallContractAmount"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder){
-			try {
-				BigDecimal valorEstimado = contractFolder.getProcurementProject().getBudgetAmount().getEstimatedOverallContractAmount().getValue();
-				return valorEstimado;
-			}catch (Exception e) {
-				return null;
-			}
-			
+		public BigDecimal valorCodice(ContextoEntry contexto){
+			BudgetAmountType presupuesto = contexto.getBudgetAmount();
+			return presupuesto != null ? valor(presupuesto.getEstimatedOverallContractAmount()) : null;
 		}
 	},
-	PRESUPUESTO_BASE_SIN_IMPUESTOS ("Presupuesto base sin impuestos", EnumFormatos.MONEDA){
+	PRESUPUESTO_BASE_SIN_IMPUESTOS ("Presupuesto base sin impuestos", EnumFormatos.MONEDA, "ProcurementProject", "BudgetAmount", "TaxExclusiveAmount"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				BigDecimal presupuestoConImpuestos = contractFolder.getProcurementProject().getBudgetAmount().getTaxExclusiveAmount().getValue();
-				return presupuestoConImpuestos;
-			}catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto) {
+			BudgetAmountType presupuesto = contexto.getBudgetAmount();
+			return presupuesto != null ? valor(presupuesto.getTaxExclusiveAmount()) : null;
 		}
 	},
-	PRESUPUESTO_BASE_CON_IMPUESTOS ("Presupuesto base con impuestos", EnumFormatos.MONEDA){
+	PRESUPUESTO_BASE_CON_IMPUESTOS ("Presupuesto base con impuestos", EnumFormatos.MONEDA, "ProcurementProject", "BudgetAmount", "TotalAmount"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				BigDecimal presupuestoSinImpuestos = contractFolder.getProcurementProject().getBudgetAmount().getTotalAmount().getValue();
-				return presupuestoSinImpuestos;	
-			}catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto) {
+			BudgetAmountType presupuesto = contexto.getBudgetAmount();
+			return presupuesto != null ? valor(presupuesto.getTotalAmount()) : null;
 		}
 	},
-	CPV ("CPV"){
+	CPV ("CPV", "ProcurementProject", "RequiredCommodityClassification", "ItemClassificationCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
+		public String valorCodice(ContextoEntry contexto) {
 			String valoresCPV = "";
-			try {
-				for (CommodityClassificationType commodity : contractFolder.getProcurementProject().getRequiredCommodityClassification()) {
-					valoresCPV += commodity.getItemClassificationCode().getValue() + SEPARADOR;
-				}
-				return valoresCPV;
-			}catch(Exception e) {
+			ProcurementProjectType proyecto = contexto.getProcurementProject();
+			if (proyecto == null) {
 				return valoresCPV;
-			}			
+			}
+			for (CommodityClassificationType commodity : proyecto.getRequiredCommodityClassification()) {
+				if (commodity.getItemClassificationCode() == null) {
+					// Se devuelven los CPV anteriores
+					return valoresCPV;
+				}
+				valoresCPV += commodity.getItemClassificationCode().getValue() + SEPARADOR;
+			}
+			return valoresCPV;
 		}
 	},
-	TIPO_CONTRATO ("Tipo de contrato"){
+	TIPO_CONTRATO ("Tipo de contrato", "ProcurementProject", "TypeCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return GenericodeTypes.TIPO_CONTRATO.getValue(contractFolder.getProcurementProject().getTypeCode().getValue());
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			ProcurementProjectType proyecto = contexto.getProcurementProject();
+			String tipo = proyecto != null ? valor(proyecto.getTypeCode()) : null;
+			return tipo != null ? GenericodeTypes.TIPO_CONTRATO.getValue(tipo) : null;
 		}
 	},
-	CONTRATO_MIXTO ("Contrato mixto"){
+	CONTRATO_MIXTO ("Contrato mixto", "ProcurementProject", "MixContractIndicator"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				if(contractFolder.getProcurementProject().getMixContractIndicator().isValue()) {
-					return "Sí";
-				}else {
-					return "No";
-				}
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			ProcurementProjectType proyecto = contexto.getProcurementProject();
+			return proyecto != null ? siNo(proyecto.getMixContractIndicator()) : null;
 		}
 	},
-	LUGAR_EJECUCION ("Lugar de ejecuci\u00f3n"){
+	LUGAR_EJECUCION ("Lugar de ejecuci\u00f3n", "ProcurementProject", "RealizedLocation", "CountrySubentityCode", "CountrySubentity", "Address", "Country", "IdentificationCode", "Name"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			String codigo = "";
-			String descripcion = "";
-			try {
-				codigo = contractFolder.getProcurementProject().getRealizedLocation().getCountrySubentityCode().getValue();				
-			}catch(Exception e) {
-				codigo = "";
-			}			
-			try {
-				descripcion = contractFolder.getProcurementProject().getRealizedLocation().getCountrySubentity().getValue();				
-			}catch(Exception e) {
-				descripcion = "";
-			}
-			
-			if (codigo == "" && descripcion == "") {
-				//Se intenta obtener el codigo del país
-				try {
-					codigo = contractFolder.getProcurementProject().getRealizedLocation().getAddress().getCountry().getIdentificationCode().getValue();
-				}catch(Exception e) {
-					codigo = "";
-				}			
-				try {
-					descripcion = contractFolder.getProcurementProject().getRealizedLocation().getAddress().getCountry().getName().getValue();
-				}catch(Exception e) {
-					descripcion = "";
-				}
-				
-			}
-			
-			return codigo + " - " + descripcion;
+		public String valorCodice(ContextoEntry contexto) {
+			return lugarEjecucion(contexto.getProcurementProject());
 		}
 	},
-	ORGANO_CONTRATACION ("\u00d3rgano de Contrataci\u00f3n"){
+	ORGANO_CONTRATACION ("\u00d3rgano de Contrataci\u00f3n", "LocatedContractingParty", "Party", "PartyName", "Name"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return contractFolder.getLocatedContractingParty().getParty().getPartyName().get(0).getName().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return nombre(contexto.getParty());
 		}
 	},
-	ID_PLATAFORMA_OC ("ID OC en PLACSP"){
+	ID_PLATAFORMA_OC ("ID OC en PLACSP", "LocatedContractingParty", "Party", "PartyIdentification", "ID", "AgentParty"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {//Si es perfil en PLACSP --> ID_PLATAFORMA, si es desde agregadas --> ID_PLAT+"-"+ID_OC_PLAT
-				String idPlatOC = "";
-				for (PartyIdentificationType partyIdentificationType : contractFolder.getLocatedContractingParty().getParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("ID_PLATAFORMA") == 0){
-						idPlatOC = partyIdentificationType.getID().getValue();
-					}
-					if (partyIdentificationType.getID().getSchemeName().compareTo("ID_OC_PLAT") == 0){
-						idPlatOC = contractFolder.getLocatedContractingParty().getParty().getAgentParty().getPartyIdentification().get(0).getID().getValue()
-								+"-"
-								+partyIdentificationType.getID().getValue();
+		public String valorCodice(ContextoEntry contexto) {
+			//Si es perfil en PLACSP --> ID_PLATAFORMA, si es desde agregadas --> ID_PLAT+"-"+ID_OC_PLAT
+			PartyType parte = contexto.getParty();
+			if (parte == null) {
+				return null;
+			}
+			String idPlatOC = "";
+			for (PartyIdentificationType partyIdentificationType : parte.getPartyIdentification()) {
+				IDType id = partyIdentificationType.getID();
+				if (id == null || id.getSchemeName() == null) {
+					return null;
+				}
+				if (id.getSchemeName().compareTo("ID_PLATAFORMA") == 0){
+					idPlatOC = id.getValue();
+				}
+				if (id.getSchemeName().compareTo("ID_OC_PLAT") == 0){
+					PartyType agente = parte.getAgentParty();
+					PartyIdentificationType idAgente = agente != null ? primero(agente.getPartyIdentification()) : null;
+					if (idAgente == null || idAgente.getID() == null) {
+						return null;
 					}
+					idPlatOC = idAgente.getID().getValue()
+							+"-"
+							+id.getValue();
 				}
-				return idPlatOC;
-			}catch(Exception e) {
-				return null;
-			}			
+			}
+			return idPlatOC;
 		}
 	},
-	NIF_OC ("NIF OC"){
+	NIF_OC ("NIF OC", "LocatedContractingParty", "Party", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				String nif = "";
-				for (PartyIdentificationType partyIdentificationType : contractFolder.getLocatedContractingParty().getParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("NIF") == 0){
-						nif = partyIdentificationType.getID().getValue();
-					}
-				}
-				return nif;
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(contexto.getParty(), "NIF");
 		}
 	},
-	DIR3 ("DIR3"){
+	DIR3 ("DIR3", "LocatedContractingParty", "Party", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				String dir3 = "";
-				for (PartyIdentificationType partyIdentificationType : contractFolder.getLocatedContractingParty().getParty().getPartyIdentification()) {
-					if (partyIdentificationType.getID().getSchemeName().compareTo("DIR3") == 0){
-						dir3 = partyIdentificationType.getID().getValue();
-					}
-				}				
-				return dir3;
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			return identificador(contexto.getParty(), "DIR3");
 		}
 	},
-	ENLACE_PERFIL_CONTRATANTE ("Enlace al Perfil de Contratante del OC"){
+	ENLACE_PERFIL_CONTRATANTE ("Enlace al Perfil de Contratante del OC", "LocatedContractingParty", "BuyerProfileURIID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return contractFolder.getLocatedContractingParty().getBuyerProfileURIID().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			LocatedContractingPartyType organo = contexto.getLocatedContractingParty();
+			return organo != null ? valor(organo.getBuyerProfileURIID()) : null;
 		}
 	},
-	TIPO_ADMINISTRACION ("Tipo de Administraci\u00f3n"){
+	TIPO_ADMINISTRACION ("Tipo de Administraci\u00f3n", "LocatedContractingParty", "ContractingPartyTypeCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {				
-				return GenericodeTypes.TIPO_ADMINISTRACION.getValue(contractFolder.getLocatedContractingParty().getContractingPartyTypeCode().getValue());
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			LocatedContractingPartyType organo = contexto.getLocatedContractingParty();
+			String tipo = organo != null ? valor(organo.getContractingPartyTypeCode()) : null;
+			return tipo != null ? GenericodeTypes.TIPO_ADMINISTRACION.getValue(tipo) : null;
 		}
 	},
-	CODIGO_POSTAL ("C\u00f3digo Postal"){
+	CODIGO_POSTAL ("C\u00f3digo Postal", "LocatedContractingParty", "Party", "PostalAddress", "PostalZone"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {			
-				return contractFolder.getLocatedContractingParty().getParty().getPostalAddress().getPostalZone().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto) {
+			PartyType parte = contexto.getParty();
+			AddressType direccion = parte != null ? parte.getPostalAddress() : null;
+			return direccion != null ? valor(direccion.getPostalZone()) : null;
 		}
 	},
-	TIPO_PROCEDIMIENTO ("Tipo de procedimiento"){
+	TIPO_PROCEDIMIENTO ("Tipo de procedimiento", "TenderingProcess", "ProcedureCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return GenericodeTypes.TIPO_PROCEDIMIENTO.getValue(contractFolder.getTenderingProcess().getProcedureCode().getValue());
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingProcessType proceso = contexto.getTenderingProcess();
+			String tipo = proceso != null ? valor(proceso.getProcedureCode()) : null;
+			return tipo != null ? GenericodeTypes.TIPO_PROCEDIMIENTO.getValue(tipo) : null;
 		}
 	},
-	SISTEMA_CONTRATACION ("Sistema de contrataci\u00f3n"){
+	SISTEMA_CONTRATACION ("Sistema de contrataci\u00f3n", "TenderingProcess", "ContractingSystemCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return GenericodeTypes.SISTEMA_CONTRATACION.getValue(contractFolder.getTenderingProcess().getContractingSystemCode().getValue());
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingProcessType proceso = contexto.getTenderingProcess();
+			String sistema = proceso != null ? valor(proceso.getContractingSystemCode()) : null;
+			return sistema != null ? GenericodeTypes.SISTEMA_CONTRATACION.getValue(sistema) : null;
 		}
 	},
-	TRAMITACION ("Tramitaci\u00f3n"){
+	TRAMITACION ("Tramitaci\u00f3n", "TenderingProcess", "UrgencyCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return GenericodeTypes.TRAMITACION.getValue(contractFolder.getTenderingProcess().getUrgencyCode().getValue());
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingProcessType proceso = contexto.getTenderingProcess();
+			String tramitacion = proceso != null ? valor(proceso.getUrgencyCode()) : null;
+			return tramitacion != null ? GenericodeTypes.TRAMITACION.getValue(tramitacion) : null;
 		}
 	},
-	PRESENTACION_OFERTA ("Forma de presentaci\u00f3n de la oferta"){
+	PRESENTACION_OFERTA ("Forma de presentaci\u00f3n de la oferta", "TenderingProcess", "SubmissionMethodCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return GenericodeTypes.PRESENTACION_OFERTA.getValue(contractFolder.getTenderingProcess().getSubmissionMethodCode().getValue());
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingProcessType proceso = contexto.getTenderingProcess();
+			String forma = proceso != null ? valor(proceso.getSubmissionMethodCode()) : null;
+			return forma != null ? GenericodeTypes.PRESENTACION_OFERTA.getValue(forma) : null;
 		}
 	},
-	FECHA_PRESENTACION_OFERTAS ("Fecha de presentaci\u00f3n de ofertas",  EnumFormatos.FECHA_LARGA){
+	FECHA_PRESENTACION_OFERTAS ("Fecha de presentaci\u00f3n de ofertas",  EnumFormatos.FECHA_LARGA, "TenderingProcess", "TenderSubmissionDeadlinePeriod", "EndDate", "EndTime"){
 		@Override
-		public GregorianCalendar valorCodice(ContractFolderStatusType contractFolder) {
-			GregorianCalendar fechaFinal = new GregorianCalendar();
-			try {
-				//Se intenta recuper la fehca de fin de presentación de ofertas
-				XMLGregorianCalendar finPresentacionDia = contractFolder.getTenderingProcess().getTenderSubmissionDeadlinePeriod().getEndDate().getValue();
-				XMLGregorianCalendar finPresentacionHora = contractFolder.getTenderingProcess().getTenderSubmissionDeadlinePeriod().getEndTime().getValue();
-	
-				LocalDate localDate = LocalDate.of(finPresentacionDia.getYear(), finPresentacionDia.getMonth(), finPresentacionDia.getDay());
-				LocalTime localTime = LocalTime.of(finPresentacionHora.getHour(), finPresentacionHora.getMinute(), finPresentacionHora.getSecond());
-				LocalDateTime localDateTime = LocalDateTime.of(localDate, localTime);
-				
-				fechaFinal = GregorianCalendar.from(localDateTime.atZone(ZoneId.of("Europe/Paris")));
-				
-				return fechaFinal;
-			} catch (Exception e) {
-				return null;
-			}
+		public GregorianCalendar valorCodice(ContextoEntry contexto) {
+			TenderingProcessType proceso = contexto.getTenderingProcess();
+			return proceso != null ? finPlazo(proceso.getTenderSubmissionDeadlinePeriod()) : null;
 		}
 	},
-	FECHA_PRESENTACION_SOLICITUDES ("Fecha de presentaci\u00f3n de solicitudes de participaci\u00f3n",  EnumFormatos.FECHA_LARGA){
+	FECHA_PRESENTACION_SOLICITUDES ("Fecha de presentaci\u00f3n de solicitudes de participaci\u00f3n",  EnumFormatos.FECHA_LARGA, "TenderingProcess", "ParticipationRequestReceptionPeriod", "EndDate", "EndTime"){
 		@Override
-		public GregorianCalendar valorCodice(ContractFolderStatusType contractFolder) {
-			GregorianCalendar fechaFinal = new GregorianCalendar();
-			try {
-				//Se intenta recuperar la fecha de fin de presentación de solicituddes
-				XMLGregorianCalendar finPresentacionDia = contractFolder.getTenderingProcess().getParticipationRequestReceptionPeriod().getEndDate().getValue();
-				XMLGregorianCalendar finPresentacionHora = contractFolder.getTenderingProcess().getParticipationRequestReceptionPeriod().getEndTime().getValue();
-				
-				LocalDate localDate = LocalDate.of(finPresentacionDia.getYear(), finPresentacionDia.getMonth(), finPresentacionDia.getDay());
-				LocalTime localTime = LocalTime.of(finPresentacionHora.getHour(), finPresentacionHora.getMinute(), finPresentacionHora.getSecond());
-				LocalDateTime localDateTime = LocalDateTime.of(localDate, localTime);
-				
-				fechaFinal = GregorianCalendar.from(localDateTime.atZone(ZoneId.of("Europe/Paris")));
-				
-				return fechaFinal;
-
-			} catch (Exception e) {
-				return null;
-			}
+		public GregorianCalendar valorCodice(ContextoEntry contexto) {
+			TenderingProcessType proceso = contexto.getTenderingProcess();
+			return proceso != null ? finPlazo(proceso.getParticipationRequestReceptionPeriod()) : null;
 		}
 	},
-	ES_REG_SARA ("Directiva de aplicaci\u00f3n"){
+	ES_REG_SARA ("Directiva de aplicaci\u00f3n", "TenderingTerms", "ProcurementLegislationDocumentReference", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return contractFolder.getTenderingTerms().getProcurementLegislationDocumentReference().getID().getValue();
-			} catch (Exception e) {
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingTermsType condiciones = contexto.getTenderingTerms();
+			if (condiciones == null || condiciones.getProcurementLegislationDocumentReference() == null) {
 				return null;
 			}
+			return valor(condiciones.getProcurementLegislationDocumentReference().getID());
 		}
 	},
-	CONTRATO_SARA_UMBRAL ("Contrato SARA/Umbral"){
+	CONTRATO_SARA_UMBRAL ("Contrato SARA/Umbral", "TenderingProcess", "OverThresholdIndicator"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				if(contractFolder.getTenderingProcess().getOverThresholdIndicator().isValue()) {
-					return "Sí";
-				}
-					
-				else {
-					return "No";
-				}
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingProcessType proceso = contexto.getTenderingProcess();
+			return proceso != null ? siNo(proceso.getOverThresholdIndicator()) : null;
 		}
 	},
-	FINANCIACION_EUROPEA ("Financiaci\u00f3n Europea y fuente"){
+	FINANCIACION_EUROPEA ("Financiaci\u00f3n Europea y fuente", "TenderingTerms", "FundingProgramCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				String financiacionEuropea = "";
-				String fuenteFinanciacion = "";
-				
-				
-				for (FundingProgramCodeType fundingProgramCodeType : contractFolder.getTenderingTerms().getFundingProgramCode()) {
-					if (fundingProgramCodeType.getValue().compareTo("EU") == 0) financiacionEuropea = "Sí";
-					if (fundingProgramCodeType.getValue().compareTo("NO-EU") == 0) financiacionEuropea = "No";
-					if (fundingProgramCodeType.getValue().compareTo("REU") == 0 ||
-						fundingProgramCodeType.getValue().compareTo("FEDER") == 0 ||
-						fundingProgramCodeType.getValue().compareTo("FSE+") == 0 ||
-						fundingProgramCodeType.getValue().compareTo("FEADER") == 0 ||
-						fundingProgramCodeType.getValue().compareTo("FEMP") == 0 ||
-						fundingProgramCodeType.getValue().compareTo("PRTR") == 0 ||
-						fundingProgramCodeType.getValue().compareTo("OFE") == 0){
-							//Hay fuente de financiación
-						fuenteFinanciacion = GenericodeTypes.CODIGO_FINANCIACION.getValue(fundingProgramCodeType.getValue());
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingTermsType condiciones = contexto.getTenderingTerms();
+			if (condiciones == null) {
+				return null;
+			}
+			String financiacionEuropea = "";
+			String fuenteFinanciacion = "";
+
+			for (FundingProgramCodeType fundingProgramCodeType : condiciones.getFundingProgramCode()) {
+				String codigo = fundingProgramCodeType.getValue();
+				if (codigo == null) {
+					return null;
+				}
+				if (codigo.compareTo("EU") == 0) financiacionEuropea = "Sí";
+				if (codigo.compareTo("NO-EU") == 0) financiacionEuropea = "No";
+				if (codigo.compareTo("REU") == 0 ||
+					codigo.compareTo("FEDER") == 0 ||
+					codigo.compareTo("FSE+") == 0 ||
+					codigo.compareTo("FEADER") == 0 ||
+					codigo.compareTo("FEMP") == 0 ||
+					codigo.compareTo("PRTR") == 0 ||
+					codigo.compareTo("OFE") == 0){
+						//Hay fuente de financiación
+					fuenteFinanciacion = GenericodeTypes.CODIGO_FINANCIACION.getValue(codigo);
+					if (fuenteFinanciacion == null) {
+						return null;
 					}
-						
 				}
-					
-				if (fuenteFinanciacion.length() > 0) financiacionEuropea += " - " + fuenteFinanciacion;
-				return financiacionEuropea;
-			} catch (Exception e) {
-				return null;
 			}
+
+			if (fuenteFinanciacion.length() > 0) financiacionEuropea += " - " + fuenteFinanciacion;
+			return financiacionEuropea;
 		}
 	},
-	FINANCIACION_EUROPEA_DESCRIPCION("Descripci\u00f3n de la financiaci\u00f3n europea"){
+	FINANCIACION_EUROPEA_DESCRIPCION("Descripci\u00f3n de la financiaci\u00f3n europea", "TenderingTerms", "FundingProgram"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return contractFolder.getTenderingTerms().getFundingProgram().get(0).getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingTermsType condiciones = contexto.getTenderingTerms();
+			return condiciones != null ? valor(primero(condiciones.getFundingProgram())) : null;
 		}
 	},
-	SUBASTA_ELECTRONICA ("Subasta electr\u00f3nica"){
+	SUBASTA_ELECTRONICA ("Subasta electr\u00f3nica", "TenderingProcess", "AuctionTerms", "AuctionConstraintIndicator"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				if(contractFolder.getTenderingProcess().getAuctionTerms().getAuctionConstraintIndicator().isValue()) {
-					return "Sí";
-				}else {
-					return "No";
-				}
-			} catch (Exception e) {
+		public String valorCodice(ContextoEntry contexto) {
+			TenderingProcessType proceso = contexto.getTenderingProcess();
+			if (proceso == null || proceso.getAuctionTerms() == null) {
 				return null;
 			}
+			return siNo(proceso.getAuctionTerms().getAuctionConstraintIndicator());
 		}
 	},
-	SUBCONTRACION_PERMITIDA_DESC ("Subcontrataci\u00f3n permitida"){
+	SUBCONTRACION_PERMITIDA_DESC ("Subcontrataci\u00f3n permitida", "TenderingTerms", "AllowedSubcontractTerms", "Description"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return contractFolder.getTenderingTerms().getAllowedSubcontractTerms().get(0).getDescription().get(0).getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto) {
+			SubcontractTermsType subcontratacion = subcontratacion(contexto);
+			return subcontratacion != null ? valor(primero(subcontratacion.getDescription())) : null;
 		}
 	},
-	SUBCONTRACION_PERMITIDA_RATE ("Subcontrataci\u00f3n permitida porcentaje"){
+	SUBCONTRACION_PERMITIDA_RATE ("Subcontrataci\u00f3n permitida porcentaje", "TenderingTerms", "AllowedSubcontractTerms", "Rate"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder) {
-			try {
-				return contractFolder.getTenderingTerms().getAllowedSubcontractTerms().get(0).getRate().getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto) {
+			SubcontractTermsType subcontratacion = subcontratacion(contexto);
+			return subcontratacion != null ? valor(subcontratacion.getRate()) : null;
 		}
 	};
 
@@ -500,15 +343,19 @@ public enum DatosLicitacionGenerales{
 	
 	private final String titulo;
 	private final EnumFormatos formato;
+	// Elementos CODICE que lee valorCodice (ver EnlazadorStax)
+	private final String[] elementos;
 
-	DatosLicitacionGenerales(String name, EnumFormatos format) {
+	DatosLicitacionGenerales(String name, EnumFormatos format, String... elementos) {
 		this.titulo = name;
 		this.formato = format;
+		this.elementos = elementos;
 	}
 	
-	DatosLicitacionGenerales(String name){
+	DatosLicitacionGenerales(String name, String... elementos) {
 		this.titulo = name;
 		this.formato = EnumFormatos.TEXTO;
+		this.elementos = elementos;
 	}
 	
 	
@@ -520,8 +367,26 @@ public enum DatosLicitacionGenerales{
 		return formato;
 	}
 	
+	/**
+	 * Nombres de los elementos CODICE que recorre valorCodice, para deserializar
+	 * solo los que necesitan las columnas seleccionadas.
+	 */
+	public String[] getElementos() {
+		return elementos;
+	}
+	
 	
-	public abstract Object valorCodice(ContractFolderStatusType contractFolder);
+	private static SubcontractTermsType subcontratacion(ContextoEntry contexto) {
+		TenderingTermsType condiciones = contexto.getTenderingTerms();
+		return condiciones != null ? primero(condiciones.getAllowedSubcontractTerms()) : null;
+	}
+	
+
+	public abstract Object valorCodice(ContextoEntry contexto);
+
+	public Object valorCodice(ContractFolderStatusType contractFolder) {
+		return valorCodice(new ContextoEntry(contractFolder));
+	}
 	
 
 }
@@ -12,314 +12,207 @@
  ******************************************************************************/
 package es.age.dgpe.placsp.risp.parser.model;
 
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.fecha;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.lugarEjecucion;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.nombre;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.primero;
+import static es.age.dgpe.placsp.risp.parser.model.NavegacionCodice.valor;
+
 import java.math.BigDecimal;
-import java.util.GregorianCalendar;
 
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.dgpe.codice.common.caclib.BudgetAmountType;
 import org.dgpe.codice.common.caclib.CommodityClassificationType;
-import org.dgpe.codice.common.caclib.ProcurementProjectLotType;
+import org.dgpe.codice.common.caclib.ContractType;
+import org.dgpe.codice.common.caclib.LegalMonetaryTotalType;
+import org.dgpe.codice.common.caclib.PartyIdentificationType;
+import org.dgpe.codice.common.caclib.PartyType;
 import org.dgpe.codice.common.caclib.ProcurementProjectType;
+import org.dgpe.codice.common.caclib.TenderResultType;
+import org.dgpe.codice.common.caclib.TenderedProjectType;
+import org.dgpe.codice.common.cbclib.IDType;
 
 import es.age.dgpe.placsp.risp.parser.utils.genericode.GenericodeTypes;
 import ext.place.codice.common.caclib.ContractFolderStatusType;
 
 public enum DatosResultados {
-	NUMERO_EXPEDIENTE("Número de expediente") {
+	NUMERO_EXPEDIENTE("Número de expediente", "ContractFolderID") {
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			String numExpediente = contractFolder.getContractFolderID().getValue();
-			return numExpediente;
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			return valor(contexto.getContractFolder().getContractFolderID());
 		}
 	},
-	NUMERO_LOTE("Lote") {
+	NUMERO_LOTE("Lote", "TenderResult", "AwardedTenderedProject", "ProcurementProjectLotID") {
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			String numLote = "Sin lotes";
-			try {
-				numLote = contractFolder.getTenderResult().get(indice).getAwardedTenderedProject()
-						.getProcurementProjectLotID().getValue();
-			} catch (Exception e) {
-				numLote = "Sin lotes";
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			TenderedProjectType proyectoAdjudicado = proyectoAdjudicado(contexto, indice);
+			if (proyectoAdjudicado == null || proyectoAdjudicado.getProcurementProjectLotID() == null) {
+				return "Sin lotes";
 			}
-			return numLote;
+			return proyectoAdjudicado.getProcurementProjectLotID().getValue();
 		}
 	},
-	OBJETO("Objeto licitación/lote"){
+	OBJETO("Objeto licitación/lote", "ProcurementProject", "Name", "TenderResult", "AwardedTenderedProject", "ProcurementProjectLotID", "ProcurementProjectLot", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				ProcurementProjectLotType procurementProjectLot = getProcurementProjectLot(contractFolder, indice);
-				if (procurementProjectLot == null) {
-					return contractFolder.getProcurementProject().getName().get(0).getValue();
-				}else {
-					return procurementProjectLot.getProcurementProject().getName().get(0).getValue();
-				}
-			}catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			ProcurementProjectType proyecto = contexto.getProcurementProject(indice);
+			return proyecto != null ? valor(primero(proyecto.getName())) : null;
 		}
 	},
-	VALOR_ESTIMADO("Valor estimado licitación/lote", EnumFormatos.MONEDA){
+	VALOR_ESTIMADO("Valor estimado licitación/lote", EnumFormatos.MONEDA, "ProcurementProject", "BudgetAmount", "EstimatedOverallContractAmount", "TenderResult", "AwardedTenderedProject", "ProcurementProjectLotID", "ProcurementProjectLot", "ID"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				ProcurementProjectLotType procurementProjectLot = getProcurementProjectLot(contractFolder, indice);
-				if (procurementProjectLot == null) {
-					return contractFolder.getProcurementProject().getBudgetAmount().getEstimatedOverallContractAmount().getValue();
-				}else {
-					return procurementProjectLot.getProcurementProject().getBudgetAmount().getEstimatedOverallContractAmount().getValue();
-				}
-			}catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto, int indice) {
+			BudgetAmountType presupuesto = contexto.getBudgetAmount(indice);
+			return presupuesto != null ? valor(presupuesto.getEstimatedOverallContractAmount()) : null;
 		}
 	},
-	IMPORTE_CON_IMPUESTOS("Presupuesto base con impuestos licitación/lote", EnumFormatos.MONEDA){
+	IMPORTE_CON_IMPUESTOS("Presupuesto base con impuestos licitación/lote", EnumFormatos.MONEDA, "ProcurementProject", "BudgetAmount", "TotalAmount", "TenderResult", "AwardedTenderedProject", "ProcurementProjectLotID", "ProcurementProjectLot", "ID"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				ProcurementProjectLotType procurementProjectLot = getProcurementProjectLot(contractFolder, indice);
-				if (procurementProjectLot == null) {
-					return contractFolder.getProcurementProject().getBudgetAmount().getTotalAmount().getValue();
-				}else {
-					return procurementProjectLot.getProcurementProject().getBudgetAmount().getTotalAmount().getValue();
-				}
-			}catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto, int indice) {
+			BudgetAmountType presupuesto = contexto.getBudgetAmount(indice);
+			return presupuesto != null ? valor(presupuesto.getTotalAmount()) : null;
 		}
 	},
-	IMPORTE_SIN_IMPUESTOS("Presupuesto base sin impuestos licitación/lote", EnumFormatos.MONEDA){
+	IMPORTE_SIN_IMPUESTOS("Presupuesto base sin impuestos licitación/lote", EnumFormatos.MONEDA, "ProcurementProject", "BudgetAmount", "TaxExclusiveAmount", "TenderResult", "AwardedTenderedProject", "ProcurementProjectLotID", "ProcurementProjectLot", "ID"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				ProcurementProjectLotType procurementProjectLot = getProcurementProjectLot(contractFolder, indice);
-				if (procurementProjectLot == null) {
-					return contractFolder.getProcurementProject().getBudgetAmount().getTaxExclusiveAmount().getValue();
-				}else {
-					return procurementProjectLot.getProcurementProject().getBudgetAmount().getTaxExclusiveAmount().getValue();
-				}
-			}catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto, int indice) {
+			BudgetAmountType presupuesto = contexto.getBudgetAmount(indice);
+			return presupuesto != null ? valor(presupuesto.getTaxExclusiveAmount()) : null;
 		}
 	},
-	CPV("CPV licitación/lote"){
+	CPV("CPV licitación/lote", "ProcurementProject", "RequiredCommodityClassification", "ItemClassificationCode", "TenderResult", "AwardedTenderedProject", "ProcurementProjectLotID", "ProcurementProjectLot", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			ProcurementProjectType proyecto = contexto.getProcurementProject(indice);
+			if (proyecto == null) {
+				return null;
+			}
 			String valoresCPV = "";
-			try {
-				ProcurementProjectLotType procurementProjectLot = getProcurementProjectLot(contractFolder, indice);
-				if (procurementProjectLot == null) {
-					for (CommodityClassificationType commodity : contractFolder.getProcurementProject().getRequiredCommodityClassification()) {
-						valoresCPV += commodity.getItemClassificationCode().getValue() + SEPARADOR;
-					}
-				}else {
-					for (CommodityClassificationType commodity :  procurementProjectLot.getProcurementProject().getRequiredCommodityClassification()) {
-						valoresCPV += commodity.getItemClassificationCode().getValue() + SEPARADOR;
-					}
+			for (CommodityClassificationType commodity : proyecto.getRequiredCommodityClassification()) {
+				if (commodity.getItemClassificationCode() == null) {
+					return null;
 				}
-				return valoresCPV;
-			}catch (Exception e) {
-				return null;
+				valoresCPV += commodity.getItemClassificationCode().getValue() + SEPARADOR;
 			}
+			return valoresCPV;
 		}
 	},
-	LUGAR_EJEUCION("Lugar ejecución licitación/lote"){
+	LUGAR_EJEUCION("Lugar ejecución licitación/lote", "ProcurementProject", "RealizedLocation", "CountrySubentityCode", "CountrySubentity", "Address", "Country", "IdentificationCode", "Name", "TenderResult", "AwardedTenderedProject", "ProcurementProjectLotID", "ProcurementProjectLot", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			String codigo = "";
-			String descripcion = "";
-			try {
-				ProcurementProjectLotType procurementProjectLot = getProcurementProjectLot(contractFolder, indice);
-				ProcurementProjectType procurementProjectType;
-				if (procurementProjectLot == null) {
-					//La licitación no está estructurada en lotes
-					procurementProjectType = contractFolder.getProcurementProject();
-				}
-				else {
-					//La licitación se estructura en lotes
-					procurementProjectType = procurementProjectLot.getProcurementProject();
-				}
-				
-				//Se obtiene el código y la descripción del lugar de ejecución
-				try {
-					codigo = procurementProjectType.getRealizedLocation().getCountrySubentityCode().getValue();				
-				}catch(Exception e) {
-					codigo = "";
-				}			
-				try {
-					descripcion = procurementProjectType.getRealizedLocation().getCountrySubentity().getValue();				
-				}catch(Exception e) {
-					descripcion = "";
-				}
-
-				if (codigo == "" && descripcion == "") {
-					//No existe un código NUTS. Se intenta obtener el codigo del país
-					try {
-						codigo = procurementProjectType.getRealizedLocation().getAddress().getCountry().getIdentificationCode().getValue();
-					}catch(Exception e) {
-						codigo = "";
-					}			
-					try {
-						descripcion = procurementProjectType.getRealizedLocation().getAddress().getCountry().getName().getValue();
-					}catch(Exception e) {
-						descripcion = "";
-					}
-				}	
-			}catch (Exception e) {
-				return null;
-			}
-			return codigo + " - " + descripcion;
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			//Proyecto del lote, o de la licitación si no está estructurada en lotes
+			return lugarEjecucion(contexto.getProcurementProject(indice));
 		}
 	},
-	RESULTADO("Resultado licitación/lote"){
+	RESULTADO("Resultado licitación/lote", "TenderResult", "ResultCode"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return GenericodeTypes.RESULTADO.getValue(contractFolder.getTenderResult().get(indice).getResultCode().getValue());
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			TenderResultType resultado = contexto.getTenderResult(indice);
+			String codigo = resultado != null ? valor(resultado.getResultCode()) : null;
+			return codigo != null ? GenericodeTypes.RESULTADO.getValue(codigo) : null;
 		}
 	},
-	FECHA_ACUERDO("Fecha del acuerdo licitación/lote", EnumFormatos.FECHA_CORTA){
+	FECHA_ACUERDO("Fecha del acuerdo licitación/lote", EnumFormatos.FECHA_CORTA, "TenderResult", "AwardDate"){
 		@Override
-		public GregorianCalendar valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getAwardDate().getValue().toGregorianCalendar();
-			} catch (Exception e) {
-				return null;
-			}
+		public XMLGregorianCalendar valorCodice(ContextoEntry contexto, int indice) {
+			TenderResultType resultado = contexto.getTenderResult(indice);
+			return resultado != null ? fecha(resultado.getAwardDate()) : null;
 		}
 	},
-	OFERTAS_RECIBIDAS("Número de ofertas recibidas por licitación/lote", EnumFormatos.NUMERO){
+	OFERTAS_RECIBIDAS("Número de ofertas recibidas por licitación/lote", EnumFormatos.NUMERO, "TenderResult", "ReceivedTenderQuantity"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getReceivedTenderQuantity().getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto, int indice) {
+			TenderResultType resultado = contexto.getTenderResult(indice);
+			return resultado != null ? valor(resultado.getReceivedTenderQuantity()) : null;
 		}
 	},
-	PRECIO_OFERTA_MAS_BAJA("Precio de la oferta más baja por licitación/lote", EnumFormatos.MONEDA){
+	PRECIO_OFERTA_MAS_BAJA("Precio de la oferta más baja por licitación/lote", EnumFormatos.MONEDA, "TenderResult", "LowerTenderAmount"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getLowerTenderAmount().getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto, int indice) {
+			TenderResultType resultado = contexto.getTenderResult(indice);
+			return resultado != null ? valor(resultado.getLowerTenderAmount()) : null;
 		}
 	},
-	PRECIO_OFERTA_MAS_ALTA("Precio de la oferta más alta por licitación/lote", EnumFormatos.MONEDA){
+	PRECIO_OFERTA_MAS_ALTA("Precio de la oferta más alta por licitación/lote", EnumFormatos.MONEDA, "TenderResult", "HigherTenderAmount"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getHigherTenderAmount().getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto, int indice) {
+			TenderResultType resultado = contexto.getTenderResult(indice);
+			return resultado != null ? valor(resultado.getHigherTenderAmount()) : null;
 		}
 	},
-	EXCLUIDAS_OFERTAS_ANORM_BAJAS("Se han excluído ofertas por ser anormalmente bajas por licitación/lote"){
+	EXCLUIDAS_OFERTAS_ANORM_BAJAS("Se han excluído ofertas por ser anormalmente bajas por licitación/lote", "TenderResult", "AbnormallyLowTendersIndicator"){
 		@Override
-		public Boolean valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getAbnormallyLowTendersIndicator().isValue();
-			} catch (Exception e) {
+		public Boolean valorCodice(ContextoEntry contexto, int indice) {
+			TenderResultType resultado = contexto.getTenderResult(indice);
+			if (resultado == null || resultado.getAbnormallyLowTendersIndicator() == null) {
 				return null;
 			}
+			return resultado.getAbnormallyLowTendersIndicator().isValue();
 		}
 	},
-	NUMERO_CONTRATO("Número del contrato licitación/lote", EnumFormatos.TEXTO){
+	NUMERO_CONTRATO("Número del contrato licitación/lote", EnumFormatos.TEXTO, "TenderResult", "Contract", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getContract().getID().getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			ContractType contrato = contrato(contexto, indice);
+			return contrato != null ? valor(contrato.getID()) : null;
 		}
 	},
-	FECHA_FORMALIZACION("Fecha formalización del contrato licitación/lote", EnumFormatos.FECHA_CORTA){
+	FECHA_FORMALIZACION("Fecha formalización del contrato licitación/lote", EnumFormatos.FECHA_CORTA, "TenderResult", "Contract", "IssueDate"){
 		@Override
-		public GregorianCalendar valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getContract().getIssueDate().getValue().toGregorianCalendar();
-			} catch (Exception e) {
-				return null;
-			}
+		public XMLGregorianCalendar valorCodice(ContextoEntry contexto, int indice) {
+			ContractType contrato = contrato(contexto, indice);
+			return contrato != null ? fecha(contrato.getIssueDate()) : null;
 		}
 	},
-	FECHA_ENTRADA_VIGOR("Fecha entrada en vigor del contrato de licitación/lote", EnumFormatos.FECHA_CORTA){
+	FECHA_ENTRADA_VIGOR("Fecha entrada en vigor del contrato de licitación/lote", EnumFormatos.FECHA_CORTA, "TenderResult", "StartDate"){
 		@Override
-		public GregorianCalendar valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getStartDate().getValue().toGregorianCalendar();
-			} catch (Exception e) {
-				return null;
-			}
+		public XMLGregorianCalendar valorCodice(ContextoEntry contexto, int indice) {
+			TenderResultType resultado = contexto.getTenderResult(indice);
+			return resultado != null ? fecha(resultado.getStartDate()) : null;
 		}
 	},
-	ADJUDICATARIO("Adjudicatario licitación/lote"){
+	ADJUDICATARIO("Adjudicatario licitación/lote", "TenderResult", "WinningParty", "PartyName", "Name"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getWinningParty().getPartyName().get(0).getName().getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			return nombre(adjudicatario(contexto, indice));
 		}
 	},
-	TIPO_ID_ADJUDICATARIO("Tipo de identificador de adjudicatario por licitación/lote"){
+	TIPO_ID_ADJUDICATARIO("Tipo de identificador de adjudicatario por licitación/lote", "TenderResult", "WinningParty", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getWinningParty().getPartyIdentification().get(0).getID().getSchemeName();
-			} catch (Exception e) {
-				return null;
-			}
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			IDType id = idAdjudicatario(contexto, indice);
+			return id != null ? id.getSchemeName() : null;
 		}
 	},
-	ID_ADJUDICATARIO ("Identificador Adjudicatario de la licitación/lote"){
+	ID_ADJUDICATARIO ("Identificador Adjudicatario de la licitación/lote", "TenderResult", "WinningParty", "PartyIdentification", "ID"){
 		@Override
-		public String valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getWinningParty().getPartyIdentification().get(0).getID().getValue();
-			}catch(Exception e) {
-				return null;
-			}			
+		public String valorCodice(ContextoEntry contexto, int indice) {
+			return valor(idAdjudicatario(contexto, indice));
 		}
 	},
-	ES_PYME("El adjudicatario es o no PYME de la licitación/lote"){
+	ES_PYME("El adjudicatario es o no PYME de la licitación/lote", "TenderResult", "SMEAwardedIndicator"){
 		@Override
-		public Boolean valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getSMEAwardedIndicator().isValue();
-			} catch (Exception e) {
+		public Boolean valorCodice(ContextoEntry contexto, int indice) {
+			TenderResultType resultado = contexto.getTenderResult(indice);
+			if (resultado == null || resultado.getSMEAwardedIndicator() == null) {
 				return null;
 			}
+			return resultado.getSMEAwardedIndicator().isValue();
 		}
 	},
-	IMPORTE_ADJ_SIN_IMPUESTOS("Importe adjudicación sin impuestos licitación/lote", EnumFormatos.MONEDA){
+	IMPORTE_ADJ_SIN_IMPUESTOS("Importe adjudicación sin impuestos licitación/lote", EnumFormatos.MONEDA, "TenderResult", "AwardedTenderedProject", "LegalMonetaryTotal", "TaxExclusiveAmount"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getAwardedTenderedProject().getLegalMonetaryTotal().getTaxExclusiveAmount().getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto, int indice) {
+			LegalMonetaryTotalType importes = importesAdjudicacion(contexto, indice);
+			return importes != null ? valor(importes.getTaxExclusiveAmount()) : null;
 		}
 	},
-	IMPORTE_ADJ_CON_IMPUESTOS("Importe adjudicación con impuestos licitación/lote", EnumFormatos.MONEDA){
+	IMPORTE_ADJ_CON_IMPUESTOS("Importe adjudicación con impuestos licitación/lote", EnumFormatos.MONEDA, "TenderResult", "AwardedTenderedProject", "LegalMonetaryTotal", "PayableAmount"){
 		@Override
-		public BigDecimal valorCodice(ContractFolderStatusType contractFolder, int indice) {
-			try {
-				return contractFolder.getTenderResult().get(indice).getAwardedTenderedProject().getLegalMonetaryTotal().getPayableAmount().getValue();
-			} catch (Exception e) {
-				return null;
-			}
+		public BigDecimal valorCodice(ContextoEntry contexto, int indice) {
+			LegalMonetaryTotalType importes = importesAdjudicacion(contexto, indice);
+			return importes != null ? valor(importes.getPayableAmount()) : null;
 		}
 	};
 
@@ -327,15 +220,19 @@ public enum DatosResultados {
 
 	private final String titulo;
 	private final EnumFormatos formato;
+	// Elementos CODICE que lee valorCodice (ver EnlazadorStax)
+	private final String[] elementos;
 
-	DatosResultados(String name, EnumFormatos format) {
+	DatosResultados(String name, EnumFormatos format, String... elementos) {
 		this.titulo = name;
 		this.formato = format;
+		this.elementos = elementos;
 	}
 	
-	DatosResultados(String name) {
+	DatosResultados(String name, String... elementos) {
 		this.titulo = name;
 		this.formato = EnumFormatos.TEXTO;
+		this.elementos = elementos;
 	}
 
 	public String getTiulo() {
@@ -345,35 +242,48 @@ public enum DatosResultados {
 	public EnumFormatos getFormato() {
 		return formato;
 	}
-
-	public abstract Object valorCodice(ContractFolderStatusType contractFolder, int indiceTenderResult);
-
+	
 	/**
-	 * Método que devuleve el procurementproject asociado al resultado que existe en
-	 * el lugar indicado
-	 * 
-	 * @param contractFolder
-	 * @param indiceTenderResult
-	 * @return Se devuelve null en caso de que no exista
+	 * Nombres de los elementos CODICE que recorre valorCodice, para deserializar
+	 * solo los que necesitan las columnas seleccionadas.
 	 */
-	private static ProcurementProjectLotType getProcurementProjectLot(ContractFolderStatusType contractFolder, int indiceTenderResult) {
-		try {
+	public String[] getElementos() {
+		return elementos;
+	}
 
-			String numeroLote = contractFolder.getTenderResult().get(indiceTenderResult).getAwardedTenderedProject()
-					.getProcurementProjectLotID().getValue();
+	public abstract Object valorCodice(ContextoEntry contexto, int indiceTenderResult);
 
-			// se busca el procurementprojectlot
-			for (ProcurementProjectLotType procurementProjectLotType : contractFolder.getProcurementProjectLot()) {
-				if (procurementProjectLotType.getID().getValue().compareTo(numeroLote) == 0) {
-					return procurementProjectLotType;
-				}
-			}
-			return null;
-		}
-		catch (Exception e) {
-			return null;
-		}
+	public Object valorCodice(ContractFolderStatusType contractFolder, int indiceTenderResult) {
+		return valorCodice(new ContextoEntry(contractFolder), indiceTenderResult);
+	}
+
+	private static TenderedProjectType proyectoAdjudicado(ContextoEntry contexto, int indiceTenderResult) {
+		TenderResultType resultado = contexto.getTenderResult(indiceTenderResult);
+		return resultado != null ? resultado.getAwardedTenderedProject() : null;
+	}
 
+	private static LegalMonetaryTotalType importesAdjudicacion(ContextoEntry contexto, int indiceTenderResult) {
+		TenderedProjectType proyectoAdjudicado = proyectoAdjudicado(contexto, indiceTenderResult);
+		return proyectoAdjudicado != null ? proyectoAdjudicado.getLegalMonetaryTotal() : null;
+	}
+
+	private static ContractType contrato(ContextoEntry contexto, int indiceTenderResult) {
+		TenderResultType resultado = contexto.getTenderResult(indiceTenderResult);
+		return resultado != null ? resultado.getContract() : null;
+	}
+
+	private static PartyType adjudicatario(ContextoEntry contexto, int indiceTenderResult) {
+		TenderResultType resultado = contexto.getTenderResult(indiceTenderResult);
+		return resultado != null ? resultado.getWinningParty() : null;
+	}
+
+	/**
+	 * ID del primer identificador del adjudicatario, o null si no existe.
+	 */
+	private static IDType idAdjudicatario(ContextoEntry contexto, int indiceTenderResult) {
+		PartyType adjudicatario = adjudicatario(contexto, indiceTenderResult);
+		PartyIdentificationType identificacion = adjudicatario != null ? primero(adjudicatario.getPartyIdentification()) : null;
+		return identificacion != null ? identificacion.getID() : null;
 	}
 
 }
@@ -0,0 +1,316 @@
+/*******************************************************************************
+ * Copyright 2021 Subdirección General de Coordinación de la Contratación Electronica - Dirección General Del Patrimonio Del Estado - Subsecretaría de Hacienda - Ministerio de Hacienda - Administración General del Estado - Gobierno de España
+ * 
+ * Licencia con arreglo a la EUPL, Versión 1.2 o –en cuanto sean aprobadas por la Comisión Europea– versiones posteriores de la EUPL (la «Licencia»);
+ * Solo podrá usarse esta obra si se respeta la Licencia.
+ * Puede obtenerse una copia de la Licencia en:
+ * 
+ * https://joinup.ec.europa.eu/software/page/eupl
+ * 
+ * Salvo cuando lo exija la legislación aplicable o se acuerde por escrito, el programa distribuido con arreglo a la Licencia se distribuye «TAL CUAL», SIN GARANTÍAS NI CONDICIONES DE NINGÚN TIPO, ni expresas ni implícitas.
+ * Véase la Licencia en el idioma concreto que rige los permisos y limitaciones que establece la Licencia.
+ ******************************************************************************/
+package es.age.dgpe.placsp.risp.parser.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.ss.util.CellReference;
+
+/**
+ * Escribe las filas de datos de una hoja directamente como XML de OOXML (elementos row de
+ * sheetData), sin crear objetos Row ni Cell de POI.
+ *
+ * El XML es el mismo que generaria SXSSF: textos inline (inlineStr), numeros con
+ * Double.toString y el indice de estilo de cada celda. Como las filas de las distintas hojas
+ * llegan intercaladas, cada hoja se va escribiendo en su fichero temporal, en UTF-8; al
+ * guardar el libro, {@link #insertar(InputStream, OutputStream)} lo coloca dentro del
+ * sheetN.xml que genera POI con la fila de titulos y ajusta su dimension.
+ */
+public class EscritorHojaXml {
+
+	private static final int TAMANO_BUFFER = 1 << 16;
+	// Sitio libre que se garantiza antes de escribir cada parte de una celda
+	private static final int MARGEN = 128;
+	private static final int MAX_LONGITUD_TEXTO = SpreadsheetVersion.EXCEL2007.getMaxTextLength();
+
+	private static final byte[] INICIO_FILA = ascii("<row r=\"");
+	private static final byte[] FIN_INICIO_FILA = ascii("\">\n");
+	private static final byte[] FIN_FILA = ascii("</row>\n");
+	private static final byte[] INICIO_CELDA = ascii("<c r=\"");
+	private static final byte[] ESTILO = ascii(" s=\"");
+	private static final byte[] NUMERO = ascii(" t=\"n\"><v>");
+	private static final byte[] TEXTO = ascii(" t=\"inlineStr\"><is><t");
+	private static final byte[] ESPACIOS = ascii(" xml:space=\"preserve\"");
+	private static final byte[] FIN_TEXTO = ascii("</t></is></c>");
+	private static final byte[] BOOLEANO_CIERTO = ascii(" t=\"b\"><v>1</v></c>");
+	private static final byte[] BOOLEANO_FALSO = ascii(" t=\"b\"><v>0</v></c>");
+	private static final byte[] FIN_VALOR = ascii("</v></c>");
+	private static final byte[] VACIA = ascii("></c>");
+	private static final byte[] MENOR = ascii("&lt;");
+	private static final byte[] MAYOR = ascii("&gt;");
+	private static final byte[] AMPERSAND = ascii("&amp;");
+	private static final byte[] COMILLAS = ascii("&quot;");
+	private static final byte[] SALTO_LINEA = ascii("&#xa;");
+	private static final byte[] RETORNO_CARRO = ascii("&#xd;");
+	private static final byte[] TABULADOR = ascii("&#x9;");
+	private static final byte[] ESPACIO_DURO = ascii("&#xa0;");
+
+	private final File temporal;
+	private final OutputStream salida;
+	private final byte[] buffer = new byte[TAMANO_BUFFER];
+	private int posicion = 0;
+	// Numero de fila de Excel (desde 1) de la ultima fila escrita
+	private int ultimaFila;
+	private final int filasPrevias;
+	private int maxColumnas = 0;
+	// Nombre de cada columna (A, B, ..., AA) en ASCII, calculado la primera vez que se usa
+	private byte[][] nombresColumnas = new byte[0][];
+	private final byte[] digitosFila = new byte[10];
+	private int inicioDigitosFila;
+
+	/**
+	 * @param filasPrevias Filas que escribe POI antes de las de datos (la de titulos)
+	 */
+	public EscritorHojaXml(int filasPrevias) throws IOException {
+		this.filasPrevias = filasPrevias;
+		this.ultimaFila = filasPrevias;
+		this.temporal = File.createTempFile("placsp_hoja_", ".xml");
+		this.salida = new FileOutputStream(temporal);
+	}
+
+	/**
+	 * Escribe la fila a continuacion de la ultima.
+	 *
+	 * @throws IllegalArgumentException Si un texto supera la longitud maxima de una celda,
+	 * igual que Cell.setCellValue
+	 */
+	public void escribir(FilaExcel fila) throws IOException {
+		int numeroFila = ++ultimaFila;
+		inicioDigitosFila = digitosFila.length;
+		do {
+			digitosFila[--inicioDigitosFila] = (byte) ('0' + numeroFila % 10);
+			numeroFila /= 10;
+		} while (numeroFila > 0);
+
+		reservar(MARGEN);
+		anadir(INICIO_FILA);
+		anadir(digitosFila, inicioDigitosFila, digitosFila.length - inicioDigitosFila);
+		anadir(FIN_INICIO_FILA);
+		int columnas = fila.getColumnas();
+		for (int i = 0; i < columnas; i++) {
+			escribirCelda(fila, i);
+		}
+		reservar(MARGEN);
+		anadir(FIN_FILA);
+		maxColumnas = Math.max(maxColumnas, columnas);
+	}
+
+	private void escribirCelda(FilaExcel fila, int columna) throws IOException {
+		reservar(MARGEN);
+		anadir(INICIO_CELDA);
+		anadir(nombreColumna(columna));
+		anadir(digitosFila, inicioDigitosFila, digitosFila.length - inicioDigitosFila);
+		buffer[posicion++] = '"';
+		CellStyle estilo = fila.getEstilo(columna);
+		if (estilo != null && estilo.getIndex() != 0) {
+			anadir(ESTILO);
+			anadirEntero(estilo.getIndex() & 0xFFFF);
+			buffer[posicion++] = '"';
+		}
+
+		if (fila.esNumero(columna)) {
+			anadir(NUMERO);
+			anadirAscii(Double.toString(fila.getNumero(columna)));
+			anadir(FIN_VALOR);
+			return;
+		}
+		Object valor = fila.getValor(columna);
+		if (valor instanceof String) {
+			String texto = (String) valor;
+			if (texto.length() > MAX_LONGITUD_TEXTO) {
+				throw new IllegalArgumentException("The maximum length of cell contents (text) is "
+						+ MAX_LONGITUD_TEXTO + " characters");
+			}
+			anadir(TEXTO);
+			if (!texto.isEmpty() && (Character.isWhitespace(texto.charAt(0))
+					|| Character.isWhitespace(texto.charAt(texto.length() - 1)))) {
+				anadir(ESPACIOS);
+			}
+			buffer[posicion++] = '>';
+			anadirTexto(texto);
+			reservar(MARGEN);
+			anadir(FIN_TEXTO);
+		} else if (valor instanceof Boolean) {
+			anadir((Boolean) valor ? BOOLEANO_CIERTO : BOOLEANO_FALSO);
+		} else {
+			anadir(VACIA);
+		}
+	}
+
+	/**
+	 * Texto escapado y codificado en UTF-8 con las mismas reglas que SXSSF: los caracteres de
+	 * control (salvo tabulador y saltos de linea), U+FFFE, U+FFFF y los surrogates sueltos se
+	 * sustituyen por '?'.
+	 */
+	private void anadirTexto(String texto) throws IOException {
+		int longitud = texto.length();
+		for (int i = 0; i < longitud; i++) {
+			if (posicion > TAMANO_BUFFER - 8) {
+				vaciar();
+			}
+			char c = texto.charAt(i);
+			if (c < 0x80) {
+				switch (c) {
+					case '<': anadir(MENOR); break;
+					case '>': anadir(MAYOR); break;
+					case '&': anadir(AMPERSAND); break;
+					case '"': anadir(COMILLAS); break;
+					case '\n': anadir(SALTO_LINEA); break;
+					case '\r': anadir(RETORNO_CARRO); break;
+					case '\t': anadir(TABULADOR); break;
+					default: buffer[posicion++] = (byte) (c < ' ' ? '?' : c);
+				}
+			} else if (c < 0x800) {
+				if (c == '\u00A0') {
+					anadir(ESPACIO_DURO);
+				} else {
+					buffer[posicion++] = (byte) (0xC0 | (c >> 6));
+					buffer[posicion++] = (byte) (0x80 | (c & 0x3F));
+				}
+			} else if (c >= '\uFFFE') {
+				// U+FFFE y U+FFFF no son caracteres validos en XML: igual que los de control
+				buffer[posicion++] = '?';
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < longitud && Character.isLowSurrogate(texto.charAt(i + 1))) {
+					int codigo = Character.toCodePoint(c, texto.charAt(++i));
+					buffer[posicion++] = (byte) (0xF0 | (codigo >> 18));
+					buffer[posicion++] = (byte) (0x80 | ((codigo >> 12) & 0x3F));
+					buffer[posicion++] = (byte) (0x80 | ((codigo >> 6) & 0x3F));
+					buffer[posicion++] = (byte) (0x80 | (codigo & 0x3F));
+				} else {
+					buffer[posicion++] = '?';
+				}
+			} else {
+				buffer[posicion++] = (byte) (0xE0 | (c >> 12));
+				buffer[posicion++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[posicion++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+	}
+
+	/**
+	 * Termina el fichero temporal. Despues ya no se pueden escribir filas.
+	 */
+	public void cerrar() throws IOException {
+		vaciar();
+		salida.close();
+	}
+
+	/**
+	 * Copia en salida el sheetN.xml que ha generado POI para la hoja (con la fila de
+	 * titulos), con las filas escritas al final de sheetData y la dimension ampliada a ellas.
+	 */
+	public void insertar(InputStream hojaPoi, OutputStream salidaLibro) throws IOException {
+		String xml = new String(hojaPoi.readAllBytes(), StandardCharsets.UTF_8);
+		if (ultimaFila > filasPrevias) {
+			xml = ampliarDimension(xml);
+		}
+		int fin = xml.indexOf("</sheetData>");
+		String antes;
+		String despues;
+		if (fin >= 0) {
+			antes = xml.substring(0, fin);
+			despues = xml.substring(fin);
+		} else {
+			// Hoja sin ninguna fila: <sheetData/>
+			int vacia = xml.indexOf("<sheetData/>");
+			antes = xml.substring(0, vacia) + "<sheetData>";
+			despues = "</sheetData>" + xml.substring(vacia + "<sheetData/>".length());
+		}
+		salidaLibro.write(antes.getBytes(StandardCharsets.UTF_8));
+		Files.copy(temporal.toPath(), salidaLibro);
+		salidaLibro.write(despues.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Cierra (si sigue abierto) y borra el fichero temporal. Se puede llamar aunque la hoja
+	 * no se haya llegado a escribir.
+	 */
+	public void borrar() {
+		try {
+			salida.close();
+		} catch (IOException e) {
+			// El fichero se borra igualmente
+		}
+		temporal.delete();
+	}
+
+	private String ampliarDimension(String xml) {
+		String prefijo = "<dimension ref=\"";
+		int inicio = xml.indexOf(prefijo);
+		if (inicio < 0) {
+			return xml;
+		}
+		inicio += prefijo.length();
+		int fin = xml.indexOf('"', inicio);
+		CellRangeAddress rango = CellRangeAddress.valueOf(xml.substring(inicio, fin));
+		CellRangeAddress ampliado = new CellRangeAddress(rango.getFirstRow(), Math.max(rango.getLastRow(), ultimaFila - 1),
+				rango.getFirstColumn(), Math.max(rango.getLastColumn(), maxColumnas - 1));
+		return xml.substring(0, inicio) + ampliado.formatAsString() + xml.substring(fin);
+	}
+
+	private byte[] nombreColumna(int columna) {
+		if (columna >= nombresColumnas.length) {
+			int anteriores = nombresColumnas.length;
+			nombresColumnas = Arrays.copyOf(nombresColumnas, Math.max(columna + 1, anteriores * 2));
+			for (int i = anteriores; i < nombresColumnas.length; i++) {
+				nombresColumnas[i] = ascii(CellReference.convertNumToColString(i));
+			}
+		}
+		return nombresColumnas[columna];
+	}
+
+	private void anadirEntero(int valor) {
+		anadirAscii(Integer.toString(valor));
+	}
+
+	private void anadirAscii(String texto) {
+		for (int i = 0; i < texto.length(); i++) {
+			buffer[posicion++] = (byte) texto.charAt(i);
+		}
+	}
+
+	private void anadir(byte[] bytes) {
+		anadir(bytes, 0, bytes.length);
+	}
+
+	private void anadir(byte[] bytes, int desde, int longitud) {
+		System.arraycopy(bytes, desde, buffer, posicion, longitud);
+		posicion += longitud;
+	}
+
+	private void reservar(int bytes) throws IOException {
+		if (posicion > TAMANO_BUFFER - bytes) {
+			vaciar();
+		}
+	}
+
+	private void vaciar() throws IOException {
+		salida.write(buffer, 0, posicion);
+		posicion = 0;
+	}
+
+	private static byte[] ascii(String texto) {
+		return texto.getBytes(StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright 2021 Subdirección General de Coordinación de la Contratación Electronica - Dirección General Del Patrimonio Del Estado - Subsecretaría de Hacienda - Ministerio de Hacienda - Administración General del Estado - Gobierno de España
+ * 
+ * Licencia con arreglo a la EUPL, Versión 1.2 o –en cuanto sean aprobadas por la Comisión Europea– versiones posteriores de la EUPL (la «Licencia»);
+ * Solo podrá usarse esta obra si se respeta la Licencia.
+ * Puede obtenerse una copia de la Licencia en:
+ * 
+ * https://joinup.ec.europa.eu/software/page/eupl
+ * 
+ * Salvo cuando lo exija la legislación aplicable o se acuerde por escrito, el programa distribuido con arreglo a la Licencia se distribuye «TAL CUAL», SIN GARANTÍAS NI CONDICIONES DE NINGÚN TIPO, ni expresas ni implícitas.
+ * Véase la Licencia en el idioma concreto que rige los permisos y limitaciones que establece la Licencia.
+ ******************************************************************************/
+package es.age.dgpe.placsp.risp.parser.model;
+
+import java.time.LocalDateTime;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+/**
+ * Conversion de fechas al numero de serie de Excel (dias desde el 31/12/1899 y fraccion
+ * del dia, sistema de fechas 1900), el mismo valor que calcula POI en
+ * Cell.setCellValue(LocalDateTime) pero sin crear objetos: a partir de los campos de la
+ * fecha o de un instante y su desplazamiento horario.
+ *
+ * Las fechas sin zona horaria (las de los documentos CODICE) son la medianoche en la zona
+ * por defecto, que en algunas zonas y anos no existe por un cambio de hora: se calculan
+ * con GregorianCalendar una vez por dia y se guardan en una cache.
+ */
+public final class FechasExcel {
+
+	/**
+	 * Valor de las fechas anteriores a 1900, que Excel no puede representar (como
+	 * DateUtil.getExcelDate).
+	 */
+	public static final double FECHA_NO_VALIDA = -1;
+
+	private static final long MILISEGUNDOS_DIA = 86_400_000L;
+	// Dia 1 de Excel (01/01/1900) contado desde epoch
+	private static final long DIA_1_EXCEL = -25_567L;
+	// Dias desde el 01/01/0000 hasta epoch, como LocalDate
+	private static final long DIAS_0000_A_1970 = 719_528L;
+
+	// Dias distintos que caben en la cache de medianoches (potencia de 2)
+	private static final int TAMANO_CACHE = 1 << 12;
+	// Medianoche de las fechas sin zona horaria en la zona por defecto, indexada por el dia:
+	// en los 32 bits altos el dia (desde epoch) y en los bajos los milisegundos del dia a los
+	// que corresponde, con el bit 31 como marca de ocupado. Se comparte entre hilos
+	private static final AtomicLongArray MEDIANOCHES = new AtomicLongArray(TAMANO_CACHE);
+	private static final long OCUPADO = 1L << 31;
+
+	private FechasExcel() {
+	}
+
+	/**
+	 * Serie de una fecha local dada por sus campos, que deben ser validos (mes 1-12,
+	 * dia del mes existente, hora 0-23, minuto y segundo 0-59).
+	 */
+	public static double serial(int anio, int mes, int dia, int hora, int minuto, int segundo, int milisegundo) {
+		long milisegundosDia = ((hora * 60L + minuto) * 60L + segundo) * 1000L + milisegundo;
+		return serialDia(diasDesdeEpoch(anio, mes, dia), milisegundosDia);
+	}
+
+	/**
+	 * Serie de un instante visto con un desplazamiento horario.
+	 *
+	 * @param millis Milisegundos desde epoch
+	 * @param desplazamiento Desplazamiento horario en segundos
+	 */
+	public static double serial(long millis, int desplazamiento) {
+		long local = millis + desplazamiento * 1000L;
+		return serialDia(Math.floorDiv(local, MILISEGUNDOS_DIA), Math.floorMod(local, MILISEGUNDOS_DIA));
+	}
+
+	/**
+	 * Serie de la fecha y hora local de un calendario (la de
+	 * toZonedDateTime().toLocalDateTime()). Fuera de 1970-2030 los desplazamientos
+	 * horarios de TimeZone y de java.time no siempre coinciden (hora solar local, reglas
+	 * de cambio de hora que TimeZone no puede representar), asi que se usa java.time.
+	 */
+	public static double serial(GregorianCalendar fecha) {
+		if (fecha.get(Calendar.ERA) == GregorianCalendar.BC) {
+			return FECHA_NO_VALIDA;
+		}
+		if (fecha.get(Calendar.YEAR) < 1970 || fecha.get(Calendar.YEAR) > 2030) {
+			return serial(fecha.toZonedDateTime().toLocalDateTime());
+		}
+		return serial(fecha.get(Calendar.YEAR), fecha.get(Calendar.MONTH) + 1, fecha.get(Calendar.DAY_OF_MONTH),
+				fecha.get(Calendar.HOUR_OF_DAY), fecha.get(Calendar.MINUTE), fecha.get(Calendar.SECOND),
+				fecha.get(Calendar.MILLISECOND));
+	}
+
+	/**
+	 * Serie de una fecha del ATOM, la misma que la de su toGregorianCalendar(). Se toman
+	 * directamente sus campos salvo que el calendario tuviera que completarlos o
+	 * normalizarlos: campos de la fecha sin definir o fuera de rango (como 24:00:00), anos
+	 * de mas de nueve cifras o una hora sin zona horaria, que se interpreta en la zona por
+	 * defecto. Una fecha sin hora es la medianoche (ver {@link #medianoche}).
+	 */
+	public static double serial(XMLGregorianCalendar fecha) {
+		int anio = fecha.getYear();
+		int mes = fecha.getMonth();
+		int dia = fecha.getDay();
+		int hora = fecha.getHour();
+		int minuto = fecha.getMinute();
+		int segundo = fecha.getSecond();
+		int milisegundo = fecha.getMillisecond();
+		if (anio == DatatypeConstants.FIELD_UNDEFINED || fecha.getEon() != null
+				|| mes < 1 || mes > 12 || dia < 1 || dia > diasMes(anio, mes)) {
+			return serial(fecha.toGregorianCalendar());
+		}
+		boolean conZona = fecha.getTimezone() != DatatypeConstants.FIELD_UNDEFINED;
+		if (hora == DatatypeConstants.FIELD_UNDEFINED && minuto == DatatypeConstants.FIELD_UNDEFINED
+				&& segundo == DatatypeConstants.FIELD_UNDEFINED) {
+			long dias = diasDesdeEpoch(anio, mes, dia);
+			return conZona ? serialDia(dias, 0) : medianoche(fecha, dias);
+		}
+		if (!conZona || hora < 0 || hora > 23 || minuto < 0 || minuto > 59 || segundo < 0 || segundo > 59) {
+			return serial(fecha.toGregorianCalendar());
+		}
+		return serial(anio, mes, dia, hora, minuto, segundo, Math.max(milisegundo, 0));
+	}
+
+	/**
+	 * Serie de la medianoche de una fecha sin zona horaria en la zona por defecto, que
+	 * casi siempre es la 00:00 pero puede ser la 01:00 si ese dia se adelanto la hora a
+	 * medianoche.
+	 */
+	private static double medianoche(XMLGregorianCalendar fecha, long dias) {
+		int posicion = (int) dias & (TAMANO_CACHE - 1);
+		long guardada = MEDIANOCHES.get(posicion);
+		if (guardada != 0 && (int) (guardada >>> 32) == (int) dias) {
+			return serialDia(dias, guardada & ~OCUPADO & 0xFFFF_FFFFL);
+		}
+		LocalDateTime local = fecha.toGregorianCalendar().toZonedDateTime().toLocalDateTime();
+		// Solo se guardan los dias en los que la medianoche no pasa a otro dia
+		if (local.getYear() == fecha.getYear() && local.getMonthValue() == fecha.getMonth()
+				&& local.getDayOfMonth() == fecha.getDay()) {
+			long milisegundosDia = local.toLocalTime().toNanoOfDay() / 1_000_000;
+			MEDIANOCHES.set(posicion, (dias << 32) | OCUPADO | milisegundosDia);
+		}
+		return serial(local);
+	}
+
+	private static double serial(LocalDateTime local) {
+		return serial(local.getYear(), local.getMonthValue(), local.getDayOfMonth(), local.getHour(),
+				local.getMinute(), local.getSecond(), local.getNano() / 1_000_000);
+	}
+
+	private static double serialDia(long diasEpoch, long milisegundosDia) {
+		if (diasEpoch < DIA_1_EXCEL) {
+			return FECHA_NO_VALIDA;
+		}
+		// Mismas operaciones que DateUtil.getExcelDate, para obtener el mismo double
+		double valor = milisegundosDia / (double) MILISEGUNDOS_DIA + (double) (diasEpoch - DIA_1_EXCEL + 1);
+		if (valor >= 60) {
+			// Excel cuenta el 29/02/1900, que no existio
+			valor++;
+		}
+		return valor;
+	}
+
+	/**
+	 * Dias desde epoch de una fecha del calendario gregoriano (como LocalDate.toEpochDay).
+	 */
+	private static long diasDesdeEpoch(int anio, int mes, int dia) {
+		long y = anio;
+		long total = 365 * y;
+		if (y >= 0) {
+			total += (y + 3) / 4 - (y + 99) / 100 + (y + 399) / 400;
+		} else {
+			total -= y / -4 - y / -100 + y / -400;
+		}
+		total += (367 * mes - 362) / 12;
+		total += dia - 1;
+		if (mes > 2) {
+			total--;
+			if (!bisiesto(anio)) {
+				total--;
+			}
+		}
+		return total - DIAS_0000_A_1970;
+	}
+
+	private static int diasMes(int anio, int mes) {
+		switch (mes) {
+			case 2:
+				return bisiesto(anio) ? 29 : 28;
+			case 4:
+			case 6:
+			case 9:
+			case 11:
+				return 30;
+			default:
+				return 31;
+		}
+	}
+
+	private static boolean bisiesto(long anio) {
+		return (anio & 3) == 0 && (anio % 100 != 0 || anio % 400 == 0);
+	}
+}
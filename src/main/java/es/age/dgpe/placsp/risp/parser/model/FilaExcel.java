@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright 2021 Subdirección General de Coordinación de la Contratación Electronica - Dirección General Del Patrimonio Del Estado - Subsecretaría de Hacienda - Ministerio de Hacienda - Administración General del Estado - Gobierno de España
+ * 
+ * Licencia con arreglo a la EUPL, Versión 1.2 o –en cuanto sean aprobadas por la Comisión Europea– versiones posteriores de la EUPL (la «Licencia»);
+ * Solo podrá usarse esta obra si se respeta la Licencia.
+ * Puede obtenerse una copia de la Licencia en:
+ * 
+ * https://joinup.ec.europa.eu/software/page/eupl
+ * 
+ * Salvo cuando lo exija la legislación aplicable o se acuerde por escrito, el programa distribuido con arreglo a la Licencia se distribuye «TAL CUAL», SIN GARANTÍAS NI CONDICIONES DE NINGÚN TIPO, ni expresas ni implícitas.
+ * Véase la Licencia en el idioma concreto que rige los permisos y limitaciones que establece la Licencia.
+ ******************************************************************************/
+package es.age.dgpe.placsp.risp.parser.model;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.GregorianCalendar;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+
+/**
+ * Fila de una hoja ya calculada (valores y estilos de sus celdas), pendiente de escribir.
+ *
+ * Permite calcular los valores de las columnas fuera del hilo que escribe el Excel:
+ * solo {@link EscritorHojaXml} la escribe. Los estilos son los de SpreeadSheetManager,
+ * creados al inicio y de solo lectura.
+ *
+ * Los importes y las fechas se guardan como double (las fechas, como numero de serie de
+ * Excel, ver FechasExcel) en un array aparte, sin crear un objeto por celda.
+ */
+public class FilaExcel {
+
+	// Valor de las celdas numericas, cuyo numero esta en numeros
+	private static final Object NUMERO = new Object();
+
+	private final String hoja;
+	private Object[] valores;
+	private double[] numeros;
+	private CellStyle[] estilos;
+	private int columnas = 0;
+	private int celdasCabecera = 0;
+
+	/**
+	 * @param hoja Nombre de la hoja en la que se escribe la fila
+	 * @param capacidad Numero de celdas previsto
+	 */
+	public FilaExcel(String hoja, int capacidad) {
+		this.hoja = hoja;
+		this.valores = new Object[Math.max(1, capacidad)];
+		this.numeros = new double[valores.length];
+		this.estilos = new CellStyle[valores.length];
+	}
+
+	/**
+	 * Copia de otra fila, con sitio para las celdas que se anadiran despues. Los valores
+	 * (String o Boolean) son inmutables y se comparten.
+	 *
+	 * @param celdasExtra Numero de celdas previsto ademas de las de la otra fila
+	 */
+	public FilaExcel(FilaExcel otra, int celdasExtra) {
+		this.hoja = otra.hoja;
+		this.valores = Arrays.copyOf(otra.valores, Math.max(1, otra.columnas + celdasExtra));
+		this.numeros = Arrays.copyOf(otra.numeros, valores.length);
+		this.estilos = Arrays.copyOf(otra.estilos, valores.length);
+		this.columnas = otra.columnas;
+		this.celdasCabecera = otra.celdasCabecera;
+	}
+
+	public String getHoja() {
+		return hoja;
+	}
+
+	public int getColumnas() {
+		return columnas;
+	}
+
+	/**
+	 * Valor de una celda de texto o booleana; null en las celdas vacias y en las numericas.
+	 */
+	public Object getValor(int columna) {
+		return valores[columna] == NUMERO ? null : valores[columna];
+	}
+
+	/**
+	 * Indica si la celda es numerica (un importe, una cantidad o una fecha).
+	 */
+	public boolean esNumero(int columna) {
+		return valores[columna] == NUMERO;
+	}
+
+	/**
+	 * Valor de una celda numerica.
+	 */
+	public double getNumero(int columna) {
+		return numeros[columna];
+	}
+
+	public CellStyle getEstilo(int columna) {
+		return estilos[columna];
+	}
+
+	/**
+	 * Numero de celdas de cabecera (identificador, enlace, fecha y estado), que dependen
+	 * de la entry y de su deleted-entry pero no de las columnas seleccionadas.
+	 */
+	public int getCeldasCabecera() {
+		return celdasCabecera;
+	}
+
+	/**
+	 * Marca las celdas anadidas hasta ahora como la cabecera de la fila.
+	 */
+	public void marcarCabecera() {
+		celdasCabecera = columnas;
+	}
+
+	/**
+	 * Anade una celda de texto o booleana (String o Boolean; null deja la celda vacia).
+	 */
+	public void anadir(Object valor, CellStyle estilo) {
+		if (columnas == valores.length) {
+			ampliar();
+		}
+		valores[columnas] = valor;
+		estilos[columnas] = estilo;
+		columnas++;
+	}
+
+	/**
+	 * Anade una celda numerica. Las fechas son su numero de serie de Excel (ver
+	 * FechasExcel) con un estilo de fecha.
+	 */
+	public void anadirNumero(double numero, CellStyle estilo) {
+		if (columnas == valores.length) {
+			ampliar();
+		}
+		valores[columnas] = NUMERO;
+		numeros[columnas] = numero;
+		estilos[columnas] = estilo;
+		columnas++;
+	}
+
+	/**
+	 * Anade una copia de una celda de otra fila.
+	 */
+	public void anadirCopia(FilaExcel otra, int columna) {
+		if (otra.esNumero(columna)) {
+			anadirNumero(otra.numeros[columna], otra.estilos[columna]);
+		} else {
+			anadir(otra.valores[columna], otra.estilos[columna]);
+		}
+	}
+
+	/**
+	 * Anade una celda con el valor devuelto por valorCodice y el estilo de su formato.
+	 * Los tipos no soportados dejan la celda vacia.
+	 */
+	public void anadirDato(Object datoCodice, EnumFormatos formato) {
+		CellStyle estilo = SpreeadSheetManager.getCellStyleFormato(formato);
+		if (datoCodice instanceof BigDecimal) {
+			anadirNumero(((BigDecimal) datoCodice).doubleValue(), estilo);
+		} else if (datoCodice instanceof XMLGregorianCalendar) {
+			anadirNumero(FechasExcel.serial((XMLGregorianCalendar) datoCodice), estilo);
+		} else if (datoCodice instanceof GregorianCalendar) {
+			anadirNumero(FechasExcel.serial((GregorianCalendar) datoCodice), estilo);
+		} else if (datoCodice instanceof String || datoCodice instanceof Boolean) {
+			anadir(datoCodice, estilo);
+		} else {
+			anadir(null, estilo);
+		}
+	}
+
+	private void ampliar() {
+		int capacidad = valores.length * 2;
+		valores = Arrays.copyOf(valores, capacidad);
+		numeros = Arrays.copyOf(numeros, capacidad);
+		estilos = Arrays.copyOf(estilos, capacidad);
+	}
+}
@@ -0,0 +1,266 @@
+/*******************************************************************************
+ * Copyright 2021 Subdirección General de Coordinación de la Contratación Electronica - Dirección General Del Patrimonio Del Estado - Subsecretaría de Hacienda - Ministerio de Hacienda - Administración General del Estado - Gobierno de España
+ * 
+ * Licencia con arreglo a la EUPL, Versión 1.2 o –en cuanto sean aprobadas por la Comisión Europea– versiones posteriores de la EUPL (la «Licencia»);
+ * Solo podrá usarse esta obra si se respeta la Licencia.
+ * Puede obtenerse una copia de la Licencia en:
+ * 
+ * https://joinup.ec.europa.eu/software/page/eupl
+ * 
+ * Salvo cuando lo exija la legislación aplicable o se acuerde por escrito, el programa distribuido con arreglo a la Licencia se distribuye «TAL CUAL», SIN GARANTÍAS NI CONDICIONES DE NINGÚN TIPO, ni expresas ni implícitas.
+ * Véase la Licencia en el idioma concreto que rige los permisos y limitaciones que establece la Licencia.
+ ******************************************************************************/
+package es.age.dgpe.placsp.risp.parser.model;
+
+import java.math.BigDecimal;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import javax.xml.datatype.DatatypeConstants;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+import org.dgpe.codice.common.caclib.CountryType;
+import org.dgpe.codice.common.caclib.LocationType;
+import org.dgpe.codice.common.caclib.PartyIdentificationType;
+import org.dgpe.codice.common.caclib.PartyNameType;
+import org.dgpe.codice.common.caclib.PartyType;
+import org.dgpe.codice.common.caclib.PeriodType;
+import org.dgpe.codice.common.caclib.ProcurementProjectType;
+import org.oasis.ubl.common.udt.DateType;
+import org.oasis.ubl.common.udt.IndicatorType;
+
+import ext.place.codice.common.caclib.AdditionalPublicationDocumentReferenceType;
+import ext.place.codice.common.caclib.AdditionalPublicationStatusType;
+import ext.place.codice.common.caclib.LocatedContractingPartyType;
+import ext.place.codice.common.caclib.NoticeInfoType;
+import un.unece.uncefact.data.specification.corecomponenttypeschemamodule._2.AmountType;
+import un.unece.uncefact.data.specification.corecomponenttypeschemamodule._2.CodeType;
+import un.unece.uncefact.data.specification.corecomponenttypeschemamodule._2.IdentifierType;
+import un.unece.uncefact.data.specification.corecomponenttypeschemamodule._2.NumericType;
+import un.unece.uncefact.data.specification.corecomponenttypeschemamodule._2.QuantityType;
+import un.unece.uncefact.data.specification.corecomponenttypeschemamodule._2.TextType;
+
+/**
+ * Navegacion sin excepciones por los objetos CODICE de una entry, para los valorCodice
+ * de los enums Datos*.
+ *
+ * Un elemento opcional que no viene en la entry es null (o una lista vacia). Comprobarlo
+ * da el mismo resultado que capturar la NullPointerException o la IndexOutOfBoundsException
+ * al recorrerlo, sin el coste de crearlas: en las entries con pocos datos se lanzaban
+ * varias por columna, y rellenar su traza dominaba el tiempo de extraccion.
+ */
+final class NavegacionCodice {
+
+	private static final String SI = "Sí";
+	private static final String NO = "No";
+
+	private NavegacionCodice() {
+	}
+
+	/**
+	 * Primer elemento de la lista, o null si esta vacia.
+	 */
+	static <T> T primero(List<T> lista) {
+		return lista.isEmpty() ? null : lista.get(0);
+	}
+
+	/**
+	 * Elemento de la lista en la posicion indicada, o null si no existe.
+	 */
+	static <T> T elemento(List<T> lista, int indice) {
+		return indice >= 0 && indice < lista.size() ? lista.get(indice) : null;
+	}
+
+	static String valor(IdentifierType identificador) {
+		return identificador != null ? identificador.getValue() : null;
+	}
+
+	static String valor(CodeType codigo) {
+		return codigo != null ? codigo.getValue() : null;
+	}
+
+	static String valor(TextType texto) {
+		return texto != null ? texto.getValue() : null;
+	}
+
+	static BigDecimal valor(AmountType importe) {
+		return importe != null ? importe.getValue() : null;
+	}
+
+	static BigDecimal valor(QuantityType cantidad) {
+		return cantidad != null ? cantidad.getValue() : null;
+	}
+
+	static BigDecimal valor(NumericType numero) {
+		return numero != null ? numero.getValue() : null;
+	}
+
+	/**
+	 * Fecha de un elemento de tipo fecha, o null si falta el elemento o su valor.
+	 */
+	static XMLGregorianCalendar fecha(DateType fecha) {
+		return fecha != null ? fecha.getValue() : null;
+	}
+
+	/**
+	 * "Si" o "No" segun el indicador, o null si no viene.
+	 */
+	static String siNo(IndicatorType indicador) {
+		if (indicador == null) {
+			return null;
+		}
+		return indicador.isValue() ? SI : NO;
+	}
+
+	static PartyType parte(LocatedContractingPartyType organo) {
+		return organo != null ? organo.getParty() : null;
+	}
+
+	/**
+	 * Primer nombre de la parte, o null.
+	 */
+	static String nombre(PartyType parte) {
+		if (parte == null) {
+			return null;
+		}
+		PartyNameType nombre = primero(parte.getPartyName());
+		return nombre != null ? valor(nombre.getName()) : null;
+	}
+
+	/**
+	 * Valor del ultimo identificador de la parte con el esquema indicado, o "" si no tiene
+	 * ninguno. Si falta la parte, o algun identificador no tiene ID o esquema, null.
+	 */
+	static String identificador(PartyType parte, String esquema) {
+		if (parte == null) {
+			return null;
+		}
+		String valor = "";
+		for (PartyIdentificationType identificacion : parte.getPartyIdentification()) {
+			IdentifierType id = identificacion.getID();
+			if (id == null || id.getSchemeName() == null) {
+				return null;
+			}
+			if (id.getSchemeName().compareTo(esquema) == 0) {
+				valor = id.getValue();
+			}
+		}
+		return valor;
+	}
+
+	/**
+	 * Lugar de ejecucion como "codigo - descripcion": el codigo NUTS y su nombre o, si no
+	 * hay ninguno de los dos, el codigo y el nombre del pais.
+	 */
+	static String lugarEjecucion(ProcurementProjectType proyecto) {
+		LocationType lugar = proyecto != null ? proyecto.getRealizedLocation() : null;
+		String codigo = "";
+		String descripcion = "";
+		if (lugar != null && lugar.getCountrySubentityCode() != null) {
+			codigo = lugar.getCountrySubentityCode().getValue();
+		}
+		if (lugar != null && lugar.getCountrySubentity() != null) {
+			descripcion = lugar.getCountrySubentity().getValue();
+		}
+
+		// Comparacion por referencia, como siempre: solo cuenta como vacio si no habia elemento
+		if (codigo == "" && descripcion == "") {
+			CountryType pais = lugar != null && lugar.getAddress() != null ? lugar.getAddress().getCountry() : null;
+			if (pais != null && pais.getIdentificationCode() != null) {
+				codigo = pais.getIdentificationCode().getValue();
+			}
+			if (pais != null && pais.getName() != null) {
+				descripcion = pais.getName().getValue();
+			}
+		}
+
+		return codigo + " - " + descripcion;
+	}
+
+	/**
+	 * Fecha mas antigua de los documentos publicados de los anuncios que no son anuncio
+	 * previo (DOC_PIN). Un anuncio al que le falta algun dato obligatorio se deja de
+	 * recorrer en ese punto (el ATOM cumple el esquema, pero no los requisitos).
+	 *
+	 * @param soloPerfilContratante Considerar solo los medios de publicacion "Perfil del Contratante"
+	 */
+	static XMLGregorianCalendar primeraPublicacion(List<NoticeInfoType> anuncios, boolean soloPerfilContratante) {
+		XMLGregorianCalendar primeraPublicacion = null;
+		anuncios:
+		for (NoticeInfoType noticeInfo : anuncios) {
+			String tipoAnuncio = valor(noticeInfo.getNoticeTypeCode());
+			if (tipoAnuncio == null) {
+				continue;
+			}
+			if (tipoAnuncio.compareTo("DOC_PIN") == 0) {
+				continue;
+			}
+			for (AdditionalPublicationStatusType additionalPublicationStatus : noticeInfo.getAdditionalPublicationStatus()) {
+				if (soloPerfilContratante) {
+					String medio = valor(additionalPublicationStatus.getPublicationMediaName());
+					if (medio == null) {
+						continue anuncios;
+					}
+					if (!medio.equalsIgnoreCase("Perfil del Contratante")) {
+						continue;
+					}
+				}
+				for (AdditionalPublicationDocumentReferenceType additionalPublicationDocumentReference : additionalPublicationStatus
+						.getAdditionalPublicationDocumentReference()) {
+					XMLGregorianCalendar fecha = fecha(additionalPublicationDocumentReference.getIssueDate());
+					if (fecha == null) {
+						continue anuncios;
+					}
+					if (primeraPublicacion == null || posterior(primeraPublicacion, fecha)) {
+						primeraPublicacion = fecha;
+					}
+				}
+			}
+		}
+		return primeraPublicacion;
+	}
+
+	/**
+	 * Indica si una fecha es posterior a otra, en el mismo orden que sus
+	 * toGregorianCalendar(). Solo se crean los calendarios si una de las fechas tiene zona
+	 * horaria y la otra no, o si no se pueden comparar campo a campo.
+	 */
+	private static boolean posterior(XMLGregorianCalendar fecha, XMLGregorianCalendar otra) {
+		if ((fecha.getTimezone() == DatatypeConstants.FIELD_UNDEFINED) == (otra.getTimezone() == DatatypeConstants.FIELD_UNDEFINED)) {
+			int orden = fecha.compare(otra);
+			if (orden != DatatypeConstants.INDETERMINATE) {
+				return orden == DatatypeConstants.GREATER;
+			}
+		}
+		return fecha.toGregorianCalendar().compareTo(otra.toGregorianCalendar()) > 0;
+	}
+
+	/**
+	 * Fecha y hora de fin de un plazo, en hora de Madrid, o null si falta la fecha o la
+	 * hora (o no son una fecha y hora completas).
+	 */
+	static GregorianCalendar finPlazo(PeriodType plazo) {
+		if (plazo == null || plazo.getEndDate() == null || plazo.getEndTime() == null) {
+			return null;
+		}
+		XMLGregorianCalendar dia = plazo.getEndDate().getValue();
+		XMLGregorianCalendar hora = plazo.getEndTime().getValue();
+		if (dia == null || hora == null) {
+			return null;
+		}
+		try {
+			LocalDate localDate = LocalDate.of(dia.getYear(), dia.getMonth(), dia.getDay());
+			LocalTime localTime = LocalTime.of(hora.getHour(), hora.getMinute(), hora.getSecond());
+			LocalDateTime localDateTime = LocalDateTime.of(localDate, localTime);
+			return GregorianCalendar.from(localDateTime.atZone(ZoneId.of("Europe/Paris")));
+		} catch (DateTimeException e) {
+			// Campos sin definir (DatatypeConstants.FIELD_UNDEFINED) o fuera de rango, como 24:00:00
+			return null;
+		}
+	}
+}
@@ -12,7 +12,18 @@
  ******************************************************************************/
 package es.age.dgpe.placsp.risp.parser.model;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
 
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
@@ -33,6 +44,9 @@ public class SpreeadSheetManager {
 	// Logger eliminado - usamos System.err para errores
 	
 	private SXSSFWorkbook workbook = new SXSSFWorkbook(); 
+	// Filas de datos de cada hoja; el libro de POI solo tiene las filas de titulos
+	private final Map<String, EscritorHojaXml> escritores = new LinkedHashMap<>();
+	private boolean descartado = false;
 	private static CellStyle cellStyleTexto;
 	private static CellStyle cellStyleNumeroEntero;
 	private static CellStyle cellStyleFechaLarga;
@@ -82,7 +96,7 @@ public class SpreeadSheetManager {
 	/**
 	 * Creaciï¿½n de objeto
 	 */
-	public SpreeadSheetManager(boolean dosHojasLicitaciones, boolean hojaEMP, boolean hojaCPM) throws Exception{
+	public SpreeadSheetManager(boolean hojaResultados, boolean hojaEMP, boolean hojaCPM) throws Exception{
 		
 		
 		// Se crea a partir de una plantilla y se aï¿½aden dos hojas
@@ -90,19 +104,27 @@ public class SpreeadSheetManager {
 			String rutaPlantilla = Config.getProperty("open-placsp.template.xlsx");
 			
 			workbook = new SXSSFWorkbook(new XSSFWorkbook( OPCPackage.open(SpreeadSheetManager.class.getResourceAsStream(rutaPlantilla))), 5);
+			int hojasPlantilla = workbook.getNumberOfSheets();
 
-			workbook.createSheet(LICITACIONES);
-			if(dosHojasLicitaciones) {
+			crearHoja(LICITACIONES);
+			if(hojaResultados) {
 				//Se aï¿½aden dos hojas al woorkbook
-				workbook.createSheet(RESULTADOS); 
+				crearHoja(RESULTADOS); 
 			}
 			
 			if (hojaEMP) {
-				workbook.createSheet(EMP);	
+				crearHoja(EMP);	
 			}
 			
 			if (hojaCPM) {
-				workbook.createSheet(CPM);	
+				crearHoja(CPM);	
+			}
+			
+			// De la plantilla solo se usan los estilos y el tema: su hoja de presentacion no se
+			// exporta. Se quita despues de crear las nuevas para que estas no reutilicen su nombre
+			// de parte (sheet1.xml) ni hereden sus relaciones (dibujos, enlaces)
+			for (int i = 0; i < hojasPlantilla; i++) {
+				workbook.removeSheetAt(0);
 			}
 			
 			// Se definen los estilos que se van a utilizar
@@ -146,10 +168,12 @@ public class SpreeadSheetManager {
 		}catch (InvalidFormatException | IOException e) {
 			System.err.println("Se produjo un error al cargar la plantilla");
 			e.printStackTrace();
+			descartar();
 			throw e;
 		}catch (Exception e) {
 			System.err.println("Se produjo un error al cargar la plantilla");
 			e.printStackTrace();
+			descartar();
 			throw e;
 		}
 
@@ -176,8 +200,85 @@ public class SpreeadSheetManager {
 		}
 	}
 	
+	private void crearHoja(String nombre) throws IOException {
+		workbook.createSheet(nombre);
+		escritores.put(nombre, new EscritorHojaXml(1));
+	}
+
+	/**
+	 * Escritor de las filas de datos de una hoja (las que siguen a la de titulos)
+	 */
+	public EscritorHojaXml getEscritor(String hoja) {
+		return escritores.get(hoja);
+	}
+
+	/**
+	 * Escribe el libro en rutaSalida y libera los temporales. POI genera el libro sin las
+	 * filas de datos (estilos, propiedades, hojas con su fila de titulos) y, al copiarlo a
+	 * la salida, las filas de cada hoja se insertan en su sheetN.xml.
+	 */
+	public void escribir(String rutaSalida) throws IOException {
+		File esqueleto = File.createTempFile("placsp_libro_", ".xlsx");
+		try {
+			for (EscritorHojaXml escritor : escritores.values()) {
+				escritor.cerrar();
+			}
+			try (FileOutputStream fos = new FileOutputStream(esqueleto)) {
+				workbook.write(fos);
+			}
+
+			// Parte del paquete (xl/worksheets/sheetN.xml) de cada hoja
+			Map<String, EscritorHojaXml> escritoresPorParte = new HashMap<>();
+			for (Map.Entry<String, EscritorHojaXml> hoja : escritores.entrySet()) {
+				String parte = workbook.getXSSFWorkbook().getSheet(hoja.getKey()).getPackagePart().getPartName().getName();
+				escritoresPorParte.put(parte.substring(1), hoja.getValue());
+			}
+
+			try (ZipFile zip = new ZipFile(esqueleto);
+				 ZipOutputStream salida = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(rutaSalida)))) {
+				Enumeration<? extends ZipEntry> entradas = zip.entries();
+				while (entradas.hasMoreElements()) {
+					ZipEntry entrada = entradas.nextElement();
+					salida.putNextEntry(new ZipEntry(entrada.getName()));
+					try (InputStream contenido = zip.getInputStream(entrada)) {
+						EscritorHojaXml escritor = escritoresPorParte.get(entrada.getName());
+						if (escritor != null) {
+							escritor.insertar(contenido, salida);
+						} else {
+							contenido.transferTo(salida);
+						}
+					}
+					salida.closeEntry();
+				}
+			}
+		} finally {
+			descartar();
+			esqueleto.delete();
+		}
+	}
+
+	/**
+	 * Libera los temporales del libro: los de SXSSF y los de las filas de cada hoja. Lo
+	 * llama escribir() y, si la conversion falla antes, quien creo el gestor.
+	 */
+	public void descartar() {
+		if (descartado) {
+			return;
+		}
+		descartado = true;
+		for (EscritorHojaXml escritor : escritores.values()) {
+			escritor.borrar();
+		}
+		workbook.dispose();
+		try {
+			workbook.close();
+		} catch (IOException e) {
+			// Los temporales ya estan borrados
+		}
+	}
+	
 	public void updateColumnsSize() {	
-		for (int i = 1; i < workbook.getNumberOfSheets(); i++) {
+		for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
 			for (int j=0; j < workbook.getSheetAt(i).getRow(0).getLastCellNum(); j++){
 				workbook.getSheetAt(i).setColumnWidth(j,Integer.valueOf(Config.getProperty("open-placsp.template.columnsize"))*256);
 			}
@@ -0,0 +1,61 @@
+/*******************************************************************************
+ * Copyright 2021 Subdirección General de Coordinación de la Contratación Electronica - Dirección General Del Patrimonio Del Estado - Subsecretaría de Hacienda - Ministerio de Hacienda - Administración General del Estado - Gobierno de España
+ * 
+ * Licencia con arreglo a la EUPL, Versión 1.2 o –en cuanto sean aprobadas por la Comisión Europea– versiones posteriores de la EUPL (la «Licencia»);
+ * Solo podrá usarse esta obra si se respeta la Licencia.
+ * Puede obtenerse una copia de la Licencia en:
+ * 
+ * https://joinup.ec.europa.eu/software/page/eupl
+ * 
+ * Salvo cuando lo exija la legislación aplicable o se acuerde por escrito, el programa distribuido con arreglo a la Licencia se distribuye «TAL CUAL», SIN GARANTÍAS NI CONDICIONES DE NINGÚN TIPO, ni expresas ni implícitas.
+ * Véase la Licencia en el idioma concreto que rige los permisos y limitaciones que establece la Licencia.
+ ******************************************************************************/
+package es.age.dgpe.placsp.risp.parser.model;
+
+import java.util.List;
+
+import javax.xml.bind.JAXBElement;
+
+import org.dgpe.codice.common.caclib.TenderResultType;
+import org.w3._2005.atom.EntryType;
+
+import ext.place.codice.common.caclib.ContractFolderStatusType;
+import ext.place.codice.common.caclib.PreliminaryMarketConsultationStatusType;
+
+/**
+ * Tipo de una entry del ATOM, que determina la hoja en la que se vuelca.
+ */
+public enum TipoEntry {
+	LICITACION,
+	EMP,
+	CPM;
+
+	/**
+	 * Codigo de resultado de los encargos a medios propios.
+	 */
+	public static final String RESULT_CODE_EMP = "11";
+
+	/**
+	 * Clasifica una entry ya deserializada. Es equivalente a la comprobacion
+	 * historica (primer elemento "any" y ResultCode del primer TenderResult),
+	 * pero sin provocar excepciones cuando falta algun elemento.
+	 */
+	public static TipoEntry de(EntryType entry) {
+		List<Object> any = entry.getAny();
+		if (any == null || any.isEmpty() || !(any.get(0) instanceof JAXBElement)) {
+			return LICITACION;
+		}
+		Object valor = ((JAXBElement<?>) any.get(0)).getValue();
+		if (valor instanceof PreliminaryMarketConsultationStatusType) {
+			return CPM;
+		}
+		if (valor instanceof ContractFolderStatusType) {
+			List<TenderResultType> resultados = ((ContractFolderStatusType) valor).getTenderResult();
+			if (!resultados.isEmpty() && resultados.get(0) != null && resultados.get(0).getResultCode() != null
+					&& RESULT_CODE_EMP.equals(resultados.get(0).getResultCode().getValue())) {
+				return EMP;
+			}
+		}
+		return LICITACION;
+	}
+}
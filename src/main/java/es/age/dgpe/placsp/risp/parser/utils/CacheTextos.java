@@ -0,0 +1,83 @@
+package es.age.dgpe.placsp.risp.parser.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache acotada de textos ya calculados (texto original -> resultado), que descarta el
+ * usado hace mas tiempo (LRU) cuando se llena.
+ *
+ * Cuenta las consultas y los aciertos, para ver si la capacidad basta: con una tasa de
+ * aciertos baja y la cache llena, los textos que se repiten ya se han descartado cuando
+ * vuelven a aparecer. Es thread-safe.
+ */
+public class CacheTextos {
+
+    private final String nombre;
+    private final int capacidad;
+    private final LinkedHashMap<String, String> textos;
+    private long consultas = 0;
+    private long aciertos = 0;
+
+    /**
+     * @param capacidad Textos que se conservan como mucho (0 = cache desactivada)
+     */
+    public CacheTextos(String nombre, int capacidad) {
+        this.nombre = nombre;
+        this.capacidad = Math.max(capacidad, 0);
+        // Orden de acceso: el primero es el usado hace mas tiempo
+        this.textos = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> masAntiguo) {
+                return size() > CacheTextos.this.capacidad;
+            }
+        };
+    }
+
+    /**
+     * @return El resultado guardado para el texto, o null si no esta
+     */
+    public synchronized String get(String texto) {
+        if (capacidad == 0) {
+            return null;
+        }
+        consultas++;
+        String resultado = textos.get(texto);
+        if (resultado != null) {
+            aciertos++;
+        }
+        return resultado;
+    }
+
+    public synchronized void put(String texto, String resultado) {
+        if (capacidad > 0) {
+            textos.put(texto, resultado);
+        }
+    }
+
+    public synchronized long getConsultas() {
+        return consultas;
+    }
+
+    public synchronized long getAciertos() {
+        return aciertos;
+    }
+
+    public synchronized double getTasaAciertos() {
+        return consultas > 0 ? (double) aciertos / consultas : 0;
+    }
+
+    public synchronized int size() {
+        return textos.size();
+    }
+
+    public int getCapacidad() {
+        return capacidad;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return nombre + ": " + aciertos + " aciertos de " + consultas + " consultas ("
+                + String.format("%.1f", 100 * getTasaAciertos()) + "%), " + textos.size() + " de " + capacidad + " textos";
+    }
+}
@@ -241,6 +241,50 @@ public class EnvConfig {
         return getBoolean("CLI_INCLUIR_CPM", false);
     }
 
+    public static boolean isCliStreaming() {
+        return getBoolean("CLI_STREAMING", false);
+    }
+
+    public static boolean isCliParalelo() {
+        return getBoolean("CLI_PARALELO", false);
+    }
+
+    public static int getCliHilos() {
+        return getInt("CLI_HILOS", 0);
+    }
+
+    public static int getCliLecturaAnticipada() {
+        return getInt("CLI_LECTURA_ANTICIPADA", 0);
+    }
+
+    public static int getCliExtractores() {
+        return getInt("CLI_EXTRACTORES", 0);
+    }
+
+    public static String getCliBinding() {
+        return get("CLI_BINDING", "jaxb");
+    }
+
+    public static boolean isCliComprobarBinding() {
+        return getBoolean("CLI_COMPROBAR_BINDING", false);
+    }
+
+    public static String getCliColumnas() {
+        return get("CLI_COLUMNAS", "");
+    }
+
+    public static boolean isCliIndiceIncremental() {
+        return getBoolean("CLI_INDICE_INCREMENTAL", false);
+    }
+
+    public static boolean isCliUltimaVersion() {
+        return getBoolean("CLI_ULTIMA_VERSION", false);
+    }
+
+    public static int getCliCacheLimpieza() {
+        return getInt("CLI_CACHE_LIMPIEZA", -1);
+    }
+
     // Configuracion de logging
     public static String getLogDir() {
         return get("LOG_DIR", "logs");
@@ -0,0 +1,69 @@
+package es.age.dgpe.placsp.risp.parser.utils;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Version vectorial (jdk.incubator.vector) de la busqueda del primer caracter que cambia
+ * la limpieza ({@link LimpiadorTexto#prefijoLimpio(String)}): compara tantos caracteres a la
+ * vez como quepan en un registro SIMD de la maquina.
+ *
+ * Solo se carga si la JVM se ha arrancado con --add-modules jdk.incubator.vector; sin el
+ * modulo, LimpiadorTexto hace la misma comprobacion caracter a caracter.
+ */
+final class EscaneoVectorial {
+
+    private static final VectorSpecies<Short> ESPECIE = ShortVector.SPECIES_PREFERRED;
+
+    // Copia de los caracteres del texto; los Strings no se pueden leer como vector directamente
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[LimpiadorTexto.LONGITUD_MAXIMA]);
+
+    private EscaneoVectorial() {
+    }
+
+    /**
+     * Posicion del primer caracter que no es {@link LimpiadorTexto#asciiLimpio(char)} o del
+     * primero de dos espacios seguidos. Solo se miran los primeros
+     * {@link LimpiadorTexto#LONGITUD_MAXIMA} caracteres (un texto mas largo se recorta de
+     * todos modos): si no hay ninguno devuelve la longitud mirada.
+     */
+    static int primerCambio(String texto) {
+        int longitud = Math.min(texto.length(), LimpiadorTexto.LONGITUD_MAXIMA);
+        char[] caracteres = BUFFER.get();
+        texto.getChars(0, longitud, caracteres, 0);
+
+        // Cada vuelta compara tambien el vector desplazado una posicion, para los espacios dobles
+        int i = 0;
+        int limite = ESPECIE.loopBound(longitud - 1);
+        for (; i < limite; i += ESPECIE.length()) {
+            ShortVector actual = ShortVector.fromCharArray(ESPECIE, caracteres, i);
+            ShortVector siguiente = ShortVector.fromCharArray(ESPECIE, caracteres, i + 1);
+            VectorMask<Short> cambia = actual.compare(VectorOperators.LT, (short) ' ')
+                    .or(actual.compare(VectorOperators.GT, (short) '~'))
+                    .or(actual.compare(VectorOperators.EQ, (short) '&'))
+                    .or(actual.compare(VectorOperators.EQ, (short) '+'))
+                    .or(actual.compare(VectorOperators.EQ, (short) '%'))
+                    .or(actual.compare(VectorOperators.EQ, (short) '\\'))
+                    .or(actual.compare(VectorOperators.EQ, (short) ' ')
+                            .and(siguiente.compare(VectorOperators.EQ, (short) ' ')));
+            if (cambia.anyTrue()) {
+                return i + cambia.firstTrue();
+            }
+        }
+
+        boolean espacio = i > 0 && caracteres[i - 1] == ' ';
+        for (; i < longitud; i++) {
+            char c = caracteres[i];
+            if (!LimpiadorTexto.asciiLimpio(c)) {
+                return i;
+            }
+            if (c == ' ' && espacio) {
+                return i - 1;
+            }
+            espacio = c == ' ';
+        }
+        return longitud;
+    }
+}
@@ -0,0 +1,60 @@
+package es.age.dgpe.placsp.risp.parser.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Registro de JAXBContext compartidos por todo el proceso.
+ *
+ * Construir un JAXBContext sobre los paquetes CODICE cuesta varios segundos, pero el
+ * contexto es thread-safe: se crea una sola vez por ruta de contexto y se reutiliza
+ * en todas las conversiones de la JVM. Los Unmarshaller, en cambio, no son thread-safe,
+ * por lo que se entrega uno por hilo y contexto.
+ *
+ * Uso:
+ *   Unmarshaller u = JaxbContextRegistry.getUnmarshaller("org.w3._2005.atom:...");
+ */
+public final class JaxbContextRegistry {
+
+    private static final ConcurrentHashMap<String, JAXBContext> contextos = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, ThreadLocal<Unmarshaller>> unmarshallers = new ConcurrentHashMap<>();
+
+    private JaxbContextRegistry() {
+    }
+
+    /**
+     * Devuelve el contexto para la ruta indicada, creandolo la primera vez.
+     *
+     * @param contextPath Paquetes separados por ':' (como en JAXBContext.newInstance)
+     */
+    public static JAXBContext getContext(String contextPath) throws JAXBException {
+        JAXBContext contexto = contextos.get(contextPath);
+        if (contexto == null) {
+            synchronized (contextos) {
+                contexto = contextos.get(contextPath);
+                if (contexto == null) {
+                    contexto = JAXBContext.newInstance(contextPath);
+                    contextos.put(contextPath, contexto);
+                }
+            }
+        }
+        return contexto;
+    }
+
+    /**
+     * Devuelve el Unmarshaller del hilo actual para la ruta indicada.
+     * No debe compartirse con otros hilos.
+     */
+    public static Unmarshaller getUnmarshaller(String contextPath) throws JAXBException {
+        ThreadLocal<Unmarshaller> local = unmarshallers.computeIfAbsent(contextPath, k -> new ThreadLocal<>());
+        Unmarshaller unmarshaller = local.get();
+        if (unmarshaller == null) {
+            unmarshaller = getContext(contextPath).createUnmarshaller();
+            local.set(unmarshaller);
+        }
+        return unmarshaller;
+    }
+}
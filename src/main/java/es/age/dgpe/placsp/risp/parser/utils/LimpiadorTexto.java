@@ -0,0 +1,431 @@
+package es.age.dgpe.placsp.risp.parser.utils;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+import com.ibm.icu.text.Normalizer2;
+
+/**
+ * Limpieza de texto libre para compatibilidad con Power BI: solo ASCII imprimible, sin
+ * saltos de linea, con los espacios normalizados y como mucho 4000 caracteres.
+ *
+ * La limpieza completa ({@link #limpiarCompleto(String)}) encadena unas sesenta pasadas
+ * sobre el texto (entidades HTML, normalizacion Unicode, escapes, decodificacion URL,
+ * expresiones regulares...). La mayoria de los textos de PLACSP no tienen nada de eso: son
+ * letras latinas, signos de puntuacion y espacios, que se limpian caracter a caracter. Para
+ * ellos {@link #limpiar(String)} recorre el texto una sola vez consultando una tabla
+ * precalculada, y solo recurre a la limpieza completa cuando aparece algo que depende del
+ * contexto (una posible entidad, una barra invertida, una secuencia %XX que se decodificaria
+ * o un caracter fuera de la tabla). El resultado es identico en los dos casos.
+ *
+ * Antes de consultar la tabla se busca el primer caracter que la limpieza cambiaria: los
+ * textos que ya estan limpios (ASCII imprimible sin nada que cambiar) se devuelven tal
+ * cual, sin copiarlos, y en los demas la tabla empieza en ese caracter. Con la JVM arrancada
+ * con --add-modules jdk.incubator.vector esa busqueda usa instrucciones SIMD
+ * ({@link EscaneoVectorial}); sin el modulo se hace caracter a caracter.
+ *
+ * Los resultados de los textos que si hay que limpiar se guardan en una cache acotada
+ * ({@link #getCache()}): la misma descripcion suele repetirse en entries distintas y en los
+ * ATOM de varios meses, y acertar en la cache cuesta menos que volver a limpiarla.
+ */
+public final class LimpiadorTexto {
+
+    private static final Normalizer2 NFC_NORMALIZER = Normalizer2.getNFCInstance();
+
+    // Patron precompilado para caracteres problematicos en Power BI M
+    // Incluye: controles, formato Unicode, surrogates, private use, etc.
+    private static final Pattern POWERBI_PROBLEMATIC = Pattern.compile(
+            "[\\x00-\\x08\\x0B\\x0C\\x0E-\\x1F\\x7F-\\x9F]" +  // Caracteres de control (excepto tab, LF, CR)
+            "|[\\u00AD]" +                                      // Soft hyphen
+            "|[\\u200B-\\u200F]" +                              // Zero-width y marcadores direccionales
+            "|[\u2028-\u202F]" +                              // Separadores de linea/parrafo y espacios especiales
+            "|[\\u2060-\\u206F]" +                              // Word joiner y caracteres de formato
+            "|[\\uFEFF]" +                                       // BOM / Zero-width no-break space
+            "|[\\uFFF0-\\uFFFF]" +                              // Specials (incluyendo replacement char)
+            "|[\uD800-\uDFFF]" +                              // Surrogates (huerfanos causan errores)
+            "|[\\uE000-\\uF8FF]" +                              // Private Use Area
+            "|[\u0300-\u036F]+(?![\\p{L}])"                   // Diacriticos sueltos sin letra base
+    );
+
+    // Expresiones de la limpieza completa, compiladas una sola vez
+    private static final Pattern CONTROL_ASCII = Pattern.compile("[\\x00-\\x1F]");
+    private static final Pattern SALTOS_DE_LINEA = Pattern.compile("\r\n|\r|\n");
+    private static final Pattern DIACRITICOS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern ESPACIOS = Pattern.compile("\\s+");
+
+    static final int LONGITUD_MAXIMA = 4000;
+
+    /**
+     * Textos que conserva la cache de limpieza si no se configura otra capacidad.
+     */
+    public static final int CAPACIDAD_CACHE_POR_DEFECTO = 4096;
+
+    private static volatile CacheTextos cache = new CacheTextos("Cache de limpieza de textos", CAPACIDAD_CACHE_POR_DEFECTO);
+
+    // Solo si el modulo se ha anadido al arrancar; si no, EscaneoVectorial ni se carga
+    private static final boolean VECTORIAL = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    // Valores especiales de la tabla; el resto son el caracter ASCII resultante
+    private static final char ELIMINAR = 0;
+    private static final char PUNTOS_SUSPENSIVOS = 1;
+    // Depende del contexto: se limpia el texto entero con limpiarCompleto
+    private static final char COMPLETO = 2;
+    // '&': inicio de una posible entidad HTML
+    private static final char AMPERSAND = 3;
+    // '+': espacio si el texto se decodifica como URL, '+' si la decodificacion falla
+    private static final char MAS = 4;
+
+    // Bloques con los que se construye la tabla: latin, puntuacion, simbolos de moneda,
+    // letras, flechas, simbolos matematicos y geometricos. No incluyen ningun diacritico
+    // combinante, asi que cada caracter se limpia igual sea cual sea el que tenga al lado
+    private static final char[][] BLOQUES_TABLA = {
+        {'\u0000', '\u02FF'},
+        {'\u1E00', '\u1EFF'},
+        {'\u2000', '\u20CF'},
+        {'\u2100', '\u25FF'},
+    };
+
+    private static final char[] TABLA = crearTabla();
+
+    private LimpiadorTexto() {
+    }
+
+    /**
+     * Limpia y normaliza texto de forma exhaustiva para compatibilidad con Power BI.
+     * Resultado identico al de {@link #limpiarCompleto(String)}, en una sola pasada para
+     * los textos que solo tienen caracteres de la tabla.
+     *
+     * @param texto El texto a limpiar
+     * @return El texto limpio y normalizado (solo ASCII imprimible), o null si el texto era null
+     */
+    public static String limpiar(String texto) {
+        if (texto == null) return null;
+
+        // El principio del texto que ya esta limpio se copia sin pasar por la tabla
+        int longitud = texto.length();
+        int limpio = prefijoLimpio(texto);
+        if (limpio == longitud && longitud <= LONGITUD_MAXIMA) {
+            return texto;
+        }
+
+        CacheTextos actual = cache;
+        String resultado = actual.get(texto);
+        if (resultado == null) {
+            resultado = limpiarDesde(texto, limpio);
+            actual.put(texto, resultado);
+        }
+        return resultado;
+    }
+
+    /**
+     * Cambia la capacidad de la cache de limpieza (0 = sin cache). La cache anterior y sus
+     * contadores se descartan.
+     */
+    public static void setCapacidadCache(int capacidad) {
+        cache = new CacheTextos("Cache de limpieza de textos", capacidad);
+    }
+
+    /**
+     * Cache de limpieza, con sus consultas y aciertos desde la ultima configuracion.
+     */
+    public static CacheTextos getCache() {
+        return cache;
+    }
+
+    /**
+     * Limpieza de un texto cuyos primeros caracteres (limpio) ya se sabe que no cambian.
+     */
+    private static String limpiarDesde(String texto, int limpio) {
+        int longitud = texto.length();
+
+        // Si alguna secuencia % no es valida la decodificacion URL falla y el texto se queda
+        // como estaba, '+' incluido; si todas lo son, hay que decodificarlas
+        char mas = ' ';
+        if (texto.indexOf('%', limpio) >= 0) {
+            if (!decodificacionUrlFalla(texto)) {
+                return limpiarCompleto(texto);
+            }
+            mas = '+';
+        }
+
+        StringBuilder sb = new StringBuilder(longitud).append(texto, 0, limpio);
+        // Espacio pendiente: solo se escribe si despues llega algo visible (trim y \s+ -> " ")
+        boolean espacio = false;
+        for (int i = limpio; i < longitud; i++) {
+            char c = texto.charAt(i);
+            char valor = c < TABLA.length ? TABLA[c] : COMPLETO;
+            switch (valor) {
+                case ELIMINAR:
+                    continue;
+                case COMPLETO:
+                    return limpiarCompleto(texto);
+                case AMPERSAND:
+                    if (i + 1 < longitud && "#aqlgn".indexOf(texto.charAt(i + 1)) >= 0) {
+                        return limpiarCompleto(texto);
+                    }
+                    valor = '&';
+                    break;
+                case MAS:
+                    valor = mas;
+                    break;
+                default:
+                    break;
+            }
+            if (valor == ' ') {
+                espacio = sb.length() > 0;
+                continue;
+            }
+            if (espacio) {
+                sb.append(' ');
+                espacio = false;
+            }
+            if (valor == PUNTOS_SUSPENSIVOS) {
+                sb.append("...");
+            } else {
+                sb.append(valor);
+            }
+        }
+
+        if (sb.length() > LONGITUD_MAXIMA) {
+            return sb.substring(0, LONGITUD_MAXIMA - 3) + "...";
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Longitud del principio del texto que la limpieza deja igual: ASCII imprimible sin
+     * caracteres que cambien (ver {@link #asciiLimpio(char)}), sin dos espacios seguidos ni
+     * espacios al principio, y que no acaba en espacio (el espacio aun puede desaparecer).
+     * Si es la longitud del texto, el texto entero esta limpio salvo que sea demasiado largo.
+     */
+    static int prefijoLimpio(String texto) {
+        if (texto.isEmpty() || texto.charAt(0) == ' ') {
+            return 0;
+        }
+        int fin = VECTORIAL ? EscaneoVectorial.primerCambio(texto) : primerCambio(texto);
+        if (fin > 0 && texto.charAt(fin - 1) == ' ') {
+            fin--;
+        }
+        return fin;
+    }
+
+    /**
+     * Posicion del primer caracter que no es {@link #asciiLimpio(char)} o del primero de
+     * dos espacios seguidos, o la longitud del texto si no hay ninguno.
+     */
+    private static int primerCambio(String texto) {
+        int longitud = texto.length();
+        boolean espacio = false;
+        for (int i = 0; i < longitud; i++) {
+            char c = texto.charAt(i);
+            if (!asciiLimpio(c)) {
+                return i;
+            }
+            if (c == ' ' && espacio) {
+                return i - 1;
+            }
+            espacio = c == ' ';
+        }
+        return longitud;
+    }
+
+    /**
+     * Caracteres ASCII imprimibles que la limpieza deja siempre igual: todos menos '&amp;',
+     * '+', '%' y '\\', que dependen de lo que los rodea.
+     */
+    static boolean asciiLimpio(char c) {
+        return c >= ' ' && c <= '~' && c != '&' && c != '+' && c != '%' && c != '\\';
+    }
+
+    private static boolean decodificacionUrlFalla(String texto) {
+        try {
+            URLDecoder.decode(texto, StandardCharsets.UTF_8);
+            return false;
+        } catch (IllegalArgumentException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Resultado de la limpieza completa de cada caracter de los bloques de la tabla, entre
+     * dos letras para que ni el trim ni la normalizacion de espacios lo descarten.
+     */
+    private static char[] crearTabla() {
+        char[] tabla = new char[BLOQUES_TABLA[BLOQUES_TABLA.length - 1][1] + 1];
+        Arrays.fill(tabla, COMPLETO);
+        for (char[] bloque : BLOQUES_TABLA) {
+            for (char c = bloque[0]; c <= bloque[1]; c++) {
+                String limpio = limpiarCompleto("a" + c + "a");
+                String resultado = limpio.substring(1, limpio.length() - 1);
+                if (resultado.isEmpty()) {
+                    tabla[c] = ELIMINAR;
+                } else if (resultado.equals("...")) {
+                    tabla[c] = PUNTOS_SUSPENSIVOS;
+                } else if (resultado.length() == 1 && resultado.charAt(0) >= ' ') {
+                    tabla[c] = resultado.charAt(0);
+                }
+            }
+        }
+        tabla['&'] = AMPERSAND;
+        tabla['+'] = MAS;
+        tabla['%'] = '%';
+        tabla['\\'] = COMPLETO;
+        return tabla;
+    }
+
+    /**
+     * Limpieza completa, paso a paso. Sirve para cualquier texto; {@link #limpiar(String)}
+     * la usa para los que no puede limpiar caracter a caracter.
+     *
+     * @param texto El texto a limpiar
+     * @return El texto limpio y normalizado (solo ASCII imprimible), o null si el texto era null
+     */
+    static String limpiarCompleto(String texto) {
+
+        if (texto == null) return null;
+
+        // 1. Desescapar entidades HTML comunes (ambas formas: &entity; y &amp;entity;)
+        String limpio = texto
+            // Forma doblemente escapada (&amp;entity;)
+            .replace("&amp;#xD;", " ")
+            .replace("&amp;#xA;", " ")
+            .replace("&amp;#x9;", " ")
+            .replace("&amp;#13;", " ")
+            .replace("&amp;#10;", " ")
+            .replace("&amp;#0;", "")
+            .replace("&amp;quot;", "'")
+            .replace("&amp;amp;", "&")
+            .replace("&amp;lt;", "<")
+            .replace("&amp;gt;", ">")
+            .replace("&amp;apos;", "'")
+            .replace("&amp;nbsp;", " ")
+            // Forma simple (&entity;)
+            .replace("&#xD;", " ")
+            .replace("&#xA;", " ")
+            .replace("&#x9;", " ")
+            .replace("&#13;", " ")
+            .replace("&#10;", " ")
+            .replace("&#0;", "")
+            .replace("&quot;", "'")
+            .replace("&lt;", "<")
+            .replace("&gt;", ">")
+            .replace("&amp;", "&")
+            .replace("&apos;", "'")
+            .replace("&nbsp;", " ");
+
+        // 2. Normalización Unicode NFC
+        limpio = NFC_NORMALIZER.normalize(limpio);
+
+        // ----------------------------------------------------------------------
+        // 🔥 2-B. LIMPIEZA DE ESCAPES TÍPICOS DEL PLACSP / JSON
+        // ----------------------------------------------------------------------
+        limpio = limpio
+            .replace("\\\\", " ")  // elimina doble backslash
+            .replace("\\(", "(")   // paréntesis escapados
+            .replace("\\)", ")")
+            .replace("\\-", "-")   // guiones escapados
+            .replace("\\_", "_")   // subrayado escapado
+            .replace("\\/", "/")   // barras escapadas
+            .replace("\\n", " ")   // saltos escapados
+            .replace("\\r", " ")
+            .replace("\\t", " ")
+            .replace("\\\"", "\"") // comillas escapadas
+            .replace("\\'", "'");  // apostrofes escapados
+
+        // ----------------------------------------------------------------------
+        // 🔥 2-C. DECODIFICAR URLS (%2F, %3A, %26…)
+        // ----------------------------------------------------------------------
+        try {
+            limpio = URLDecoder.decode(limpio, StandardCharsets.UTF_8);
+        } catch (Exception ignored) {}
+
+        // ----------------------------------------------------------------------
+        // 🔥 2-D. ELIMINAR ASCII CONTROL (0x00–0x1F) invisibles
+        // ----------------------------------------------------------------------
+        limpio = CONTROL_ASCII.matcher(limpio).replaceAll(" ");
+
+        // 3. Sustituir saltos de línea reales por espacios
+        limpio = SALTOS_DE_LINEA.matcher(limpio).replaceAll(" ");
+
+        // 4. Eliminar tabulaciones
+        limpio = limpio.replace('\t', ' ');
+
+        // 5. Eliminar diacríticos (acentos) si quieres texto plano
+        limpio = java.text.Normalizer.normalize(limpio, java.text.Normalizer.Form.NFD);
+        limpio = DIACRITICOS.matcher(limpio).replaceAll("");
+
+        // 6. Filtrar caracteres problemáticos según tu patrón
+        limpio = POWERBI_PROBLEMATIC.matcher(limpio).replaceAll("");
+
+        // 7. Convertir guiones "bonitos" a ASCII
+        limpio = limpio
+            .replace('\u2010', '-')  // hyphen
+            .replace('\u2011', '-')  // non-breaking hyphen
+            .replace('\u2012', '-')  // figure dash
+            .replace('\u2013', '-')  // en dash
+            .replace('\u2014', '-')  // em dash
+            .replace('\u2015', '-')  // horizontal bar
+            .replace('\u2212', '-')  // minus sign
+            .replace('\u2043', '-'); // hyphen bullet
+
+        // 8. Normalizar espacios Unicode a espacio ASCII
+        limpio = limpio
+            .replace('\u00A0', ' ')
+            .replace('\u2002', ' ')
+            .replace('\u2003', ' ')
+            .replace('\u2004', ' ')
+            .replace('\u2005', ' ')
+            .replace('\u2006', ' ')
+            .replace('\u2007', ' ')
+            .replace('\u2008', ' ')
+            .replace('\u2009', ' ')
+            .replace('\u200A', ' ')
+            .replace('\u202F', ' ')
+            .replace('\u205F', ' ');
+
+        // 9. Comillas tipográficas → ASCII
+        limpio = limpio
+            .replace('\u2018', '\'')
+            .replace('\u2019', '\'')
+            .replace('\u201A', '\'')
+            .replace('\u201B', '\'')
+            .replace('\u201C', '"')
+            .replace('\u201D', '"')
+            .replace('\u201E', '"')
+            .replace('\u201F', '"')
+            .replace('\u00AB', '"')
+            .replace('\u00BB', '"')
+            .replace('\u2039', '\'')
+            .replace('\u203A', '\'');
+
+        // 10. Puntos suspensivos y símbolos varios
+        limpio = limpio
+            .replace("\u2026", "...") 
+            .replace('\u2022', '*')
+            .replace('\u2023', '>')
+            .replace('\u2219', '*')
+            .replace('\u25AA', '*')
+            .replace('\u25CF', '*')
+            .replace('\u00B7', '*');
+
+        // 11. Permitir solo ASCII imprimible + ñÑüÜ
+        String permitidos = "ñÑüÜ";
+        StringBuilder sb = new StringBuilder(limpio.length());
+        for (char c : limpio.toCharArray()) {
+            if ((c >= 32 && c <= 126) || permitidos.indexOf(c) >= 0)
+                sb.append(c);
+        }
+        limpio = sb.toString();
+
+        // 12. Normalizar espacios
+        limpio = ESPACIOS.matcher(limpio).replaceAll(" ").trim();
+
+        // 13. Limitar longitud a 4000 (Power BI Service)
+        if (limpio.length() > LONGITUD_MAXIMA)
+            limpio = limpio.substring(0, LONGITUD_MAXIMA - 3) + "...";
+
+        return limpio;
+    }
+}
@@ -15,11 +15,27 @@ package es.age.dgpe.placsp.risp.parser.utils.genericode;
 import java.io.InputStream;
 import java.util.HashMap;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import es.age.dgpe.placsp.risp.parser.utils.JaxbContextRegistry;
 
 public class GenericodeManager {
 	
+	private static final XMLInputFactory XML_INPUT_FACTORY = crearFactoria();
+	
+	private static XMLInputFactory crearFactoria() {
+		// La implementacion del JDK, sin buscar otras en el classpath (newInstance recorre
+		// todos los jar). Los ficheros Genericode no usan DTD: se desactivan DTD y entidades externas
+		XMLInputFactory factory = XMLInputFactory.newDefaultFactory();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		return factory;
+	}
+	
 	/**
 	 * Lee un InputStream (xml con CodeList) a un objeto Java
 	 * @param xml
@@ -27,11 +43,10 @@ public class GenericodeManager {
 	 * @throws Exception
 	 */
 	public static CodeList read(InputStream xml) throws Exception {
-		JAXBContext jc;
 		CodeList codeList = null;
 		try {
-			jc = JAXBContext.newInstance(CodeList.class.getPackage().getName());
-			Unmarshaller unmarshaller = jc.createUnmarshaller();
+			// Contexto compartido por todas las listas Genericode
+			Unmarshaller unmarshaller = JaxbContextRegistry.getUnmarshaller(CodeList.class.getPackage().getName());
 			codeList = (CodeList) unmarshaller.unmarshal(xml);
 	        xml.close();
 		} catch (Exception e) {
@@ -42,27 +57,54 @@ public class GenericodeManager {
 	}
 	
 	
+	/**
+	 * Tabla codigo -> nombre de una lista Genericode (columnas "code" y "nombre" de las
+	 * filas de su SimpleCodeList). Se lee con StAX, sin crear el contexto JAXB de read(),
+	 * que es lo que mas tarda en el arranque. Los nombres se internan: las columnas de
+	 * codigos comparten la misma cadena en todas sus filas.
+	 */
 	public static HashMap<String, String> generateMap(InputStream xmlGenericCode) throws Exception{
-		CodeList codeList = read(xmlGenericCode);
 		HashMap<String, String> mapGenericode = new HashMap<String, String>();
-		
-		//Se recorre la lista y se inserta en el map
-		if (codeList != null && codeList.getSimpleCodeList() != null && codeList.getSimpleCodeList().getRows() != null) {
-			for (Row row : codeList.getSimpleCodeList().getRows()) {
-				String clave = null;
-				String valor = null;
-				if (row.getValues() != null) {
-					for (Value value : row.getValues()) {
-						if (value.getColumnRef().equals("code")) {
-							clave = value.getSimpleValue();
-						}
-						else if (value.getColumnRef().equals("nombre")) {
-							valor = value.getSimpleValue();
+		XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(xmlGenericCode);
+		try {
+			// Profundidad del elemento actual: 1 CodeList, 2 SimpleCodeList, 3 Row, 4 Value
+			int profundidad = 0;
+			boolean enLista = false;
+			String columna = null;
+			String clave = null;
+			String valor = null;
+			while (reader.hasNext()) {
+				int evento = reader.next();
+				if (evento == XMLStreamConstants.START_ELEMENT) {
+					profundidad++;
+					String nombre = reader.getLocalName();
+					if (profundidad == 2) {
+						enLista = nombre.equals("SimpleCodeList");
+					} else if (enLista && profundidad == 3 && nombre.equals("Row")) {
+						clave = null;
+						valor = null;
+					} else if (enLista && profundidad == 4 && nombre.equals("Value")) {
+						columna = reader.getAttributeValue(null, "ColumnRef");
+					} else if (enLista && profundidad == 5 && nombre.equals("SimpleValue")) {
+						// getElementText llega hasta el cierre del elemento
+						String texto = reader.getElementText();
+						profundidad--;
+						if ("code".equals(columna)) {
+							clave = texto;
+						} else if ("nombre".equals(columna)) {
+							valor = texto.intern();
 						}
 					}
+				} else if (evento == XMLStreamConstants.END_ELEMENT) {
+					if (enLista && profundidad == 3 && reader.getLocalName().equals("Row")) {
+						mapGenericode.put(clave, valor);
+					}
+					profundidad--;
 				}
-				mapGenericode.put(clave, valor);
 			}
+		} finally {
+			reader.close();
+			xmlGenericCode.close();
 		}
 		return mapGenericode;
 	}
@@ -12,8 +12,15 @@
  ******************************************************************************/
 package es.age.dgpe.placsp.risp.parser.utils.genericode;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
 
+/**
+ * Listas de codigos Genericode de CODICE. Cada lista se carga la primera vez que se
+ * consulta, no al arrancar.
+ */
 public enum GenericodeTypes {
 	ESTADO("/gc/SyndicationContractFolderStatusCode-2.04.gc"),
 	TIPO_CONTRATO("/gc/ContractCode-2.08.gc"),
@@ -27,25 +34,47 @@ public enum GenericodeTypes {
 	ESTADO_CONSULTA_PRELIMINAR("/gc/PreliminaryMarketConsultationStatusCode-2.09.gc"),
 	TIPO_CONSULTA_PRELIMINAR("/gc/PreliminaryMarketConsultationTypeCode-2.09.gc");
 	
-	private HashMap<String, String> codes = null;
+	// Lista que no se pudo cargar
+	private static final Map<String, String> SIN_CODIGOS = Collections.emptyMap();
+	
+	private final String nombreGenericode;
+	// Se publica una vez cargada; las filas se calculan en varios hilos
+	private volatile Map<String, String> codes = null;
 	
 	GenericodeTypes(String nombreGenericode){
-		try {
-			codes = GenericodeManager.generateMap(GenericodeTypes.class.getResourceAsStream(nombreGenericode));
-		} catch (Exception e) {
-			System.err.println("Error cargando codigos " + nombreGenericode + ": " + e.getMessage());
-		}
+		this.nombreGenericode = nombreGenericode;
 	}
 	
+	/**
+	 * Nombre de un codigo; el propio codigo si no esta en la lista, o null si no se pudo
+	 * cargar la lista.
+	 */
 	public String getValue(String key) {
-		if (codes.containsKey(key)) {
-			return codes.get(key);
+		Map<String, String> codigos = codes;
+		if (codigos == null) {
+			codigos = cargar();
+		}
+		if (codigos == SIN_CODIGOS) {
+			// No se pudo cargar el genericode
+			return null;
 		}
-		else {
-			return key;
+		// Una sola busqueda: getOrDefault distingue un codigo sin nombre de uno que no esta
+		return codigos.getOrDefault(key, key);
+	}
+	
+	private synchronized Map<String, String> cargar() {
+		if (codes == null) {
+			try (InputStream xml = GenericodeTypes.class.getResourceAsStream(nombreGenericode)) {
+				if (xml == null) {
+					throw new IOException("no se encuentra el recurso");
+				}
+				codes = GenericodeManager.generateMap(xml);
+			} catch (Exception e) {
+				System.err.println("Error cargando codigos " + nombreGenericode + ": " + e.getMessage());
+				codes = SIN_CODIGOS;
+			}
 		}
-		
-		
+		return codes;
 	}
 
 }
@@ -3,6 +3,7 @@ package es.age.dgpe.placsp.risp.parser.workflow;
 import es.age.dgpe.placsp.risp.parser.downloader.FileDownloader;
 import es.age.dgpe.placsp.risp.parser.downloader.WebScraper;
 import es.age.dgpe.placsp.risp.parser.converter.AtomToExcelConverter;
+import es.age.dgpe.placsp.risp.parser.converter.IndiceIncremental;
 import es.age.dgpe.placsp.risp.parser.uploader.OAuth2TokenHelper;
 import es.age.dgpe.placsp.risp.parser.uploader.GraphHelper;
 import es.age.dgpe.placsp.risp.parser.uploader.GraphSharePointUploader;
@@ -218,7 +219,8 @@ public class PlacspWorkflow {
         if (!folder.exists() || !folder.isDirectory()) {
             return true;
         }
-        String[] archivos = folder.list();
+        // El indice incremental no cuenta: sin ATOMs hay que descargar el historico
+        String[] archivos = folder.list((dir, nombre) -> !nombre.equals(IndiceIncremental.DIRECTORIO));
         return archivos == null || archivos.length == 0;
     }
 